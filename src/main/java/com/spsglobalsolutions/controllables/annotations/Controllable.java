@@ -16,6 +16,11 @@
 
 package com.spsglobalsolutions.controllables.annotations;
 
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControllableMethod;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControlledMethodInfo;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControlledMethodTable;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.RecordingLevel;
+
 import javax.lang.model.element.Modifier;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -115,6 +120,36 @@ public @interface Controllable
      */
     MethodModifier[] includedModifierFilter() default {MethodModifier.Public, MethodModifier.Abstract};
 
+    /**
+     * Optionally, you can limit how many calls are kept in the history of each controlled method (only the most recent calls are kept).  This is useful for long running tests
+     * (such as soak tests), where keeping every call would eventually use up the heap.  The capacity can still be changed for a particular method, by using {@code
+     * ControllableMethod.setHistoryCapacity(int)}.  By default every call is kept.
+     *
+     * @return the most calls to keep in each controlled method's history, or {@link ControllableMethod#UNBOUNDED_HISTORY} to keep them all.
+     */
+    int historyCapacity() default ControllableMethod.UNBOUNDED_HISTORY;
+
+    /**
+     * Optionally, you can lower how much is recorded about each call to the controlled methods (e.g. just the call count), so that throughput sensitive tests aren't also
+     * measuring the work done by the controllable to record everything.  The level can still be changed for a particular method, by using {@code
+     * ControllableMethod.setRecordingLevel(RecordingLevel)}.  By default everything is recorded ({@link RecordingLevel#Full}).
+     *
+     * @return how much each controlled method will record about each call, to start with.
+     */
+    RecordingLevel recordingLevel() default RecordingLevel.Full;
+
+    /**
+     * Optionally, you can have each controlled method given a constant integer ID (a {@code METHOD_ID_...} constant on the generated class, with the static methods given the
+     * first IDs), with the controlled methods kept in a {@link ControlledMethodTable} indexed by ID (one for the static methods, and one for the instance methods), rather than
+     * each having fields of its own.  The generated class also has a {@code CONTROLLED_METHODS} list
+     * of {@link ControlledMethodInfo} (in order of ID), so a tool can find out about any controlled method without reflection.  This is meant for very wide types, as it keeps
+     * down the size of each instance (and of the generated class), and a controlled method is only created when it is first used.  By default each controlled method has
+     * its own fields.
+     *
+     * @return whether the controlled methods are given IDs, and kept in a single table.
+     */
+    boolean indexedMethods() default false;
+
     enum MethodModifier
     {
         Public(Modifier.PUBLIC), Private(Modifier.PRIVATE), Protected(Modifier.PROTECTED), Package(null),
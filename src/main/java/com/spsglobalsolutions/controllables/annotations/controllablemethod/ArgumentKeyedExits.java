@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Predicate;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The exits which are only used when the controlled method is called with particular arguments (e.g. so a DAO stub returns the right row for each id, however the calls from
+ * concurrent code are interleaved).
+ * <p/>
+ * Exits for exact arguments are kept in a hash index, so finding one takes the same time however many there are (a million rows can be preloaded for a data heavy load
+ * test).  If none of those match, the exits for argument matchers are tried, in the order they were added.  When there are no argument keyed exits at all, looking for one is
+ * just the read of a volatile flag.
+ *
+ * @param <MethodReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+final class ArgumentKeyedExits<MethodReturnType>
+{
+
+    private final ConcurrentMap<Object, MethodExit<MethodReturnType>> byArguments = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<MatchedExit<MethodReturnType>> byMatcher = new CopyOnWriteArrayList<>();
+    private volatile boolean hasExits;
+
+    /**
+     * The key to index the arguments by.  A single argument (which is by far the most common) is its own key, so looking it up doesn't create anything.  Otherwise the
+     * arguments are wrapped, so they are compared by their contents (including the contents of any arrays).
+     */
+    private static Object keyFor(final Object[] arguments)
+    {
+        if(arguments.length == 1 && arguments[0] != null && !arguments[0].getClass().isArray())
+        {
+            return arguments[0];
+        }
+        return new ArgumentsKey(arguments);
+    }
+
+    /**
+     * @param arguments the exact arguments to use the exit for (any previous exit for the same arguments is replaced)
+     * @param exit      the exit to use
+     */
+    void put(final Object[] arguments, final MethodExit<MethodReturnType> exit)
+    {
+        this.byArguments.put(keyFor(arguments.clone()), exit);
+        this.hasExits = true;
+    }
+
+    /**
+     * @param matcher which arguments to use the exit for
+     * @param exit    the exit to use
+     */
+    void add(final Predicate<Object[]> matcher, final MethodExit<MethodReturnType> exit)
+    {
+        this.byMatcher.add(new MatchedExit<>(matcher, exit));
+        this.hasExits = true;
+    }
+
+    /**
+     * @param arguments the arguments the controlled method was called with
+     * @return the exit for the arguments, or null if there isn't one.
+     */
+    MethodExit<MethodReturnType> find(final Object[] arguments)
+    {
+        if(!this.hasExits)
+        {
+            return null;
+        }
+        final MethodExit<MethodReturnType> exit = this.byArguments.get(keyFor(arguments));
+        if(exit != null)
+        {
+            return exit;
+        }
+        for(final MatchedExit<MethodReturnType> matchedExit : this.byMatcher)
+        {
+            if(matchedExit.matcher.apply(arguments))
+            {
+                return matchedExit.exit;
+            }
+        }
+        return null;
+    }
+
+    void clear()
+    {
+        this.hasExits = false;
+        this.byArguments.clear();
+        this.byMatcher.clear();
+    }
+
+    private static final class ArgumentsKey
+    {
+
+        private final Object[] arguments;
+        private final int hashCode;
+
+        private ArgumentsKey(final Object[] arguments)
+        {
+            this.arguments = arguments;
+            this.hashCode = Arrays.deepHashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            return other instanceof ArgumentsKey && Arrays.deepEquals(this.arguments, ((ArgumentsKey) other).arguments);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+    }
+
+    private static final class MatchedExit<MethodReturnType>
+    {
+
+        private final Predicate<Object[]> matcher;
+        private final MethodExit<MethodReturnType> exit;
+
+        private MatchedExit(final Predicate<Object[]> matcher, final MethodExit<MethodReturnType> exit)
+        {
+            this.matcher = matcher;
+            this.exit = exit;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stores the {@link MethodCall}s made to a controlled method.  The history can either keep every call ({@link ControllableMethod#UNBOUNDED_HISTORY}), or only the most recent
+ * calls up to a given capacity (so memory use stays flat however long the controlled method is used for).
+ * <p/>
+ * Each thread which calls the controlled method adds its calls to its own {@link ThreadCallBuffer}, along with a sequence number (taken from a single counter), so the
+ * threads never block each other (there is no lock on the controlled method's path, which the real code wouldn't have).  When the history is read, the calls which have
+ * been added to the buffers since it was last read are merged, in sequence number order (so in the order the calls were made), onto the end of the merged calls.  Reading
+ * never waits for a thread which is part way through adding a call: the merge stops at the first sequence number whose call hasn't been published yet, and carries on from
+ * there the next time the history is read.
+ * <p/>
+ * The merged calls are appended into fixed size chunks, which are never moved, and a slot is never written to again once it holds a call.  So a snapshot is just a view over
+ * the chunks, up to the number of calls there were when it was taken; taking one doesn't copy anything, and it can't see any calls which are made afterwards.  When the
+ * history has a capacity, chunks which only hold calls that have dropped out of it are let go of (they stay alive only for as long as an older snapshot still needs them).
+ *
+ * @param <MethodReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+final class CallHistory<MethodReturnType>
+{
+
+    private static final int MAX_CHUNK_SIZE = 256;
+
+    private final int historyCapacity;
+    private final AtomicLong sequenceNumbers = new AtomicLong();
+    private final AtomicReference<ThreadCallBuffer<MethodReturnType>> newestThreadBuffer = new AtomicReference<>();
+    private final ThreadLocal<ThreadCallBuffer<MethodReturnType>> threadBuffer = new ThreadLocal<>();
+
+    // only used while holding the lock (i.e. when merging, or taking a snapshot)
+    private final int chunkSize;
+    private Chunks<MethodReturnType> chunks;
+    private long mergedCount;
+    private long nextSequenceNumberToMerge;
+
+    private CallHistory(final int historyCapacity)
+    {
+        this.historyCapacity = historyCapacity;
+        this.chunkSize = historyCapacity == ControllableMethod.UNBOUNDED_HISTORY ? MAX_CHUNK_SIZE : Math.min(historyCapacity, MAX_CHUNK_SIZE);
+        @SuppressWarnings("unchecked")
+        final MethodCall<MethodReturnType>[][] noChunks = new MethodCall[1][];
+        this.chunks = new Chunks<>(0, noChunks);
+    }
+
+    /**
+     * @param historyCapacity the most calls to retain, or {@link ControllableMethod#UNBOUNDED_HISTORY} to retain them all
+     * @return a new, empty, history.
+     * @throws IllegalArgumentException if the capacity is not a positive number (or {@link ControllableMethod#UNBOUNDED_HISTORY})
+     */
+    static <MethodReturnType> CallHistory<MethodReturnType> withCapacity(final int historyCapacity)
+    {
+        if(historyCapacity != ControllableMethod.UNBOUNDED_HISTORY && historyCapacity < 1)
+        {
+            throw new IllegalArgumentException("The history capacity must be at least 1 (or UNBOUNDED_HISTORY), but was " + historyCapacity);
+        }
+        return new CallHistory<>(historyCapacity);
+    }
+
+    /**
+     * Store the call in the history (dropping the oldest retained call if the history is full).  This never blocks, or waits for, any other thread.
+     *
+     * @param call the details of the method call
+     */
+    void add(final MethodCall<MethodReturnType> call)
+    {
+        ThreadCallBuffer<MethodReturnType> buffer = this.threadBuffer.get();
+        if(buffer == null)
+        {
+            buffer = this.createThreadBuffer();
+        }
+        buffer.add(this.sequenceNumbers, call);
+    }
+
+    /**
+     * @return the retained calls, oldest first, as an unmodifiable view which is created without copying anything, and which won't change as more calls are made.  It includes
+     * every call that had been made when it was taken.
+     */
+    synchronized List<MethodCall<MethodReturnType>> snapshot()
+    {
+        this.mergeThreadBuffers();
+        final long firstIndex = this.historyCapacity == ControllableMethod.UNBOUNDED_HISTORY ? 0 : Math.max(0, this.mergedCount - this.historyCapacity);
+        return new Snapshot<>(this.chunks, this.chunkSize, firstIndex, (int) (this.mergedCount - firstIndex));
+    }
+
+    /**
+     * Create a new history, with a different capacity, which starts off with (as many as it can hold of the most recent of) the calls in this history.
+     *
+     * @param historyCapacity the most calls to retain, or {@link ControllableMethod#UNBOUNDED_HISTORY} to retain them all
+     * @return the new history
+     */
+    CallHistory<MethodReturnType> copyWithCapacity(final int historyCapacity)
+    {
+        final CallHistory<MethodReturnType> copy = withCapacity(historyCapacity);
+        final List<MethodCall<MethodReturnType>> calls = this.snapshot();
+        synchronized(copy)
+        {
+            for(final MethodCall<MethodReturnType> call : calls)
+            {
+                copy.append(call);
+            }
+            // carry on numbering the calls from after the copied ones
+            copy.sequenceNumbers.set(calls.size());
+            copy.nextSequenceNumberToMerge = calls.size();
+        }
+        return copy;
+    }
+
+    private ThreadCallBuffer<MethodReturnType> createThreadBuffer()
+    {
+        while(true)
+        {
+            final ThreadCallBuffer<MethodReturnType> currentNewest = this.newestThreadBuffer.get();
+            final ThreadCallBuffer<MethodReturnType> buffer = new ThreadCallBuffer<>(this.historyCapacity, currentNewest);
+            if(this.newestThreadBuffer.compareAndSet(currentNewest, buffer))
+            {
+                this.threadBuffer.set(buffer);
+                return buffer;
+            }
+        }
+    }
+
+    /**
+     * Merge the calls, which had been given a sequence number when this started, from the thread buffers, in sequence number order.  This stops at the first call which has
+     * been given its sequence number but not published yet (its thread may have been descheduled, or have failed, in between), leaving it and every call after it to be
+     * merged by a later snapshot; a call which has returned to its caller has always been published, so a snapshot still has every call which had returned when it was
+     * taken.
+     */
+    private void mergeThreadBuffers()
+    {
+        long mergeUpTo = this.sequenceNumbers.get();
+        while(this.nextSequenceNumberToMerge < mergeUpTo)
+        {
+            // find the buffer with the next call (each buffer is already in order, as a thread's later calls always have later sequence numbers)
+            ThreadCallBuffer<MethodReturnType> bufferWithNextCall = null;
+            long lowestSequenceNumber = Long.MAX_VALUE;
+            for(ThreadCallBuffer<MethodReturnType> buffer = this.newestThreadBuffer.get(); buffer != null; buffer = buffer.getOlderBuffer())
+            {
+                final long sequenceNumber = buffer.peekSequenceNumber(this.nextSequenceNumberToMerge);
+                if(sequenceNumber >= 0 && sequenceNumber < lowestSequenceNumber)
+                {
+                    bufferWithNextCall = buffer;
+                    lowestSequenceNumber = sequenceNumber;
+                }
+            }
+            if(lowestSequenceNumber == this.nextSequenceNumberToMerge)
+            {
+                this.append(bufferWithNextCall.take());
+                this.nextSequenceNumberToMerge++;
+            }
+            else
+            {
+                mergeUpTo = Math.max(mergeUpTo, this.sequenceNumbers.get());
+                if(this.historyCapacity != ControllableMethod.UNBOUNDED_HISTORY && this.nextSequenceNumberToMerge < mergeUpTo - this.historyCapacity)
+                {
+                    // the missing calls are too old to be in the history anyway (they may have been dropped from their buffer, or still be being added to it), so skip them
+                    this.nextSequenceNumberToMerge = Math.min(lowestSequenceNumber, mergeUpTo - this.historyCapacity);
+                }
+                else
+                {
+                    // another thread has been given the sequence number, but hasn't published its call yet - so leave the rest for the next snapshot
+                    break;
+                }
+            }
+        }
+        this.letGoOfGoneThreadsBuffers();
+    }
+
+    /**
+     * Take the buffers of the threads which have gone (and which have had every call in them merged) out of the list, so they aren't kept (or looked through, on every merge)
+     * for the rest of the history's life.
+     */
+    private void letGoOfGoneThreadsBuffers()
+    {
+        ThreadCallBuffer<MethodReturnType> newerBuffer = null;
+        for(ThreadCallBuffer<MethodReturnType> buffer = this.newestThreadBuffer.get(); buffer != null; buffer = buffer.getOlderBuffer())
+        {
+            // a gone thread will never add another call, so once there are none left in it (that could still be merged) it's done with
+            if(buffer.isOwnerGone() && buffer.peekSequenceNumber(this.nextSequenceNumberToMerge) < 0)
+            {
+                if(newerBuffer != null)
+                {
+                    newerBuffer.setOlderBuffer(buffer.getOlderBuffer());
+                    continue;
+                }
+                // the newest buffer can only be taken out if no other thread has just added a newer one (if one has, it'll be taken out on a later merge instead)
+                if(this.newestThreadBuffer.compareAndSet(buffer, buffer.getOlderBuffer()))
+                {
+                    continue;
+                }
+            }
+            newerBuffer = buffer;
+        }
+    }
+
+    /**
+     * @return the number of thread buffers still kept (for testing that they are let go of).
+     */
+    synchronized int getThreadBufferCount()
+    {
+        int count = 0;
+        for(ThreadCallBuffer<MethodReturnType> buffer = this.newestThreadBuffer.get(); buffer != null; buffer = buffer.getOlderBuffer())
+        {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of segments still kept, in all the thread buffers (for testing that they are let go of).
+     */
+    synchronized int getRetainedSegmentCount()
+    {
+        int count = 0;
+        for(ThreadCallBuffer<MethodReturnType> buffer = this.newestThreadBuffer.get(); buffer != null; buffer = buffer.getOlderBuffer())
+        {
+            count += buffer.getRetainedSegmentCount();
+        }
+        return count;
+    }
+
+    private void append(final MethodCall<MethodReturnType> call)
+    {
+        final long index = this.mergedCount;
+        final long chunkNumber = index / this.chunkSize;
+        final int slot = (int) (index % this.chunkSize);
+        if(slot == 0)
+        {
+            this.startChunk(chunkNumber);
+        }
+        this.chunks.get(chunkNumber)[slot] = call;
+        this.mergedCount = index + 1;
+    }
+
+    private void startChunk(final long chunkNumber)
+    {
+        @SuppressWarnings("unchecked")
+        final MethodCall<MethodReturnType>[] newChunk = new MethodCall[this.chunkSize];
+        if(this.chunks.hasRoomFor(chunkNumber))
+        {
+            // the slot isn't visible to any snapshot until a call in the chunk is published, so it can be filled in place
+            this.chunks.set(chunkNumber, newChunk);
+            return;
+        }
+        // start a new set of chunks (with room to grow, so this only happens every so often), dropping any which are wholly older than the capacity
+        final long firstChunkToKeep = this.historyCapacity == ControllableMethod.UNBOUNDED_HISTORY ?
+                                      this.chunks.firstChunkNumber :
+                                      Math.max(this.chunks.firstChunkNumber, (chunkNumber * this.chunkSize - this.historyCapacity) / this.chunkSize);
+        final int chunksToKeep = (int) (chunkNumber - firstChunkToKeep);
+        @SuppressWarnings("unchecked")
+        final MethodCall<MethodReturnType>[][] keptChunks = new MethodCall[Math.max(2, (chunksToKeep + 1) * 2)][];
+        System.arraycopy(this.chunks.chunks, (int) (firstChunkToKeep - this.chunks.firstChunkNumber), keptChunks, 0, chunksToKeep);
+        keptChunks[chunksToKeep] = newChunk;
+        this.chunks = new Chunks<>(firstChunkToKeep, keptChunks);
+    }
+
+    /**
+     * A run of consecutive chunks, starting from a given chunk number.  Only ever appended to in place (into its spare room), so an older snapshot which holds onto it still
+     * sees every chunk it needs.
+     */
+    private static final class Chunks<MethodReturnType>
+    {
+
+        private final long firstChunkNumber;
+        private final MethodCall<MethodReturnType>[][] chunks;
+
+        private Chunks(final long firstChunkNumber, final MethodCall<MethodReturnType>[][] chunks)
+        {
+            this.firstChunkNumber = firstChunkNumber;
+            this.chunks = chunks;
+        }
+
+        private boolean hasRoomFor(final long chunkNumber)
+        {
+            return chunkNumber - this.firstChunkNumber < this.chunks.length;
+        }
+
+        private MethodCall<MethodReturnType>[] get(final long chunkNumber)
+        {
+            return this.chunks[(int) (chunkNumber - this.firstChunkNumber)];
+        }
+
+        private void set(final long chunkNumber, final MethodCall<MethodReturnType>[] chunk)
+        {
+            this.chunks[(int) (chunkNumber - this.firstChunkNumber)] = chunk;
+        }
+    }
+
+    /**
+     * An unmodifiable view of the calls in the chunks, from one (overall) index, for a fixed number of calls.
+     */
+    private static final class Snapshot<MethodReturnType> extends AbstractList<MethodCall<MethodReturnType>> implements RandomAccess
+    {
+
+        private final Chunks<MethodReturnType> chunks;
+        private final int chunkSize;
+        private final long firstIndex;
+        private final int size;
+
+        private Snapshot(final Chunks<MethodReturnType> chunks, final int chunkSize, final long firstIndex, final int size)
+        {
+            this.chunks = chunks;
+            this.chunkSize = chunkSize;
+            this.firstIndex = firstIndex;
+            this.size = size;
+        }
+
+        @Override
+        public MethodCall<MethodReturnType> get(final int index)
+        {
+            if(index < 0 || index >= this.size)
+            {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+            }
+            final long overallIndex = this.firstIndex + index;
+            return this.chunks.get(overallIndex / this.chunkSize)[(int) (overallIndex % this.chunkSize)];
+        }
+
+        @Override
+        public int size()
+        {
+            return this.size;
+        }
+
+        @Override
+        public Object[] toArray()
+        {
+            final Object[] copy = new Object[this.size];
+            for(int i = 0; i < this.size; i++)
+            {
+                copy[i] = this.get(i);
+            }
+            return copy;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T[] toArray(final T[] a)
+        {
+            final T[] copy = a.length >= this.size ? a : Arrays.copyOf(a, this.size);
+            for(int i = 0; i < this.size; i++)
+            {
+                copy[i] = (T) this.get(i);
+            }
+            if(copy.length > this.size)
+            {
+                copy[this.size] = null;
+            }
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stores the times of the calls made to a controlled method (when it is recording at {@link RecordingLevel#Timestamps}) in primitive arrays, so no object is created per call.
+ * <p/>
+ * Like {@link CallHistory}, it can either keep every time, or only the most recent times up to a given capacity.  There is no lock: each call claims the next index from a
+ * single counter, and publishes its time into that index's slot with an ordered write.  The slots are in fixed size chunks, which are added as they are needed (so a large
+ * capacity doesn't cost anything up front), and never reused; when there is a capacity, the chunks which only hold times that have dropped out of it are let go of.
+ * <p/>
+ * A snapshot never waits for a call which has claimed its index but not yet published its time (it stops at the first one, and the next snapshot carries on from there); a
+ * call which has returned to its caller has always published its time, so a snapshot has every time of a call which had returned when it was taken.
+ *
+ * @author stevo58008
+ */
+final class CallTimestamps
+{
+
+    private static final int MAX_CHUNK_SIZE = 256;
+    private static final long UNPUBLISHED = Long.MIN_VALUE; // never a real time in millis
+
+    private final boolean bounded;
+    private final int historyCapacity;
+    private final int chunkSize;
+    private final AtomicLong claimedCount = new AtomicLong();
+    private final AtomicReference<Chunk> newestChunk;
+    private final AtomicReference<Chunk> oldestChunk; // only ever moved forwards (and only when there is a capacity)
+
+    /**
+     * @param historyCapacity the most times to retain, or {@link ControllableMethod#UNBOUNDED_HISTORY} to retain them all (this should already have been validated, by
+     *                        {@link CallHistory#withCapacity(int)})
+     */
+    CallTimestamps(final int historyCapacity)
+    {
+        this.bounded = historyCapacity != ControllableMethod.UNBOUNDED_HISTORY;
+        this.historyCapacity = historyCapacity;
+        this.chunkSize = this.bounded ? Math.min(historyCapacity, MAX_CHUNK_SIZE) : MAX_CHUNK_SIZE;
+        final Chunk firstChunk = new Chunk(0, this.chunkSize);
+        this.newestChunk = new AtomicReference<>(firstChunk);
+        this.oldestChunk = new AtomicReference<>(firstChunk);
+    }
+
+    void add(final long callTimeInMillis)
+    {
+        // read before claiming the index, so the chunk can't have been let go of, and the index is in it or a later one
+        Chunk chunk = this.newestChunk.get();
+        final long index = this.claimedCount.getAndIncrement();
+        while(index >= chunk.firstIndex + this.chunkSize)
+        {
+            chunk = this.nextChunk(chunk);
+        }
+        chunk.times.lazySet((int) (index - chunk.firstIndex), callTimeInMillis);
+    }
+
+    /**
+     * @return the chunk after the given one, which is added (and made the newest) if no other call has added it already.
+     */
+    private Chunk nextChunk(final Chunk chunk)
+    {
+        Chunk next = chunk.next.get();
+        if(next == null)
+        {
+            final Chunk newChunk = new Chunk(chunk.firstIndex + this.chunkSize, this.chunkSize);
+            next = chunk.next.compareAndSet(null, newChunk) ? newChunk : chunk.next.get();
+        }
+        final Chunk newest = this.newestChunk.get();
+        if(newest.firstIndex < next.firstIndex)
+        {
+            this.newestChunk.compareAndSet(newest, next); // if this fails, another call has moved it on already
+            if(this.bounded)
+            {
+                this.dropChunksOlderThanTheCapacity(next.firstIndex);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Let go of the chunks which only hold times that have dropped out of the capacity, once there is a chunk starting at the given index.
+     */
+    private void dropChunksOlderThanTheCapacity(final long newestFirstIndex)
+    {
+        final long oldestIndexToKeep = newestFirstIndex - this.historyCapacity;
+        while(true)
+        {
+            final Chunk oldest = this.oldestChunk.get();
+            final Chunk next = oldest.next.get();
+            if(next == null || next.firstIndex > oldestIndexToKeep)
+            {
+                return;
+            }
+            this.oldestChunk.compareAndSet(oldest, next);
+        }
+    }
+
+    /**
+     * @return a copy of the retained times, oldest first.
+     */
+    long[] snapshot()
+    {
+        final long upTo = this.claimedCount.get();
+        Chunk chunk = this.oldestChunk.get();
+        final long from = this.bounded ? Math.max(chunk.firstIndex, upTo - this.historyCapacity) : chunk.firstIndex;
+        final long[] copy = new long[(int) (upTo - from)];
+        int copied = 0;
+        for(long index = from; index < upTo; index++)
+        {
+            while(chunk != null && index >= chunk.firstIndex + this.chunkSize)
+            {
+                chunk = chunk.next.get();
+            }
+            if(chunk == null)
+            {
+                break; // the call which claimed the index hasn't added its chunk yet
+            }
+            final long time = chunk.times.get((int) (index - chunk.firstIndex));
+            if(time == UNPUBLISHED)
+            {
+                break;
+            }
+            copy[copied++] = time;
+        }
+        return copied == copy.length ? copy : Arrays.copyOf(copy, copied);
+    }
+
+    /**
+     * @param historyCapacity the most times to retain, or {@link ControllableMethod#UNBOUNDED_HISTORY} to retain them all
+     * @return a new instance, with a different capacity, which starts off with (as many as it can hold of the most recent of) the times in this one.
+     */
+    CallTimestamps copyWithCapacity(final int historyCapacity)
+    {
+        final CallTimestamps copy = new CallTimestamps(historyCapacity);
+        for(final long time : this.snapshot())
+        {
+            copy.add(time);
+        }
+        return copy;
+    }
+
+    /**
+     * @return the number of chunks still kept (for testing that they are let go of).
+     */
+    int getRetainedChunkCount()
+    {
+        int count = 0;
+        for(Chunk chunk = this.oldestChunk.get(); chunk != null; chunk = chunk.next.get())
+        {
+            count++;
+        }
+        return count;
+    }
+
+    private static final class Chunk
+    {
+        private final long firstIndex;
+        private final AtomicLongArray times;
+        private final AtomicReference<Chunk> next = new AtomicReference<>();
+
+        private Chunk(final long firstIndex, final int size)
+        {
+            this.firstIndex = firstIndex;
+            final long[] unpublished = new long[size];
+            Arrays.fill(unpublished, UNPUBLISHED);
+            this.times = new AtomicLongArray(unpublished);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Which calls an exit is used for, when it is only used for particular arguments rather than being added to the exits used in order.  E.g. {@code
+ * method.addNormalExitWhen(CalledWith.arguments(42L), row42)}.
+ * <p/>
+ * The exits for exact arguments are kept in a hash index, so finding the exit for a call takes the same time however many there are.  The exact arguments are checked first,
+ * then any matchers (in the order they were added), and if neither have an exit for the call, then the exits used in order are used.
+ *
+ * @author stevo58008
+ */
+public final class CalledWith
+{
+
+    private final Object[] arguments;
+    private final Predicate<Object[]> matcher;
+
+    private CalledWith(final Object[] arguments, final Predicate<Object[]> matcher)
+    {
+        this.arguments = arguments;
+        this.matcher = matcher;
+    }
+
+    /**
+     * The calls made with exactly these arguments (compared with equals, and by their contents for arrays).  Only one exit is kept for the same arguments, so adding another
+     * replaces it.
+     *
+     * @param arguments the arguments, in the order they are defined on the method signature (none, for a method without any)
+     * @return the calls made with them
+     * @throws IllegalArgumentException if {@code arguments} is null (rather than an array holding a null argument)
+     */
+    public static CalledWith arguments(final Object... arguments)
+    {
+        if(arguments == null)
+        {
+            throw new IllegalArgumentException("The arguments cannot be null (for a single null argument, use arguments((Object) null))");
+        }
+        return new CalledWith(arguments.clone(), null);
+    }
+
+    /**
+     * The calls made with arguments that the matcher matches (and which there isn't an exit for the exact arguments of).
+     *
+     * @param matcher which arguments (in the order they are defined on the method signature) to use the exit for
+     * @return the calls made with arguments it matches
+     */
+    public static CalledWith argumentsMatching(final Predicate<Object[]> matcher)
+    {
+        if(matcher == null)
+        {
+            throw new IllegalArgumentException("The argument matcher cannot be null");
+        }
+        return new CalledWith(null, matcher);
+    }
+
+    /**
+     * @param exits where to add the exit
+     * @param exit  the exit to use for these calls
+     */
+    <MethodReturnType> void addTo(final ArgumentKeyedExits<MethodReturnType> exits, final MethodExit<MethodReturnType> exit)
+    {
+        if(this.matcher != null)
+        {
+            exits.add(this.matcher, exit);
+        }
+        else
+        {
+            exits.put(this.arguments, exit);
+        }
+    }
+}
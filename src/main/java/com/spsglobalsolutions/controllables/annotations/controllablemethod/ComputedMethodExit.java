@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Function;
+
+/**
+ * An exit which isn't known until the controlled method is called, as it is computed from the call's arguments (see {@link ExitComputation}).  For each call, a {@link
+ * MethodExit} is created with the result of the computation, so the history shows how each call actually exited, as it does for any other exit.
+ *
+ * @param <ReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+final class ComputedMethodExit<ReturnType> extends MethodExit<ReturnType>
+{
+
+    private final ControlledMethodHandler<ReturnType> handler;
+    private final ExitComputation<ReturnType, ?> computation;
+
+    ComputedMethodExit(final ControlledMethodHandler<ReturnType> handler, final ExitComputation<ReturnType, ?> computation)
+    {
+        super(handler, (ReturnType) null, 0);
+        this.handler = handler;
+        this.computation = computation;
+    }
+
+    /**
+     * @param computeReturnValue works out the value to return (or throws an unchecked exception)
+     * @return a computation which uses the function.
+     */
+    static <ReturnType> ExitComputation<ReturnType, RuntimeException> fromFunction(final Function<Object[], ReturnType> computeReturnValue)
+    {
+        if(computeReturnValue == null)
+        {
+            throw new IllegalArgumentException("The function to compute the return value cannot be null");
+        }
+        return new ExitComputation<ReturnType, RuntimeException>()
+        {
+            @Override
+            public ReturnType compute(final Object[] arguments)
+            {
+                return computeReturnValue.apply(arguments);
+            }
+        };
+    }
+
+    @Override
+    MethodExit<ReturnType> exitFor(final Object[] methodArgumentValues)
+    {
+        try
+        {
+            return new MethodExit<>(this.handler, this.computation.compute(methodArgumentValues), 0);
+        }
+        catch(final RuntimeException e)
+        {
+            return new MethodExit<ReturnType>(this.handler, e, 0);
+        }
+        catch(final Exception e)
+        {
+            return new MethodExit<ReturnType>(this.handler, e, 0);
+        }
+    }
+}
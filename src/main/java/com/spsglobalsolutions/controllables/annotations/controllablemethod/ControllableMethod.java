@@ -16,7 +16,7 @@
 
 package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 
-import com.google.common.collect.ImmutableList;
+import java.util.List;
 
 /**
  * @author stevo58008
@@ -25,9 +25,60 @@ public interface ControllableMethod<Itself extends ControllableMethod<Itself, Re
 {
 
     /**
-     * @return a snapshot of the controllable methods current call history
+     * The value to use as a history capacity, for the history to keep every call made to the controlled method (which is the default).
      */
-    ImmutableList<MethodCall<ReturnType>> getHistory();
+    int UNBOUNDED_HISTORY = -1;
+
+    /**
+     * The most checked exceptions of a method which can be controlled (e.g. {@link ControllableNonVoidMethod.Throwing5CheckedExceptions}); a method which declares more
+     * only has the first of them controlled.
+     */
+    int CHECKED_EXCEPTION_LIMIT = 5;
+
+    /**
+     * The history isn't copied, so this is cheap even when it is called repeatedly (e.g. when polling the history, while waiting for the code under test to make a call).
+     *
+     * @return an unmodifiable snapshot of the controllable methods current call history, which doesn't change as more calls are made (if the history has a capacity, then
+     * this is just the most recent calls, oldest first)
+     */
+    List<MethodCall<ReturnType>> getHistory();
+
+    /**
+     * @return the total number of times the controlled method has been called, which is exact even if older calls are no longer kept in the history (calls made while the
+     * recording level is {@link RecordingLevel#Off} aren't counted)
+     */
+    long getCallCount();
+
+    /**
+     * @return the times (in milliseconds) of the calls made while the recording level was {@link RecordingLevel#Timestamps}, oldest first (if the history has a capacity,
+     * then this is just the most recent ones)
+     */
+    long[] getCallTimesInMillis();
+
+    /**
+     * @return how much is currently being recorded about each call
+     */
+    RecordingLevel getRecordingLevel();
+
+    /**
+     * Change how much is recorded about each call from now on.  Anything already recorded is kept.  Lowering the level means the controlled method does less work per call,
+     * which is useful when measuring throughput; at {@link RecordingLevel#Count} or {@link RecordingLevel#Off} nothing is allocated per call.
+     *
+     * @param recordingLevel how much to record about each call
+     * @return itself
+     */
+    Itself setRecordingLevel(RecordingLevel recordingLevel);
+
+    /**
+     * Only keep the given number of the most recent calls in the history, rather than keeping every call.  This is useful for long running tests, where keeping every
+     * call (and its arguments) would use up the heap.  The calls are kept in chunks of up to 256 calls, which are only created as calls are made, and are let go of once
+     * their calls have dropped out of the history (so a large capacity isn't allocated up front).  Any calls already in the history (which fit) are kept.
+     *
+     * @param maxCallsToKeep the most calls to keep, or {@link #UNBOUNDED_HISTORY} to keep them all
+     * @return itself
+     * @throws IllegalArgumentException if {@code maxCallsToKeep} is less than 1 (and isn't {@link #UNBOUNDED_HISTORY})
+     */
+    Itself setHistoryCapacity(int maxCallsToKeep);
 
     /**
      * Remove all the exits set for this controllable method
@@ -35,4 +86,53 @@ public interface ControllableMethod<Itself extends ControllableMethod<Itself, Re
      * @return itself
      */
     Itself clearExits();
+
+    /**
+     * Stop using the exits that have been added in order, and instead choose one of them at random for each call, according to the given weights (so for example, after adding
+     * a return value, a timeout exception and then a checked exception, weights of 97, 2 and 1 would make the method fail 3% of the time).  The memory used doesn't grow with
+     * the number of calls, and the threads calling the method don't contend with each other.
+     * <p/>
+     * Any exits added after this aren't used until this is called again (with weights for them too).  {@link #clearExits()} stops the weighted exits being used.
+     *
+     * @param seed    the seed for choosing the exits, so that a run can be reproduced by using the same seed (each thread chooses its own exits, which are the same in
+     *                each run as long as the thread has the same name)
+     * @param weights the weight of each of the exits added so far, in the order they were added
+     * @return itself
+     * @throws IllegalArgumentException if there isn't a weight for each exit, a weight is negative, or the weights are all zero
+     */
+    Itself useWeightedExits(long seed, int... weights);
+
+    /**
+     * Add exits which are used in turn, over and over, rather than each only being used once.  E.g. {@code method.addCyclicExits(new
+     * ExitCycle<Row>().normalExit(a).normalExit(a).uncheckedExceptionExit(timeout))} makes every third call fail, indefinitely, without having to keep adding exits.
+     * <p/>
+     * The cycle takes its place in the exits used in order, as if it were a single exit, so the exits added before it are used first.  As the cycle never runs out, any exits
+     * added after it are never used (until the exits are cleared).  Choosing the exit from the cycle never blocks, and creates nothing per call.
+     *
+     * @param cycle the exits to cycle through (at least one)
+     * @return itself
+     * @throws IllegalArgumentException if the cycle doesn't have any exits
+     */
+    Itself addCyclicExits(ExitCycle<ReturnType> cycle);
+
+    /**
+     * By default, if the thread calling the controlled method is interrupted while the method is waiting for an exit delay, the delay is cut short, and the method exits as it
+     * would have done (the thread's interrupt flag is left set, so the caller can still see it was interrupted).  This allows the method to exit by throwing the given exception
+     * instead (e.g. to simulate a client library which throws when interrupted).
+     *
+     * @param toThrow the exception to throw when interrupted, or null to go back to the default
+     * @return itself
+     */
+    Itself setUncheckedExceptionExitWhenInterrupted(RuntimeException toThrow);
+
+    /**
+     * Make every call wait for a latency drawn from the given distribution before exiting (on top of any delay given to the exit itself), so the controllable method behaves
+     * like a real dependency, with a long tail of slow calls.
+     *
+     * @param latency the distribution to draw the latencies from, or null for there to be no latency (other than each exit's own delay)
+     * @param seed    the seed for drawing the latencies, so that a run can be reproduced exactly by using the same seed (each thread draws its own latencies, which are the
+     *                same in each run as long as the thread has the same name, see {@link ExitLatency})
+     * @return itself
+     */
+    Itself setExitLatency(ExitLatency latency, long seed);
 }
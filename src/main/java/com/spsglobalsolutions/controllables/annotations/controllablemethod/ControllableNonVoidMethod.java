@@ -16,7 +16,14 @@
 
 package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author stevo58008
@@ -25,11 +32,29 @@ public class ControllableNonVoidMethod<Itself extends ControllableNonVoidMethod<
         implements ControllableMethod<Itself, ReturnType>, Throwing<Itself, ReturnType>
 {
 
-    protected final ControlledMethodHandler<ReturnType> controllableHandler;
+    private final ControlledNonVoidMethod<ReturnType> controlled;
 
-    public ControllableNonVoidMethod(final ControlledMethodHandler<ReturnType> controllableHandler)
+    public ControllableNonVoidMethod(final ControlledNonVoidMethod<ReturnType> controlled)
+    {
+        this.controlled = controlled;
+    }
+
+    /**
+     * @return this, as the type it was created as (so the methods configuring it can be chained).
+     */
+    @SuppressWarnings("unchecked")
+    final Itself itself()
     {
-        this.controllableHandler = controllableHandler;
+        return (Itself) this;
+    }
+
+    /**
+     * @return the handler of the controlled method (which is created now, if this is the first time the method has been configured).  Only for configuring the
+     * method: the history and call count are read from {@link ControlledNonVoidMethod#handlerForCalls()}, so looking at them doesn't create the handler.
+     */
+    protected final ControlledMethodHandler<ReturnType> controllableHandler()
+    {
+        return this.controlled.configuredHandler();
     }
 
     /**
@@ -40,41 +65,224 @@ public class ControllableNonVoidMethod<Itself extends ControllableNonVoidMethod<
      */
     public final Itself addNormalExit(final ReturnType returnValue)
     {
-        this.controllableHandler.addNormalExit(returnValue, 0);
-        return (Itself) this;
+        this.controllableHandler().addNormalExit(returnValue, 0);
+        return this.itself();
+    }
+
+    /**
+     * Add a normal exit for this method (so in this case, a return value, which will be returned), which is only used for the given calls (see {@link CalledWith}), rather
+     * than being added to the exits used in order.  E.g. {@code method.addNormalExitWhen(CalledWith.arguments(42L), row42)}.
+     *
+     * @param calledWith  which calls to use it for
+     * @param returnValue the value to return by this method
+     * @return itself
+     */
+    public final Itself addNormalExitWhen(final CalledWith calledWith, final ReturnType returnValue)
+    {
+        this.controllableHandler().addNormalExitWhen(calledWith, returnValue);
+        return this.itself();
     }
 
     /**
      * Add a normal exit for this method (so in this case, a return value, which will be returned), but also add a delay before the method will return.
      *
      * @param returnValue             the value to return by this method
-     * @param delayBeforeExitInMillis a value (in milliseconds) which will be used for this method to sleep before returning.
+     * @param delayBeforeExitInMillis a value (in milliseconds) which will be used for this method to wait before returning.
      * @return {@code returnValue} itself
      */
     public final Itself addNormalExit(final ReturnType returnValue, final long delayBeforeExitInMillis)
     {
-        this.controllableHandler.addNormalExit(returnValue, delayBeforeExitInMillis);
-        return (Itself) this;
+        return this.addNormalExit(returnValue, delayBeforeExitInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add a normal exit for this method (so in this case, a return value, which will be returned), but also add a delay before the method will return.  The delay can be
+     * sub-millisecond (e.g. to simulate a cache), as it is waited for with nanosecond precision.
+     *
+     * @param returnValue     the value to return by this method
+     * @param delayBeforeExit how long this method will wait for before returning
+     * @param unit            the unit of {@code delayBeforeExit}
+     * @return {@code returnValue} itself
+     */
+    public final Itself addNormalExit(final ReturnType returnValue, final long delayBeforeExit, final TimeUnit unit)
+    {
+        this.controllableHandler().addNormalExit(returnValue, unit.toNanos(delayBeforeExit));
+        return this.itself();
+    }
+
+    /**
+     * Add a normal exit, which returns the value for the given number of calls (e.g. to return the same value for the next 100,000 calls).  It is stored once, with a count, so
+     * it costs the same whatever the number of calls.
+     *
+     * @param returnValue the value to return
+     * @param times       how many calls to return it for (at least one)
+     * @return itself
+     */
+    public final Itself addRepeatedNormalExit(final ReturnType returnValue, final long times)
+    {
+        this.controllableHandler().addRepeatedNormalExit(returnValue, 0, times);
+        return this.itself();
+    }
+
+    /**
+     * Add normal exits, which return each of the values in turn (one per call).  Runs of equal values are stored once, with a count, so a list with long runs costs the same
+     * as one of just its distinct runs.
+     *
+     * @param returnValues the values to return, in order
+     * @return itself
+     */
+    public final Itself addNormalExits(final List<? extends ReturnType> returnValues)
+    {
+        this.controllableHandler().addNormalExits(returnValues);
+        return this.itself();
+    }
+
+    /**
+     * Add an exit which computes the value to return from the arguments of the call it is used for (e.g. to echo an argument back), so the values don't need to be created
+     * up front.  If the function throws an unchecked exception, then the method exits by throwing it.
+     *
+     * @param computeReturnValue works out the value to return from the arguments (in the order they are defined on the method signature)
+     * @return itself
+     */
+    public final Itself addComputedExit(final Function<Object[], ReturnType> computeReturnValue)
+    {
+        this.controllableHandler().addComputedExit(ComputedMethodExit.fromFunction(computeReturnValue));
+        return this.itself();
+    }
+
+    /**
+     * Add a sequence of normal exits, which return the values from the iterator, one per call.  The values are only pulled from the iterator as they are needed (and calls
+     * from many threads each get their own value), so a very long (or endless) sequence doesn't need to be created up front.  Once it runs out, the next exit is used, or if
+     * there isn't one, the last value is kept as the default.
+     *
+     * @param returnValues the values to return (e.g. from {@code stream.iterator()})
+     * @return itself
+     */
+    public final Itself addNormalExits(final Iterator<? extends ReturnType> returnValues)
+    {
+        this.controllableHandler().addNormalExits(returnValues);
+        return this.itself();
+    }
+
+    /**
+     * Add an endless sequence of normal exits, which return a value from the supplier for each call (calls from many threads get their values from it one at a time).
+     *
+     * @param returnValues supplies the value to return for each call
+     * @return itself
+     */
+    public final Itself addNormalExits(final Supplier<? extends ReturnType> returnValues)
+    {
+        this.controllableHandler().addNormalExits(GeneratedExitSequence.fromSupplier(returnValues));
+        return this.itself();
+    }
+
+    /**
+     * Add the exits in an exit script (see {@link ExitScriptWriter}), to be replayed one per call.  The exits are read from the script as they are needed, so it can be far
+     * bigger than the heap (e.g. a recorded dataset for a replay test).  Once they run out, the next exit is used, or if there isn't one, the last exit is kept as the default.
+     *
+     * @param script the exit script to replay
+     * @param codec  converts the bytes in the script back to return values
+     * @return itself
+     * @throws IOException if the script can't be read
+     */
+    public final Itself addScriptedExits(final Path script, final ExitValueCodec<ReturnType> codec) throws IOException
+    {
+        this.controllableHandler().addScriptedExits(script, codec);
+        return this.itself();
+    }
+
+    @Override
+    public final List<MethodCall<ReturnType>> getHistory()
+    {
+        return this.controlled.handlerForCalls().getHistory();
+    }
+
+    @Override
+    public final long getCallCount()
+    {
+        return this.controlled.handlerForCalls().getCallCount();
+    }
+
+    @Override
+    public final long[] getCallTimesInMillis()
+    {
+        return this.controlled.handlerForCalls().getCallTimesInMillis();
+    }
+
+    @Override
+    public final RecordingLevel getRecordingLevel()
+    {
+        return this.controlled.getRecordingLevel();
     }
 
     @Override
-    public final ImmutableList<MethodCall<ReturnType>> getHistory()
+    public final Itself setRecordingLevel(final RecordingLevel recordingLevel)
     {
-        return this.controllableHandler.getHistorySnapshot();
+        this.controllableHandler().setRecordingLevel(recordingLevel);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself setHistoryCapacity(final int maxCallsToKeep)
+    {
+        this.controllableHandler().setHistoryCapacity(maxCallsToKeep);
+        return this.itself();
     }
 
     @Override
     public final Itself clearExits()
     {
-        this.controllableHandler.clearAllExits();
-        return (Itself) this;
+        this.controllableHandler().clearAllExits();
+        return this.itself();
+    }
+
+    @Override
+    public final Itself useWeightedExits(final long seed, final int... weights)
+    {
+        this.controllableHandler().useWeightedExits(seed, weights);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself addCyclicExits(final ExitCycle<ReturnType> cycle)
+    {
+        this.controllableHandler().addCyclicExits(cycle);
+        return this.itself();
     }
 
     @Override
     public final Itself addUncheckedExceptionExit(final RuntimeException toThrow)
     {
-        this.controllableHandler.addUncheckedExceptionExit(toThrow);
-        return (Itself) this;
+        this.controllableHandler().addUncheckedExceptionExit(toThrow);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself addUncheckedExceptionExitWhen(final CalledWith calledWith, final RuntimeException toThrow)
+    {
+        this.controllableHandler().addUncheckedExceptionExitWhen(calledWith, toThrow);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself addRepeatedUncheckedExceptionExit(final RuntimeException toThrow, final long times)
+    {
+        this.controllableHandler().addRepeatedUncheckedExceptionExit(toThrow, times);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself setUncheckedExceptionExitWhenInterrupted(final RuntimeException toThrow)
+    {
+        this.controllableHandler().setUncheckedExceptionExitWhenInterrupted(toThrow);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself setExitLatency(final ExitLatency latency, final long seed)
+    {
+        this.controllableHandler().setExitLatency(latency, seed);
+        return this.itself();
     }
 
 
@@ -83,16 +291,30 @@ public class ControllableNonVoidMethod<Itself extends ControllableNonVoidMethod<
             implements Throwing.OneCheckedException<Itself, E1, ReturnType>
     {
 
-        public Throwing1CheckedException(final ControlledMethodHandler<ReturnType> controllableHandler)
+        public Throwing1CheckedException(final ControlledNonVoidMethod<ReturnType> controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException1Exit(final E1 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException1ExitWhen(final CalledWith calledWith, final E1 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException1Exit(final ExitComputation<ReturnType, ? extends E1> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 
@@ -101,16 +323,30 @@ public class ControllableNonVoidMethod<Itself extends ControllableNonVoidMethod<
             implements TwoCheckedExceptions<Itself, E1, E2, ReturnType>
     {
 
-        public Throwing2CheckedExceptions(final ControlledMethodHandler<ReturnType> controllableHandler)
+        public Throwing2CheckedExceptions(final ControlledNonVoidMethod<ReturnType> controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException2Exit(final E2 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException2ExitWhen(final CalledWith calledWith, final E2 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException2Exit(final ExitComputation<ReturnType, ? extends E2> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 
@@ -120,16 +356,30 @@ public class ControllableNonVoidMethod<Itself extends ControllableNonVoidMethod<
             implements ThreeCheckedExceptions<Itself, E1, E2, E3, ReturnType>
     {
 
-        public Throwing3CheckedExceptions(final ControlledMethodHandler<ReturnType> controllableHandler)
+        public Throwing3CheckedExceptions(final ControlledNonVoidMethod<ReturnType> controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException3Exit(final E3 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException3ExitWhen(final CalledWith calledWith, final E3 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException3Exit(final ExitComputation<ReturnType, ? extends E3> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 
@@ -140,16 +390,30 @@ public class ControllableNonVoidMethod<Itself extends ControllableNonVoidMethod<
     {
 
 
-        public Throwing4CheckedExceptions(final ControlledMethodHandler<ReturnType> controllableHandler)
+        public Throwing4CheckedExceptions(final ControlledNonVoidMethod<ReturnType> controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException4Exit(final E4 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException4ExitWhen(final CalledWith calledWith, final E4 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException4Exit(final ExitComputation<ReturnType, ? extends E4> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 
@@ -159,16 +423,30 @@ public class ControllableNonVoidMethod<Itself extends ControllableNonVoidMethod<
             implements FiveCheckedExceptions<Itself, E1, E2, E3, E4, E5, ReturnType>
     {
 
-        public Throwing5CheckedExceptions(final ControlledMethodHandler<ReturnType> controllableHandler)
+        public Throwing5CheckedExceptions(final ControlledNonVoidMethod<ReturnType> controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException5Exit(final E5 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException5ExitWhen(final CalledWith calledWith, final E5 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException5Exit(final ExitComputation<ReturnType, ? extends E5> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 }
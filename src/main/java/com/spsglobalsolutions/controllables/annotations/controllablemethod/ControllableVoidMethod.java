@@ -16,7 +16,12 @@
 
 package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Function;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author stevo58008
@@ -25,11 +30,29 @@ public class ControllableVoidMethod<Itself extends ControllableVoidMethod<Itself
         implements ControllableMethod<Itself, Void>, Throwing<Itself, Void>
 {
 
-    protected final ControlledMethodHandler<Void> controllableHandler;
+    private final ControlledVoidMethod controlled;
 
-    public ControllableVoidMethod(final ControlledMethodHandler<Void> controllableHandler)
+    public ControllableVoidMethod(final ControlledVoidMethod controlled)
     {
-        this.controllableHandler = controllableHandler;
+        this.controlled = controlled;
+    }
+
+    /**
+     * @return this, as the type it was created as (so the methods configuring it can be chained).
+     */
+    @SuppressWarnings("unchecked")
+    final Itself itself()
+    {
+        return (Itself) this;
+    }
+
+    /**
+     * @return the handler of the controlled method (which is created now, if this is the first time the method has been configured).  Only for configuring the
+     * method: the history and call count are read from {@link ControlledVoidMethod#handlerForCalls()}, so looking at them doesn't create the handler.
+     */
+    protected final ControlledMethodHandler<Void> controllableHandler()
+    {
+        return this.controlled.configuredHandler();
     }
 
     /**
@@ -39,40 +62,180 @@ public class ControllableVoidMethod<Itself extends ControllableVoidMethod<Itself
      */
     public final Itself addNormalExit()
     {
-        this.controllableHandler.addNormalExit(null, 0);
-        return (Itself) this;
+        this.controllableHandler().addNormalExit(null, 0);
+        return this.itself();
+    }
+
+    /**
+     * Add a normal exit for this method (so in this case, nothing), which is only used for the given calls (see {@link CalledWith}), rather than being added to the exits
+     * used in order.
+     *
+     * @param calledWith which calls to use it for
+     * @return itself
+     */
+    public final Itself addNormalExitWhen(final CalledWith calledWith)
+    {
+        this.controllableHandler().addNormalExitWhen(calledWith, null);
+        return this.itself();
     }
 
     /**
      * Add a normal exit for this method (so in this case, nothing), but also add a delay before the method will return.
      *
-     * @param delayBeforeExitInMillis a value (in milliseconds) which will be used for this method to sleep before returning.
+     * @param delayBeforeExitInMillis a value (in milliseconds) which will be used for this method to wait before returning.
      * @return {@code returnValue} itself
      */
     public final Itself addNormalExit(final long delayBeforeExitInMillis)
     {
-        this.controllableHandler.addNormalExit(null, delayBeforeExitInMillis);
-        return (Itself) this;
+        return this.addNormalExit(delayBeforeExitInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add a normal exit for this method (so in this case, nothing), but also add a delay before the method will return.  The delay can be sub-millisecond (e.g. to simulate a
+     * cache), as it is waited for with nanosecond precision.
+     *
+     * @param delayBeforeExit how long this method will wait for before returning
+     * @param unit            the unit of {@code delayBeforeExit}
+     * @return {@code returnValue} itself
+     */
+    public final Itself addNormalExit(final long delayBeforeExit, final TimeUnit unit)
+    {
+        this.controllableHandler().addNormalExit(null, unit.toNanos(delayBeforeExit));
+        return this.itself();
+    }
+
+    /**
+     * Add a normal exit for this method (so in this case, nothing), which is used for the given number of calls.  It is stored once, with a count, so it costs the same
+     * whatever the number of calls.
+     *
+     * @param times how many calls to use it for (at least one)
+     * @return {@code returnValue} itself
+     */
+    public final Itself addRepeatedNormalExit(final long times)
+    {
+        this.controllableHandler().addRepeatedNormalExit(null, 0, times);
+        return this.itself();
+    }
+
+    /**
+     * Add an exit which is computed from the arguments of the call it is used for (e.g. to throw an exception for some arguments).  If the function throws an unchecked
+     * exception, then the method exits by throwing it, otherwise it exits normally (and the value the function returns is ignored).
+     *
+     * @param computeExit works out how to exit from the arguments (in the order they are defined on the method signature)
+     * @return itself
+     */
+    public final Itself addComputedExit(final Function<Object[], Void> computeExit)
+    {
+        this.controllableHandler().addComputedExit(ComputedMethodExit.fromFunction(computeExit));
+        return this.itself();
+    }
+
+    /**
+     * Add the exits in an exit script (see {@link ExitScriptWriter}, using {@link ExitValueCodecs#nothing()}), to be replayed one per call.  The exits are read from the script
+     * as they are needed, so it can be far bigger than the heap.  Once they run out, the next exit is used, or if there isn't one, the last exit is kept as the default.
+     *
+     * @param script the exit script to replay
+     * @return itself
+     * @throws IOException if the script can't be read
+     */
+    public final Itself addScriptedExits(final Path script) throws IOException
+    {
+        this.controllableHandler().addScriptedExits(script, ExitValueCodecs.nothing());
+        return this.itself();
+    }
+
+    @Override
+    public final List<MethodCall<Void>> getHistory()
+    {
+        return this.controlled.handlerForCalls().getHistory();
+    }
+
+    @Override
+    public final long getCallCount()
+    {
+        return this.controlled.handlerForCalls().getCallCount();
+    }
+
+    @Override
+    public final long[] getCallTimesInMillis()
+    {
+        return this.controlled.handlerForCalls().getCallTimesInMillis();
+    }
+
+    @Override
+    public final RecordingLevel getRecordingLevel()
+    {
+        return this.controlled.getRecordingLevel();
+    }
+
+    @Override
+    public final Itself setRecordingLevel(final RecordingLevel recordingLevel)
+    {
+        this.controllableHandler().setRecordingLevel(recordingLevel);
+        return this.itself();
     }
 
     @Override
-    public final ImmutableList<MethodCall<Void>> getHistory()
+    public final Itself setHistoryCapacity(final int maxCallsToKeep)
     {
-        return this.controllableHandler.getHistorySnapshot();
+        this.controllableHandler().setHistoryCapacity(maxCallsToKeep);
+        return this.itself();
     }
 
     @Override
     public final Itself clearExits()
     {
-        this.controllableHandler.clearAllExits();
-        return (Itself) this;
+        this.controllableHandler().clearAllExits();
+        return this.itself();
+    }
+
+    @Override
+    public final Itself useWeightedExits(final long seed, final int... weights)
+    {
+        this.controllableHandler().useWeightedExits(seed, weights);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself addCyclicExits(final ExitCycle<Void> cycle)
+    {
+        this.controllableHandler().addCyclicExits(cycle);
+        return this.itself();
     }
 
     @Override
     public final Itself addUncheckedExceptionExit(final RuntimeException toThrow)
     {
-        this.controllableHandler.addUncheckedExceptionExit(toThrow);
-        return (Itself) this;
+        this.controllableHandler().addUncheckedExceptionExit(toThrow);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself addUncheckedExceptionExitWhen(final CalledWith calledWith, final RuntimeException toThrow)
+    {
+        this.controllableHandler().addUncheckedExceptionExitWhen(calledWith, toThrow);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself addRepeatedUncheckedExceptionExit(final RuntimeException toThrow, final long times)
+    {
+        this.controllableHandler().addRepeatedUncheckedExceptionExit(toThrow, times);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself setUncheckedExceptionExitWhenInterrupted(final RuntimeException toThrow)
+    {
+        this.controllableHandler().setUncheckedExceptionExitWhenInterrupted(toThrow);
+        return this.itself();
+    }
+
+    @Override
+    public final Itself setExitLatency(final ExitLatency latency, final long seed)
+    {
+        this.controllableHandler().setExitLatency(latency, seed);
+        return this.itself();
     }
 
 
@@ -82,16 +245,30 @@ public class ControllableVoidMethod<Itself extends ControllableVoidMethod<Itself
     {
 
         public Throwing1CheckedException(
-                final ControlledMethodHandler<Void> controllableHandler)
+                final ControlledVoidMethod controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException1Exit(final E1 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException1ExitWhen(final CalledWith calledWith, final E1 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException1Exit(final ExitComputation<Void, ? extends E1> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 
@@ -101,16 +278,30 @@ public class ControllableVoidMethod<Itself extends ControllableVoidMethod<Itself
     {
 
         public Throwing2CheckedExceptions(
-                final ControlledMethodHandler<Void> controllableHandler)
+                final ControlledVoidMethod controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException2Exit(final E2 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException2ExitWhen(final CalledWith calledWith, final E2 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException2Exit(final ExitComputation<Void, ? extends E2> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 
@@ -120,16 +311,30 @@ public class ControllableVoidMethod<Itself extends ControllableVoidMethod<Itself
     {
 
         public Throwing3CheckedExceptions(
-                final ControlledMethodHandler<Void> controllableHandler)
+                final ControlledVoidMethod controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException3Exit(final E3 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException3ExitWhen(final CalledWith calledWith, final E3 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException3Exit(final ExitComputation<Void, ? extends E3> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 
@@ -140,16 +345,30 @@ public class ControllableVoidMethod<Itself extends ControllableVoidMethod<Itself
     {
 
         public Throwing4CheckedExceptions(
-                final ControlledMethodHandler<Void> controllableHandler)
+                final ControlledVoidMethod controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException4Exit(final E4 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException4ExitWhen(final CalledWith calledWith, final E4 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException4Exit(final ExitComputation<Void, ? extends E4> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 
@@ -160,16 +379,30 @@ public class ControllableVoidMethod<Itself extends ControllableVoidMethod<Itself
     {
 
         public Throwing5CheckedExceptions(
-                final ControlledMethodHandler<Void> controllableHandler)
+                final ControlledVoidMethod controlled)
         {
-            super(controllableHandler);
+            super(controlled);
         }
 
         @Override
         public final Itself addCheckedException5Exit(final E5 toThrow)
         {
-            this.controllableHandler.addExceptionExit(toThrow);
-            return (Itself) this;
+            this.controllableHandler().addExceptionExit(toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addCheckedException5ExitWhen(final CalledWith calledWith, final E5 toThrow)
+        {
+            this.controllableHandler().addExceptionExitWhen(calledWith, toThrow);
+            return this.itself();
+        }
+
+        @Override
+        public final Itself addComputedCheckedException5Exit(final ExitComputation<Void, ? extends E5> computation)
+        {
+            this.controllableHandler().addComputedExit(computation);
+            return this.itself();
         }
     }
 }
@@ -16,12 +16,14 @@
 
 package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Objects;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class which handles the details of a controllable method (whether void or not).  Has functionality to do the controllable stuff (getting history, adding exits).
@@ -31,26 +33,155 @@ import java.util.NoSuchElementException;
 class ControlledMethodHandler<MethodReturnType>
 {
 
-    private final List<MethodExit<MethodReturnType>> exitQueue = Collections.synchronizedList(new ArrayList<MethodExit<MethodReturnType>>());
-    private final List<MethodCall<MethodReturnType>> callHistory = Collections.synchronizedList(new ArrayList<MethodCall<MethodReturnType>>());
+    static final Object[] NO_ARGUMENTS = new Object[0];
 
+    // never configured (it is only ever used for calls, and has no exits, so calls just fail), so it can be shared by every method which hasn't been configured yet
+    private static final ControlledMethodHandler<Object> UNCONFIGURED = new ControlledMethodHandler<>(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Off);
+
+    private final ExitQueue<MethodReturnType> exitQueue = new ExitQueue<>();
+    private final AtomicLong callCount = new AtomicLong();
+    private volatile RecordingLevel recordingLevel;
+    private volatile CallHistory<MethodReturnType> callHistory;
+    private volatile CallTimestamps callTimestamps; // only created once the recording level is first set to Timestamps
+    private int historyCapacity; // only used while holding the lock
+    private volatile MethodExit<MethodReturnType> interruptedExit;
+    private volatile SeededExitLatency exitLatency;
+    private volatile WeightedExits<MethodReturnType> weightedExits;
+    private final ArgumentKeyedExits<MethodReturnType> argumentKeyedExits = new ArgumentKeyedExits<>();
+    private volatile boolean exitsUseArguments; // set once an exit which looks at the arguments is added (and never unset, so a call never misses them)
+
+    ControlledMethodHandler()
+    {
+        this(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+    }
+
+    /**
+     * @param historyCapacity the most calls to keep in the history, or {@link ControllableMethod#UNBOUNDED_HISTORY} to keep them all
+     * @param recordingLevel  how much to record about each call
+     */
+    ControlledMethodHandler(final int historyCapacity, final RecordingLevel recordingLevel)
+    {
+        this.callHistory = CallHistory.withCapacity(historyCapacity);
+        this.historyCapacity = historyCapacity;
+        this.setRecordingLevel(recordingLevel);
+    }
+
+    /**
+     * @return the handler which is shared by every controlled method that hasn't been configured yet.  It has no exits, so any call to it fails, just as it would for a method
+     * with its own handler, which hadn't had any exits added.
+     */
+    @SuppressWarnings("unchecked") // it never has an exit, so never returns a value of any type
+    static <MethodReturnType> ControlledMethodHandler<MethodReturnType> unconfigured()
+    {
+        return (ControlledMethodHandler<MethodReturnType>) UNCONFIGURED;
+    }
+
+    boolean isUnconfigured()
+    {
+        return this == UNCONFIGURED;
+    }
+
+    /**
+     * @return an unmodifiable view of the method's call history up to this point in time (just the most recent calls, if the history has a capacity), which is taken without
+     * copying the history, and doesn't change as more calls are made.
+     */
+    public List<MethodCall<MethodReturnType>> getHistory()
+    {
+        return this.callHistory.snapshot();
+    }
+
+    /**
+     * @return the times of the calls made while recording at {@link RecordingLevel#Timestamps} (just the most recent ones, if the history has a capacity), oldest first.
+     */
+    public long[] getCallTimesInMillis()
+    {
+        final CallTimestamps timestamps = this.callTimestamps;
+        return timestamps == null ? new long[0] : timestamps.snapshot();
+    }
+
+    /**
+     * @return how many times the method has been called (whether or not those calls are all still in the history), while recording at any level apart from {@link
+     * RecordingLevel#Off}.
+     */
+    public long getCallCount()
+    {
+        return this.callCount.get();
+    }
+
+    public RecordingLevel getRecordingLevel()
+    {
+        return this.recordingLevel;
+    }
+
+    /**
+     * Change how much is recorded about each call from now on (anything already recorded is kept).
+     *
+     * @param recordingLevel how much to record about each call
+     */
+    public synchronized void setRecordingLevel(final RecordingLevel recordingLevel)
+    {
+        if(recordingLevel == null)
+        {
+            throw new IllegalArgumentException("The recording level cannot be null");
+        }
+        if(recordingLevel == RecordingLevel.Timestamps && this.callTimestamps == null)
+        {
+            this.callTimestamps = new CallTimestamps(this.historyCapacity); // before the level is set, so a call recording its time always finds it
+        }
+        this.recordingLevel = recordingLevel;
+    }
 
     /**
-     * @return a snapshot of the method's call history up to this point in time.
+     * Change how many calls (or call times) are kept in the history.  The most recent calls (which fit in the new capacity) are kept, and the call count is unaffected.  Any
+     * calls which are made while the capacity is being changed may not be kept.
+     *
+     * @param historyCapacity the most calls to keep in the history, or {@link ControllableMethod#UNBOUNDED_HISTORY} to keep them all
      */
-    public ImmutableList<MethodCall<MethodReturnType>> getHistorySnapshot()
+    public synchronized void setHistoryCapacity(final int historyCapacity)
     {
-        synchronized(this.callHistory)
-        { // i imagine internally it is iterating over the collection - and maybe/maybe not syncs - so a little belt and braces
-            return ImmutableList.copyOf(this.callHistory);
+        this.callHistory = this.callHistory.copyWithCapacity(historyCapacity);
+        this.historyCapacity = historyCapacity;
+        if(this.callTimestamps != null)
+        {
+            this.callTimestamps = this.callTimestamps.copyWithCapacity(historyCapacity);
         }
     }
 
     /**
-     * Clear the exit queue
+     * Clear the exit queue (and stop using any weighted exits)
      */
     public void clearAllExits()
     {
+        this.weightedExits = null;
+        this.argumentKeyedExits.clear();
+        this.exitQueue.clear();
+    }
+
+    /**
+     * Add the exits of the cycle, which are used in turn, forever, to the end of the exit queue, as a single {@link CyclicExits}.
+     *
+     * @param cycle the exits to cycle through
+     * @throws IllegalArgumentException if the cycle is null, or doesn't have any exits
+     */
+    public void addCyclicExits(final ExitCycle<MethodReturnType> cycle)
+    {
+        if(cycle == null)
+        {
+            throw new IllegalArgumentException("The exit cycle cannot be null");
+        }
+        this.addExit(new CyclicExits<>(this, cycle.exitsFor(this)));
+    }
+
+    /**
+     * Take the exits currently in the exit queue, and from now on choose one of them at random (according to the given weights) for each call, rather than using them in order.
+     *
+     * @param seed    the seed for choosing the exits, so the same seed chooses the same exits
+     * @param weights the weight of each exit in the queue (in the order they were added)
+     * @throws IllegalArgumentException if there isn't a weight for each exit, a weight is negative, or the weights are all zero
+     */
+    public void useWeightedExits(final long seed, final int... weights)
+    {
+        this.weightedExits = new WeightedExits<>(this.exitQueue.currentExits(), weights, seed);
         this.exitQueue.clear();
     }
 
@@ -58,11 +189,138 @@ class ControlledMethodHandler<MethodReturnType>
      * Add a normal exit (so a void or return type value) to the end of the exit queue.
      *
      * @param value       the type that is should be added
-     * @param msExitDelay how long to sleep for (in ms) before exiting
+     * @param nsExitDelay how long to wait for (in ns) before exiting
+     */
+    public void addNormalExit(final MethodReturnType value, final long nsExitDelay)
+    {
+        this.addExit(new MethodExit<>(this, value, nsExitDelay));
+    }
+
+    /**
+     * Add a normal exit, which is used for the given number of calls, to the end of the exit queue.  It is stored as a single exit and a count, so it costs the same whatever
+     * the number of calls.
+     *
+     * @param value       the value to return
+     * @param nsExitDelay how long to wait for (in ns) before exiting
+     * @param times       how many calls to use it for
+     */
+    public void addRepeatedNormalExit(final MethodReturnType value, final long nsExitDelay, final long times)
+    {
+        this.addRepeatedExit(new MethodExit<>(this, value, nsExitDelay), times);
+    }
+
+    /**
+     * Add an exit which throws the Runtime exception, and is used for the given number of calls, to the end of the exit queue.
+     *
+     * @param exceptionToThrow the exception to throw
+     * @param times            how many calls to use it for
+     */
+    public void addRepeatedUncheckedExceptionExit(final RuntimeException exceptionToThrow, final long times)
+    {
+        this.addRepeatedExit(new MethodExit<MethodReturnType>(this, exceptionToThrow, 0), times);
+    }
+
+    /**
+     * Add normal exits which return each of the values in turn, to the end of the exit queue.  Runs of equal values are stored as a single exit and a count, so it costs the
+     * same as adding just the distinct runs.
+     *
+     * @param returnValues the values to return, in order
      */
-    public void addNormalExit(final MethodReturnType value, final long msExitDelay)
+    public void addNormalExits(final List<? extends MethodReturnType> returnValues)
+    {
+        if(returnValues == null)
+        {
+            throw new IllegalArgumentException("The list of return values cannot be null");
+        }
+        int runStart = 0;
+        for(int i = 1; i <= returnValues.size(); i++)
+        {
+            if(i == returnValues.size() || !Objects.equal(returnValues.get(i), returnValues.get(runStart)))
+            {
+                this.addRepeatedExit(new MethodExit<MethodReturnType>(this, returnValues.get(runStart), 0), i - runStart);
+                runStart = i;
+            }
+        }
+    }
+
+    private void addRepeatedExit(final MethodExit<MethodReturnType> exit, final long times)
     {
-        this.exitQueue.add(new MethodExit<>(this, value, msExitDelay));
+        if(times < 1)
+        {
+            throw new IllegalArgumentException("An exit must be used at least once, not " + times + " times");
+        }
+        this.addExit(times == 1 ? exit : new RepeatedExit<>(this, exit, times));
+    }
+
+    /**
+     * Add a sequence of normal exits, which return the values from the iterator (one per call), to the end of the exit queue.  The values are only pulled from the iterator as
+     * they are needed, and once it runs out, the queue moves on to the next exit (or, if there isn't one, keeps returning the last value).
+     *
+     * @param returnValues the values to return
+     */
+    public void addNormalExits(final Iterator<? extends MethodReturnType> returnValues)
+    {
+        if(returnValues == null)
+        {
+            throw new IllegalArgumentException("The iterator of return values cannot be null");
+        }
+        this.addExit(new GeneratedExitSequence<>(this, returnValues));
+    }
+
+    /**
+     * Add the exits in an exit script (see {@link ExitScriptWriter}) to the end of the exit queue.  They are read from the script one per call, as they are needed, so the
+     * script can be far bigger than the heap.
+     *
+     * @param script the exit script to replay
+     * @param codec  converts the bytes in the script back to return values
+     * @throws IOException if the script can't be read
+     */
+    public void addScriptedExits(final Path script, final ExitValueCodec<MethodReturnType> codec) throws IOException
+    {
+        if(script == null || codec == null)
+        {
+            throw new IllegalArgumentException("The exit script and codec cannot be null");
+        }
+        this.addExit(new ScriptedExitSequence<>(this, script, codec, ScriptedExitSequence.DEFAULT_WINDOW_SIZE));
+    }
+
+    /**
+     * Set the exception to throw if the thread calling the method is interrupted while it is waiting for an exit delay (instead of just cutting the delay short, and exiting as
+     * it would have done).
+     *
+     * @param exceptionToThrow the exception to throw, or null to go back to just cutting the delay short
+     */
+    public void setUncheckedExceptionExitWhenInterrupted(final RuntimeException exceptionToThrow)
+    {
+        this.interruptedExit = exceptionToThrow == null ? null : new MethodExit<MethodReturnType>(this, exceptionToThrow, 0);
+    }
+
+    /**
+     * Set the distribution that the latency of every call is drawn from (on top of each exit's own delay).
+     *
+     * @param latency the distribution to draw from, or null for there to be no latency (other than each exit's own delay)
+     * @param seed    the seed for drawing the latencies, so the same seed gives the same latencies
+     */
+    public void setExitLatency(final ExitLatency latency, final long seed)
+    {
+        this.exitLatency = latency == null ? null : new SeededExitLatency(latency, SeededRandom.perThread(seed));
+    }
+
+    /**
+     * @return the latency (in nanoseconds) to wait for before exiting this call (on top of the exit's own delay), which is zero if no latency distribution has been set.
+     */
+    long nextExitLatencyInNanos()
+    {
+        final SeededExitLatency currentExitLatency = this.exitLatency;
+        return currentExitLatency == null ? 0 : currentExitLatency.latency.nextLatencyInNanos(currentExitLatency.random.get());
+    }
+
+    /**
+     * @return the exit to use if the calling thread is interrupted while waiting for an exit delay, or null if the delay should just be cut short.
+     */
+    MethodExit<MethodReturnType> getInterruptedExit()
+    {
+        return this.interruptedExit;
     }
 
     /**
@@ -72,17 +330,113 @@ class ControlledMethodHandler<MethodReturnType>
      */
     public <T extends RuntimeException> void addUncheckedExceptionExit(final T exceptionToThrow)
     {
-        this.exitQueue.add(new MethodExit<MethodReturnType>(this, exceptionToThrow, 0));
+        this.addExit(new MethodExit<MethodReturnType>(this, exceptionToThrow, 0));
+    }
+
+    private void addExit(final MethodExit<MethodReturnType> exit)
+    {
+        this.exitQueue.add(exit);
+    }
+
+    /**
+     * Add a normal exit (so a void or return type value), which is only used for the given calls, rather than being added to the exit queue.
+     *
+     * @param calledWith which calls to use it for
+     * @param value      the value to return
+     */
+    public void addNormalExitWhen(final CalledWith calledWith, final MethodReturnType value)
+    {
+        this.addExitWhen(calledWith, new MethodExit<>(this, value, 0));
     }
 
     /**
-     * Store this call to the history
+     * Add an exit which throws the Runtime exception, and is only used for the given calls, rather than being added to the exit queue.
      *
-     * @param callInfo the details of the method call
+     * @param calledWith       which calls to use it for
+     * @param exceptionToThrow the exception to throw
      */
-    void addCall(final MethodCall<MethodReturnType> callInfo)
+    public void addUncheckedExceptionExitWhen(final CalledWith calledWith, final RuntimeException exceptionToThrow)
     {
-        this.callHistory.add(callInfo);
+        this.addExitWhen(calledWith, new MethodExit<MethodReturnType>(this, exceptionToThrow, 0));
+    }
+
+    /**
+     * Only some subclasses should be adding checked exceptions, which are only used for the given calls
+     *
+     * @param calledWith       which calls to use it for
+     * @param exceptionToThrow the exception to throw
+     */
+    protected void addExceptionExitWhen(final CalledWith calledWith, final Exception exceptionToThrow)
+    {
+        this.addExitWhen(calledWith, new MethodExit<MethodReturnType>(this, exceptionToThrow, 0));
+    }
+
+    private void addExitWhen(final CalledWith calledWith, final MethodExit<MethodReturnType> exit)
+    {
+        if(calledWith == null)
+        {
+            throw new IllegalArgumentException("Which calls to use the exit for cannot be null");
+        }
+        this.exitsUseArguments = true;
+        calledWith.addTo(this.argumentKeyedExits, exit);
+    }
+
+    /**
+     * Record this call, to whatever level we are currently recording at.  Nothing is allocated unless recording at {@link RecordingLevel#Full}.
+     *
+     * @param howItExited          the exit used for the call
+     * @param entryTimeInNanos     the {@link System#nanoTime()} when the controlled method was entered (taken before its exit was chosen)
+     * @param methodArgumentValues the arguments that were passed to the controlled method
+     * @return the call which was stored in the history (so it can be told when the controlled method exits), or null if not recording at {@link RecordingLevel#Full}.
+     */
+    MethodCall<MethodReturnType> recordCall(final MethodExit<MethodReturnType> howItExited, final long entryTimeInNanos, final Object[] methodArgumentValues)
+    {
+        switch(this.recordingLevel)
+        {
+            case Off:
+                return null;
+            case Count:
+                this.callCount.incrementAndGet();
+                return null;
+            case Timestamps:
+                this.callCount.incrementAndGet();
+                this.callTimestamps.add(System.currentTimeMillis());
+                return null;
+            default:
+                this.callCount.incrementAndGet();
+                final MethodCall<MethodReturnType> call = MethodCall.entered(howItExited, entryTimeInNanos, methodArgumentValues);
+                this.callHistory.add(call);
+                return call;
+        }
+    }
+
+    /**
+     * Add an exit which is computed from the arguments of each call it is used for, to the end of the exit queue.
+     *
+     * @param computation works out how the method exits
+     */
+    public void addComputedExit(final ExitComputation<MethodReturnType, ?> computation)
+    {
+        if(computation == null)
+        {
+            throw new IllegalArgumentException("The exit computation cannot be null");
+        }
+        this.exitsUseArguments = true;
+        this.addExit(new ComputedMethodExit<>(this, computation));
+    }
+
+    /**
+     * Whether anything needs the arguments of a call; either to record them (at {@link RecordingLevel#Full}), or because there are exits which depend on them (argument keyed
+     * or computed exits).  If not, the controlled method can exit without them (see {@link #NO_ARGUMENTS}), so it doesn't have to put them into an array (or box the primitive
+     * ones) for every call.
+     * <p/>
+     * A call made while the recording level is being raised, or while the first exit depending on the arguments is being added, may be made without its arguments.
+     *
+     * @return true if the arguments need to be passed in for each call.
+     */
+    boolean isUsingArguments()
+    {
+        return this.exitsUseArguments || this.recordingLevel == RecordingLevel.Full;
     }
 
     /**
@@ -92,7 +446,7 @@ class ControlledMethodHandler<MethodReturnType>
      */
     protected <T extends Exception> void addExceptionExit(final T exceptionToThrow)
     {
-        this.exitQueue.add(new MethodExit<MethodReturnType>(this, exceptionToThrow, 0));
+        this.addExit(new MethodExit<MethodReturnType>(this, exceptionToThrow, 0));
     }
 
 
@@ -103,36 +457,53 @@ class ControlledMethodHandler<MethodReturnType>
      * the "default" return value, until another one is added.
      * <p/>
      * If there are no elements in the queue, and have never been, then a ControllableMethodException is thrown.
+     * <p/>
+     * If weighted exits are being used, then one of them is chosen at random instead (and the queue is ignored).
+     * <p/>
+     * Before any of that though, if there is an exit for the arguments the method was called with (either exactly, or by a matcher), then that is used.
      *
+     * @param methodArgumentValues the arguments the method was called with
      * @return
      * @throws ControllableMethodException is thrown if there are (and have never been) any MethodExit elements in the exit queue.
      */
-    protected MethodExit<MethodReturnType> getNextExit()
+    protected MethodExit<MethodReturnType> getNextExit(final Object[] methodArgumentValues)
+    {
+        return this.findNextExit(methodArgumentValues).exitFor(methodArgumentValues);
+    }
+
+    private MethodExit<MethodReturnType> findNextExit(final Object[] methodArgumentValues)
     {
-        try
+        final MethodExit<MethodReturnType> argumentKeyedExit = this.argumentKeyedExits.find(methodArgumentValues);
+        if(argumentKeyedExit != null)
         {
-            // add the next one off the stack (end of list), but if it is the last one, then leave it on the stack (so there is always something for this method to return)
-            synchronized(this.exitQueue) // sync so can't add to it while i see if it is empty
-            {
-                final int stackSize = this.exitQueue.size();
-                if(stackSize == 0)
-                {
-                    throw new NoSuchElementException("There have been no MethodExit elements added.  " +
-                                                     "At least one must be added (used as default exit), otherwise the method cannot be controlled");
-                }
-                else if(stackSize == 1)
-                {
-                    return this.exitQueue.get(0); // don't remove the last element
-                }
-                else
-                {
-                    return this.exitQueue.remove(0); // remove the next (first/oldest) element
-                }
-            }
+            return argumentKeyedExit;
+        }
+        final WeightedExits<MethodReturnType> currentWeightedExits = this.weightedExits;
+        if(currentWeightedExits != null)
+        {
+            return currentWeightedExits.next();
+        }
+        // the queue takes care of leaving the last one in place (so there is always something for this method to return), and never blocks
+        final MethodExit<MethodReturnType> nextExit = this.exitQueue.next();
+        if(nextExit == null)
+        {
+            throw new ControllableMethodException(new NoSuchElementException(
+                    "There have been no MethodExit elements added.  " +
+                    "At least one must be added (used as default exit), otherwise the method cannot be controlled"));
         }
-        catch(final Exception e)
+        return nextExit;
+    }
+
+    private static final class SeededExitLatency
+    {
+
+        private final ExitLatency latency;
+        private final ThreadLocal<SeededRandom> random;
+
+        private SeededExitLatency(final ExitLatency latency, final ThreadLocal<SeededRandom> random)
         {
-            throw new ControllableMethodException(e);
+            this.latency = latency;
+            this.random = random;
         }
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * A description of a controlled method (its name, return type, parameter types and checked exceptions, as they appear in the source), along with the integer ID it was
+ * given by a controllable generated with {@code @Controllable(indexedMethods = true)}.  The generated class has a list of these (in order of ID), so a tool can find out about
+ * any of its controlled methods without reflection.
+ *
+ * @author stevo58008
+ */
+public final class ControlledMethodInfo
+{
+
+    private final int id;
+    private final String name;
+    private final String returnType;
+    private final ImmutableList<String> parameterTypes;
+    private final ImmutableList<String> checkedExceptions;
+
+    /**
+     * @param id                the ID of the method (its index in the list of methods)
+     * @param name              the name of the method
+     * @param returnType        the return type of the method, as it appears in the source (e.g. "java.util.List&lt;java.lang.String&gt;")
+     * @param parameterTypes    the type of each parameter, in order
+     * @param checkedExceptions the checked exceptions the method declares, in order
+     */
+    public ControlledMethodInfo(final int id, final String name, final String returnType, final String[] parameterTypes, final String[] checkedExceptions)
+    {
+        this.id = id;
+        this.name = name;
+        this.returnType = returnType;
+        this.parameterTypes = ImmutableList.copyOf(parameterTypes);
+        this.checkedExceptions = ImmutableList.copyOf(checkedExceptions);
+    }
+
+    /**
+     * @param methods the info for each method, in order of ID
+     * @return the info for each method, where each method's ID is its index in the list.
+     * @throws IllegalArgumentException if a method's ID isn't its index
+     */
+    public static ImmutableList<ControlledMethodInfo> listOf(final ControlledMethodInfo... methods)
+    {
+        for(int id = 0; id < methods.length; id++)
+        {
+            if(methods[id].getId() != id)
+            {
+                throw new IllegalArgumentException("The method at index " + id + " has the ID " + methods[id].getId() + " : " + methods[id]);
+            }
+        }
+        return ImmutableList.copyOf(methods);
+    }
+
+    public int getId()
+    {
+        return this.id;
+    }
+
+    public String getName()
+    {
+        return this.name;
+    }
+
+    public String getReturnType()
+    {
+        return this.returnType;
+    }
+
+    public boolean isVoid()
+    {
+        return "void".equals(this.returnType);
+    }
+
+    public List<String> getParameterTypes()
+    {
+        return this.parameterTypes;
+    }
+
+    public List<String> getCheckedExceptions()
+    {
+        return this.checkedExceptions;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(this.returnType).append(' ').append(this.name).append('(');
+        for(int i = 0; i < this.parameterTypes.size(); i++)
+        {
+            sb.append(i == 0 ? "" : ", ").append(this.parameterTypes.get(i));
+        }
+        sb.append(')');
+        for(int i = 0; i < this.checkedExceptions.size(); i++)
+        {
+            sb.append(i == 0 ? " throws " : ", ").append(this.checkedExceptions.get(i));
+        }
+        return sb.toString();
+    }
+}
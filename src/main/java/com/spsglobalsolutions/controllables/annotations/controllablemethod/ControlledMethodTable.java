@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * All the controlled methods of a controllable generated with {@code @Controllable(indexedMethods = true)}, in a single array indexed by the ID each method was given (rather
+ * than a field, or two, for each method).  A table only has a slot for the methods it is given, which have consecutive IDs (so a generated class gives its static methods
+ * the first IDs, and has one table for them, and one for its instance methods).  A method's {@link ControlledVoidMethod} or {@link ControlledNonVoidMethod} is only created when it is first called (or configured),
+ * so the methods which a test never uses cost nothing more than an empty slot.
+ *
+ * @author stevo58008
+ */
+public final class ControlledMethodTable
+{
+
+    private final List<ControlledMethodInfo> methods;
+    private final int firstMethodId;
+    private final int historyCapacity;
+    private final RecordingLevel recordingLevel;
+    private final AtomicReferenceArray<Object> controlledMethods;
+
+    /**
+     * @param methods the info for each method, in order of ID (with no gaps)
+     */
+    public ControlledMethodTable(final List<ControlledMethodInfo> methods)
+    {
+        this(methods, ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+    }
+
+    /**
+     * @param methods         the info for each method, in order of ID (with no gaps)
+     * @param historyCapacity the most calls each method keeps in its history, or {@link ControllableMethod#UNBOUNDED_HISTORY} to keep them all
+     * @param recordingLevel  how much each method records about each call (to start with)
+     */
+    public ControlledMethodTable(final List<ControlledMethodInfo> methods, final int historyCapacity, final RecordingLevel recordingLevel)
+    {
+        this.methods = methods;
+        this.firstMethodId = methods.isEmpty() ? 0 : methods.get(0).getId();
+        this.historyCapacity = historyCapacity;
+        this.recordingLevel = recordingLevel;
+        this.controlledMethods = new AtomicReferenceArray<>(methods.size());
+    }
+
+    /**
+     * @param methodId the ID of the method
+     * @param <ControlledMethodType> the type of {@link ControlledVoidMethod} or {@link ControlledNonVoidMethod} for the method (e.g. {@code
+     *                               ControlledNonVoidMethod.Throwing1CheckedException<String, IOException>}), which the caller knows from the method's signature
+     * @return the controlled method with the ID, which is created if it hasn't been used before.
+     */
+    @SuppressWarnings("unchecked")
+    public <ControlledMethodType> ControlledMethodType get(final int methodId)
+    {
+        final int slot = methodId - this.firstMethodId;
+        Object controlledMethod = this.controlledMethods.get(slot);
+        if(controlledMethod == null)
+        {
+            controlledMethod = this.create(this.methods.get(slot));
+            if(!this.controlledMethods.compareAndSet(slot, null, controlledMethod))
+            {
+                controlledMethod = this.controlledMethods.get(slot); // another thread got there first
+            }
+        }
+        return (ControlledMethodType) controlledMethod;
+    }
+
+    /**
+     * @param methodId the ID of the method
+     * @return the view of the controlled method with the ID (the same one each time it is asked for), through which it can be configured (which can be cast to the {@link ControllableVoidMethod} or
+     * {@link ControllableNonVoidMethod} type for the method's signature).
+     */
+    public ControllableMethod<?, ?> getControllable(final int methodId)
+    {
+        final Object controlledMethod = this.get(methodId);
+        return controlledMethod instanceof ControlledVoidMethod ?
+               ((ControlledVoidMethod) controlledMethod).getControllable() :
+               ((ControlledNonVoidMethod<?>) controlledMethod).getControllable();
+    }
+
+    /**
+     * @param methodId the ID of the method
+     * @param methodArgumentValues the arguments of the call
+     * @return the exit of a call to the method with the ID, which wasn't made through one of the typed {@code exit} methods (so could throw any checked exception).
+     */
+    Object exitFromAnyCall(final int methodId, final Object... methodArgumentValues) throws Exception
+    {
+        final Object controlledMethod = this.get(methodId);
+        return controlledMethod instanceof ControlledVoidMethod ?
+               ((ControlledVoidMethod) controlledMethod).exitFromAnyCall(methodArgumentValues) :
+               ((ControlledNonVoidMethod<?>) controlledMethod).exitFromAnyCall(methodArgumentValues);
+    }
+
+    /**
+     * @return the info for each method in the table, in order of ID.
+     */
+    public List<ControlledMethodInfo> getMethods()
+    {
+        return this.methods;
+    }
+
+    private Object create(final ControlledMethodInfo method)
+    {
+        // the generated code only controls up to the limit of checked exceptions (any more are left off), so the same is done here
+        final int checkedExceptions = Math.min(method.getCheckedExceptions().size(), ControllableMethod.CHECKED_EXCEPTION_LIMIT);
+        if(method.isVoid())
+        {
+            switch(checkedExceptions)
+            {
+                case 0:
+                    return new ControlledVoidMethod.Throwing0CheckedExceptions(this.historyCapacity, this.recordingLevel);
+                case 1:
+                    return new ControlledVoidMethod.Throwing1CheckedException<>(this.historyCapacity, this.recordingLevel);
+                case 2:
+                    return new ControlledVoidMethod.Throwing2CheckedExceptions<>(this.historyCapacity, this.recordingLevel);
+                case 3:
+                    return new ControlledVoidMethod.Throwing3CheckedExceptions<>(this.historyCapacity, this.recordingLevel);
+                case 4:
+                    return new ControlledVoidMethod.Throwing4CheckedExceptions<>(this.historyCapacity, this.recordingLevel);
+                default:
+                    return new ControlledVoidMethod.Throwing5CheckedExceptions<>(this.historyCapacity, this.recordingLevel);
+            }
+        }
+        switch(checkedExceptions)
+        {
+            case 0:
+                return new ControlledNonVoidMethod.Throwing0CheckedExceptions<>(this.historyCapacity, this.recordingLevel);
+            case 1:
+                return new ControlledNonVoidMethod.Throwing1CheckedException<>(this.historyCapacity, this.recordingLevel);
+            case 2:
+                return new ControlledNonVoidMethod.Throwing2CheckedExceptions<>(this.historyCapacity, this.recordingLevel);
+            case 3:
+                return new ControlledNonVoidMethod.Throwing3CheckedExceptions<>(this.historyCapacity, this.recordingLevel);
+            case 4:
+                return new ControlledNonVoidMethod.Throwing4CheckedExceptions<>(this.historyCapacity, this.recordingLevel);
+            default:
+                return new ControlledNonVoidMethod.Throwing5CheckedExceptions<>(this.historyCapacity, this.recordingLevel);
+        }
+    }
+}
@@ -22,19 +22,129 @@ package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 public abstract class ControlledNonVoidMethod<ReturnType>
 {
 
-    protected ControlledMethodHandler<ReturnType> controlledHandler = new ControlledMethodHandler<>();
+    private final int historyCapacity;
+    private final RecordingLevel recordingLevel;
+    // the shared unconfigured handler until the method is first configured (so a controllable of a wide interface doesn't create a handler for every method up front)
+    private volatile ControlledMethodHandler<ReturnType> handler = ControlledMethodHandler.unconfigured();
+    // the view of the method, only created when it is first asked for (rather than every controlled method having one, whether or not it is ever configured)
+    private volatile ControllableNonVoidMethod<?, ReturnType> controllable;
+
+    /**
+     * @param historyCapacity the most calls to keep in the history, or {@link ControllableMethod#UNBOUNDED_HISTORY} to keep them all
+     * @param recordingLevel  how much to record about each call (to start with)
+     */
+    protected ControlledNonVoidMethod(final int historyCapacity, final RecordingLevel recordingLevel)
+    {
+        this.historyCapacity = historyCapacity;
+        this.recordingLevel = recordingLevel;
+    }
+
+    /**
+     * @return the handler to use for a call, which is the shared unconfigured one (with no exits, so the call fails as it would for any method with no exits) if the method
+     * hasn't been configured yet.
+     */
+    protected final ControlledMethodHandler<ReturnType> handlerForCalls()
+    {
+        return this.handler;
+    }
+
+    /**
+     * @return the level calls to the method are recorded at (the one it was created with, if it hasn't been configured yet), without creating its handler.
+     */
+    final RecordingLevel getRecordingLevel()
+    {
+        final ControlledMethodHandler<ReturnType> current = this.handler;
+        return current.isUnconfigured() ? this.recordingLevel : current.getRecordingLevel();
+    }
+
+    /**
+     * @return the method's own handler, which is created the first time this is called (i.e. when the method is first configured, through its {@link ControllableMethod}).
+     */
+    final ControlledMethodHandler<ReturnType> configuredHandler()
+    {
+        final ControlledMethodHandler<ReturnType> current = this.handler;
+        if(!current.isUnconfigured())
+        {
+            return current;
+        }
+        synchronized(this)
+        {
+            if(this.handler.isUnconfigured())
+            {
+                this.handler = new ControlledMethodHandler<>(this.historyCapacity, this.recordingLevel);
+            }
+            return this.handler;
+        }
+    }
+
+    /**
+     * @return whether anything needs the arguments of a call (to record them, or because an exit depends on them).  If not, the method can call {@code
+     * exitWithoutArguments()} instead of {@code exit(...)}, so its arguments don't need to be put into an array (or boxed, if they are primitives).  A method with
+     * no arguments can always call {@code exitWithoutArguments()}.
+     */
+    public final boolean isUsingArguments()
+    {
+        return this.handlerForCalls().isUsingArguments();
+    }
+
+    /**
+     * @return a new view of this method, through which it can be configured (and its history looked at).
+     */
+    public abstract ControllableNonVoidMethod<?, ReturnType> createControllable();
+
+    /**
+     * @return the view of this method (through which it can be configured, and its history looked at), which is created the first time it is asked for, and then kept.
+     */
+    public ControllableNonVoidMethod<?, ReturnType> getControllable()
+    {
+        ControllableNonVoidMethod<?, ReturnType> current = this.controllable;
+        if(current == null)
+        {
+            // if two threads both create one it doesn't matter which is kept, as a view has no state of its own (it only delegates to this)
+            current = this.createControllable();
+            this.controllable = current;
+        }
+        return current;
+    }
+
+    /**
+     * Exit a call which wasn't made through one of the typed {@code exit} methods (i.e. a call to a {@link RuntimeControllable}), so any of the checked exceptions the
+     * method has been configured with can be thrown.
+     */
+    final ReturnType exitFromAnyCall(final Object... methodArgumentValues) throws Exception
+    {
+        final long entryTimeInNanos = System.nanoTime();
+        return this.handlerForCalls().getNextExit(methodArgumentValues)
+                   .<Exception, Exception, Exception, Exception, Exception>exitByCheckedOrUncheckedExceptionOrReturnValue(entryTimeInNanos, methodArgumentValues);
+    }
 
     public static class Throwing0CheckedExceptions<ReturnType> extends ControlledNonVoidMethod<ReturnType>
     {
 
+        public Throwing0CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing0CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public ReturnType exit(Object... methodArgumentValues)
         {
-            return this.controlledHandler.getNextExit().exitByUncheckedExceptionOrReturningValue(methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            return this.handlerForCalls().getNextExit(methodArgumentValues).exitByUncheckedExceptionOrReturningValue(entryTimeInNanos, methodArgumentValues);
+        }
+
+        public ReturnType exitWithoutArguments()
+        {
+            return this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableNonVoidMethod<?, ReturnType> createControllable()
         {
-            return new ControllableNonVoidMethod<>(this.controlledHandler);
+            return new ControllableNonVoidMethod<>(this);
         }
     }
 
@@ -42,16 +152,39 @@ public abstract class ControlledNonVoidMethod<ReturnType>
             extends ControlledNonVoidMethod<ReturnType>
     {
 
+        public Throwing1CheckedException()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing1CheckedException(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public ReturnType exit(Object... methodArgumentValues) throws E1
         {
-            return this.controlledHandler
-                    .getNextExit().<E1, E1, E1, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                            methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            return this.handlerForCalls()
+                    .getNextExit(methodArgumentValues).<E1, E1, E1, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                            entryTimeInNanos, methodArgumentValues);
+        }
+
+        public ReturnType exitWithoutArguments() throws E1
+        {
+            return this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableNonVoidMethod.Throwing1CheckedException<?, ReturnType, E1> createControllable()
         {
-            return new ControllableNonVoidMethod.Throwing1CheckedException<>(this.controlledHandler);
+            return new ControllableNonVoidMethod.Throwing1CheckedException<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableNonVoidMethod.Throwing1CheckedException<?, ReturnType, E1> getControllable()
+        {
+            return (ControllableNonVoidMethod.Throwing1CheckedException<?, ReturnType, E1>) super.getControllable();
         }
     }
 
@@ -59,16 +192,39 @@ public abstract class ControlledNonVoidMethod<ReturnType>
             extends ControlledNonVoidMethod<ReturnType>
     {
 
+        public Throwing2CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing2CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public ReturnType exit(Object... methodArgumentValues) throws E1, E2
         {
-            return this.controlledHandler
-                    .getNextExit().<E1, E2, E1, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                            methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            return this.handlerForCalls()
+                    .getNextExit(methodArgumentValues).<E1, E2, E1, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                            entryTimeInNanos, methodArgumentValues);
+        }
+
+        public ReturnType exitWithoutArguments() throws E1, E2
+        {
+            return this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableNonVoidMethod.Throwing2CheckedExceptions<?, ReturnType, E1, E2> createControllable()
         {
-            return new ControllableNonVoidMethod.Throwing2CheckedExceptions<>(this.controlledHandler);
+            return new ControllableNonVoidMethod.Throwing2CheckedExceptions<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableNonVoidMethod.Throwing2CheckedExceptions<?, ReturnType, E1, E2> getControllable()
+        {
+            return (ControllableNonVoidMethod.Throwing2CheckedExceptions<?, ReturnType, E1, E2>) super.getControllable();
         }
     }
 
@@ -76,16 +232,39 @@ public abstract class ControlledNonVoidMethod<ReturnType>
             extends ControlledNonVoidMethod<ReturnType>
     {
 
+        public Throwing3CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing3CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public ReturnType exit(Object... methodArgumentValues) throws E1, E2, E3
         {
-            return this.controlledHandler
-                    .getNextExit().<E1, E2, E3, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                            methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            return this.handlerForCalls()
+                    .getNextExit(methodArgumentValues).<E1, E2, E3, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                            entryTimeInNanos, methodArgumentValues);
+        }
+
+        public ReturnType exitWithoutArguments() throws E1, E2, E3
+        {
+            return this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableNonVoidMethod.Throwing3CheckedExceptions<?, ReturnType, E1, E2, E3> createControllable()
         {
-            return new ControllableNonVoidMethod.Throwing3CheckedExceptions<>(this.controlledHandler);
+            return new ControllableNonVoidMethod.Throwing3CheckedExceptions<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableNonVoidMethod.Throwing3CheckedExceptions<?, ReturnType, E1, E2, E3> getControllable()
+        {
+            return (ControllableNonVoidMethod.Throwing3CheckedExceptions<?, ReturnType, E1, E2, E3>) super.getControllable();
         }
     }
 
@@ -93,16 +272,39 @@ public abstract class ControlledNonVoidMethod<ReturnType>
             extends ControlledNonVoidMethod<ReturnType>
     {
 
+        public Throwing4CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing4CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public ReturnType exit(Object... methodArgumentValues) throws E1, E2, E3, E4
         {
-            return this.controlledHandler
-                    .getNextExit().<E1, E2, E3, E4, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                            methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            return this.handlerForCalls()
+                    .getNextExit(methodArgumentValues).<E1, E2, E3, E4, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                            entryTimeInNanos, methodArgumentValues);
+        }
+
+        public ReturnType exitWithoutArguments() throws E1, E2, E3, E4
+        {
+            return this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableNonVoidMethod.Throwing4CheckedExceptions<?, ReturnType, E1, E2, E3, E4> createControllable()
         {
-            return new ControllableNonVoidMethod.Throwing4CheckedExceptions<>(this.controlledHandler);
+            return new ControllableNonVoidMethod.Throwing4CheckedExceptions<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableNonVoidMethod.Throwing4CheckedExceptions<?, ReturnType, E1, E2, E3, E4> getControllable()
+        {
+            return (ControllableNonVoidMethod.Throwing4CheckedExceptions<?, ReturnType, E1, E2, E3, E4>) super.getControllable();
         }
     }
 
@@ -110,16 +312,39 @@ public abstract class ControlledNonVoidMethod<ReturnType>
             extends ControlledNonVoidMethod<ReturnType>
     {
 
+        public Throwing5CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing5CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public ReturnType exit(Object... methodArgumentValues) throws E1, E2, E3, E4, E5
         {
-            return this.controlledHandler
-                    .getNextExit().<E1, E2, E3, E4, E5>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                            methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            return this.handlerForCalls()
+                    .getNextExit(methodArgumentValues).<E1, E2, E3, E4, E5>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                            entryTimeInNanos, methodArgumentValues);
+        }
+
+        public ReturnType exitWithoutArguments() throws E1, E2, E3, E4, E5
+        {
+            return this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableNonVoidMethod.Throwing5CheckedExceptions<?, ReturnType, E1, E2, E3, E4, E5> createControllable()
         {
-            return new ControllableNonVoidMethod.Throwing5CheckedExceptions<>(this.controlledHandler);
+            return new ControllableNonVoidMethod.Throwing5CheckedExceptions<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableNonVoidMethod.Throwing5CheckedExceptions<?, ReturnType, E1, E2, E3, E4, E5> getControllable()
+        {
+            return (ControllableNonVoidMethod.Throwing5CheckedExceptions<?, ReturnType, E1, E2, E3, E4, E5>) super.getControllable();
         }
     }
 }
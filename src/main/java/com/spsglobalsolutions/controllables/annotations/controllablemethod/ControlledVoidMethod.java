@@ -22,34 +22,167 @@ package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 public abstract class ControlledVoidMethod
 {
 
-    protected ControlledMethodHandler<Void> controlledHandler = new ControlledMethodHandler<>();
+    private final int historyCapacity;
+    private final RecordingLevel recordingLevel;
+    // the shared unconfigured handler until the method is first configured (so a controllable of a wide interface doesn't create a handler for every method up front)
+    private volatile ControlledMethodHandler<Void> handler = ControlledMethodHandler.unconfigured();
+    // the view of the method, only created when it is first asked for (rather than every controlled method having one, whether or not it is ever configured)
+    private volatile ControllableVoidMethod<?> controllable;
+
+    /**
+     * @param historyCapacity the most calls to keep in the history, or {@link ControllableMethod#UNBOUNDED_HISTORY} to keep them all
+     * @param recordingLevel  how much to record about each call (to start with)
+     */
+    protected ControlledVoidMethod(final int historyCapacity, final RecordingLevel recordingLevel)
+    {
+        this.historyCapacity = historyCapacity;
+        this.recordingLevel = recordingLevel;
+    }
+
+    /**
+     * @return the handler to use for a call, which is the shared unconfigured one (with no exits, so the call fails as it would for any method with no exits) if the method
+     * hasn't been configured yet.
+     */
+    protected final ControlledMethodHandler<Void> handlerForCalls()
+    {
+        return this.handler;
+    }
+
+    /**
+     * @return the level calls to the method are recorded at (the one it was created with, if it hasn't been configured yet), without creating its handler.
+     */
+    final RecordingLevel getRecordingLevel()
+    {
+        final ControlledMethodHandler<Void> current = this.handler;
+        return current.isUnconfigured() ? this.recordingLevel : current.getRecordingLevel();
+    }
+
+    /**
+     * @return the method's own handler, which is created the first time this is called (i.e. when the method is first configured, through its {@link ControllableMethod}).
+     */
+    final ControlledMethodHandler<Void> configuredHandler()
+    {
+        final ControlledMethodHandler<Void> current = this.handler;
+        if(!current.isUnconfigured())
+        {
+            return current;
+        }
+        synchronized(this)
+        {
+            if(this.handler.isUnconfigured())
+            {
+                this.handler = new ControlledMethodHandler<>(this.historyCapacity, this.recordingLevel);
+            }
+            return this.handler;
+        }
+    }
+
+    /**
+     * @return whether anything needs the arguments of a call (to record them, or because an exit depends on them).  If not, the method can call {@code
+     * exitWithoutArguments()} instead of {@code exit(...)}, so its arguments don't need to be put into an array (or boxed, if they are primitives).  A method with
+     * no arguments can always call {@code exitWithoutArguments()}.
+     */
+    public final boolean isUsingArguments()
+    {
+        return this.handlerForCalls().isUsingArguments();
+    }
+
+    /**
+     * @return a new view of this method, through which it can be configured (and its history looked at).
+     */
+    public abstract ControllableVoidMethod<?> createControllable();
+
+    /**
+     * @return the view of this method (through which it can be configured, and its history looked at), which is created the first time it is asked for, and then kept.
+     */
+    public ControllableVoidMethod<?> getControllable()
+    {
+        ControllableVoidMethod<?> current = this.controllable;
+        if(current == null)
+        {
+            // if two threads both create one it doesn't matter which is kept, as a view has no state of its own (it only delegates to this)
+            current = this.createControllable();
+            this.controllable = current;
+        }
+        return current;
+    }
+
+    /**
+     * Exit a call which wasn't made through one of the typed {@code exit} methods (i.e. a call to a {@link RuntimeControllable}), so any of the checked exceptions the
+     * method has been configured with can be thrown.
+     */
+    final Void exitFromAnyCall(final Object... methodArgumentValues) throws Exception
+    {
+        final long entryTimeInNanos = System.nanoTime();
+        return this.handlerForCalls().getNextExit(methodArgumentValues)
+                   .<Exception, Exception, Exception, Exception, Exception>exitByCheckedOrUncheckedExceptionOrReturnValue(entryTimeInNanos, methodArgumentValues);
+    }
 
     public static class Throwing0CheckedExceptions extends ControlledVoidMethod
     {
 
+        public Throwing0CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing0CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public void exit(Object... methodArgumentValues)
         {
-            this.controlledHandler.getNextExit().exitByUncheckedExceptionOrReturningValue(methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            this.handlerForCalls().getNextExit(methodArgumentValues).exitByUncheckedExceptionOrReturningValue(entryTimeInNanos, methodArgumentValues);
+        }
+
+        public void exitWithoutArguments()
+        {
+            this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableVoidMethod<?> createControllable()
         {
-            return new ControllableVoidMethod<>(this.controlledHandler);
+            return new ControllableVoidMethod<>(this);
         }
     }
 
     public static class Throwing1CheckedException<E1 extends Exception> extends ControlledVoidMethod
     {
 
+        public Throwing1CheckedException()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing1CheckedException(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public void exit(Object... methodArgumentValues) throws E1
         {
-            this.controlledHandler.getNextExit().<E1, E1, E1, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                    methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            this.handlerForCalls().getNextExit(methodArgumentValues).<E1, E1, E1, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                    entryTimeInNanos, methodArgumentValues);
+        }
+
+        public void exitWithoutArguments() throws E1
+        {
+            this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableVoidMethod.Throwing1CheckedException<?, E1> createControllable()
         {
-            return new ControllableVoidMethod.Throwing1CheckedException<>(this.controlledHandler);
+            return new ControllableVoidMethod.Throwing1CheckedException<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableVoidMethod.Throwing1CheckedException<?, E1> getControllable()
+        {
+            return (ControllableVoidMethod.Throwing1CheckedException<?, E1>) super.getControllable();
         }
     }
 
@@ -57,15 +190,38 @@ public abstract class ControlledVoidMethod
             extends ControlledVoidMethod
     {
 
+        public Throwing2CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing2CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public void exit(Object... methodArgumentValues) throws E1, E2
         {
-            this.controlledHandler.getNextExit().<E1, E2, E1, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                    methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            this.handlerForCalls().getNextExit(methodArgumentValues).<E1, E2, E1, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                    entryTimeInNanos, methodArgumentValues);
+        }
+
+        public void exitWithoutArguments() throws E1, E2
+        {
+            this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableVoidMethod.Throwing2CheckedExceptions<?, E1, E2> createControllable()
         {
-            return new ControllableVoidMethod.Throwing2CheckedExceptions<>(this.controlledHandler);
+            return new ControllableVoidMethod.Throwing2CheckedExceptions<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableVoidMethod.Throwing2CheckedExceptions<?, E1, E2> getControllable()
+        {
+            return (ControllableVoidMethod.Throwing2CheckedExceptions<?, E1, E2>) super.getControllable();
         }
     }
 
@@ -73,15 +229,38 @@ public abstract class ControlledVoidMethod
             extends ControlledVoidMethod
     {
 
+        public Throwing3CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing3CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public void exit(Object... methodArgumentValues) throws E1, E2, E3
         {
-            this.controlledHandler.getNextExit().<E1, E2, E3, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                    methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            this.handlerForCalls().getNextExit(methodArgumentValues).<E1, E2, E3, E1, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                    entryTimeInNanos, methodArgumentValues);
+        }
+
+        public void exitWithoutArguments() throws E1, E2, E3
+        {
+            this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableVoidMethod.Throwing3CheckedExceptions<?, E1, E2, E3> createControllable()
         {
-            return new ControllableVoidMethod.Throwing3CheckedExceptions<>(this.controlledHandler);
+            return new ControllableVoidMethod.Throwing3CheckedExceptions<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableVoidMethod.Throwing3CheckedExceptions<?, E1, E2, E3> getControllable()
+        {
+            return (ControllableVoidMethod.Throwing3CheckedExceptions<?, E1, E2, E3>) super.getControllable();
         }
     }
 
@@ -89,15 +268,38 @@ public abstract class ControlledVoidMethod
             extends ControlledVoidMethod
     {
 
+        public Throwing4CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing4CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public void exit(Object... methodArgumentValues) throws E1, E2, E3, E4
         {
-            this.controlledHandler.getNextExit().<E1, E2, E3, E4, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                    methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            this.handlerForCalls().getNextExit(methodArgumentValues).<E1, E2, E3, E4, E1>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                    entryTimeInNanos, methodArgumentValues);
+        }
+
+        public void exitWithoutArguments() throws E1, E2, E3, E4
+        {
+            this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableVoidMethod.Throwing4CheckedExceptions<?, E1, E2, E3, E4> createControllable()
         {
-            return new ControllableVoidMethod.Throwing4CheckedExceptions<>(this.controlledHandler);
+            return new ControllableVoidMethod.Throwing4CheckedExceptions<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableVoidMethod.Throwing4CheckedExceptions<?, E1, E2, E3, E4> getControllable()
+        {
+            return (ControllableVoidMethod.Throwing4CheckedExceptions<?, E1, E2, E3, E4>) super.getControllable();
         }
     }
 
@@ -105,15 +307,38 @@ public abstract class ControlledVoidMethod
             extends ControlledVoidMethod
     {
 
+        public Throwing5CheckedExceptions()
+        {
+            super(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        }
+
+        public Throwing5CheckedExceptions(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            super(historyCapacity, recordingLevel);
+        }
+
         public void exit(Object... methodArgumentValues) throws E1, E2, E3, E4, E5
         {
-            this.controlledHandler.getNextExit().<E1, E2, E3, E4, E5>exitByCheckedOrUncheckedExceptionOrReturnValue(
-                    methodArgumentValues);
+            final long entryTimeInNanos = System.nanoTime();
+            this.handlerForCalls().getNextExit(methodArgumentValues).<E1, E2, E3, E4, E5>exitByCheckedOrUncheckedExceptionOrReturnValue(
+                    entryTimeInNanos, methodArgumentValues);
+        }
+
+        public void exitWithoutArguments() throws E1, E2, E3, E4, E5
+        {
+            this.exit(ControlledMethodHandler.NO_ARGUMENTS);
         }
 
         public ControllableVoidMethod.Throwing5CheckedExceptions<?, E1, E2, E3, E4, E5> createControllable()
         {
-            return new ControllableVoidMethod.Throwing5CheckedExceptions<>(this.controlledHandler);
+            return new ControllableVoidMethod.Throwing5CheckedExceptions<>(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ControllableVoidMethod.Throwing5CheckedExceptions<?, E1, E2, E3, E4, E5> getControllable()
+        {
+            return (ControllableVoidMethod.Throwing5CheckedExceptions<?, E1, E2, E3, E4, E5>) super.getControllable();
         }
     }
 }
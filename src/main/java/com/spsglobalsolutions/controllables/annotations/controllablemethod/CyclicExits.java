@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed set of exits which are used in turn, going back to the first after the last, forever (e.g. success, success, failure, success, success, failure...).  As it never
+ * runs out, once it reaches the front of the exit queue, it stays there (until the exits are cleared).
+ * <p/>
+ * Choosing the exit for a call is a single atomic increment of an index (modulo the number of exits), so it never blocks and creates nothing per call.
+ *
+ * @param <ReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+final class CyclicExits<ReturnType> extends ExitSequence<ReturnType>
+{
+
+    private final MethodExit<ReturnType>[] exits;
+    private final AtomicLong nextIndex = new AtomicLong();
+
+    /**
+     * @param handler the handler the exits are for
+     * @param exits   the exits to cycle through, in order (there must be at least one)
+     */
+    CyclicExits(final ControlledMethodHandler<ReturnType> handler, final List<MethodExit<ReturnType>> exits)
+    {
+        super(handler);
+        @SuppressWarnings("unchecked")
+        final MethodExit<ReturnType>[] exitsToCycleThrough = exits.toArray(new MethodExit[exits.size()]);
+        this.exits = exitsToCycleThrough;
+    }
+
+    @Override
+    MethodExit<ReturnType> takeNext()
+    {
+        // masked, so that it stays positive even if the index ever wraps around
+        return this.exits[(int) ((this.nextIndex.getAndIncrement() & Long.MAX_VALUE) % this.exits.length)];
+    }
+}
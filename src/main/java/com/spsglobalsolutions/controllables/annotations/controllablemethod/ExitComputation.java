@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+/**
+ * Works out how a controlled method exits, from the arguments it was actually called with (e.g. to echo an argument back, or return {@code id * 2}), so the return values don't
+ * all need to be created up front.
+ *
+ * @param <ReturnType>       The type of the return value of the method (for void methods it will use Void class, and the value returned is ignored)
+ * @param <CheckedException> The checked exception the computation can throw, which must be one the method declares (or {@link RuntimeException} if it only throws unchecked
+ *                           exceptions)
+ * @author stevo58008
+ */
+public interface ExitComputation<ReturnType, CheckedException extends Exception>
+{
+
+    /**
+     * @param arguments the arguments the controlled method was called with, in the order they are defined on the method signature
+     * @return the value for the controlled method to return
+     * @throws CheckedException for the controlled method to throw (an unchecked exception can always be thrown too)
+     */
+    ReturnType compute(Object[] arguments) throws CheckedException;
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The exits for a cycle, which are used in turn, over and over, once it is added to a controllable method (see {@link ControllableMethod#addCyclicExits(ExitCycle)}).  E.g.
+ * {@code method.addCyclicExits(new ExitCycle<Row>().normalExit(a).normalExit(a).uncheckedExceptionExit(timeout))} makes every third call fail, indefinitely.
+ * <p/>
+ * The exits are copied when the cycle is added, so changing it afterwards doesn't change the cycle which was added (and it can be added to more than one method).
+ *
+ * @param <ReturnType> The type of the return value of the method (for void methods use Void, and {@link #normalExit()})
+ * @author stevo58008
+ */
+public final class ExitCycle<ReturnType>
+{
+
+    private final List<Exit<ReturnType>> exits = new ArrayList<>();
+
+    /**
+     * @param returnValue the value to return
+     * @return itself
+     */
+    public ExitCycle<ReturnType> normalExit(final ReturnType returnValue)
+    {
+        this.exits.add(new Exit<>(returnValue, null));
+        return this;
+    }
+
+    /**
+     * A normal exit for a void method (so in this case, nothing).
+     *
+     * @return itself
+     */
+    public ExitCycle<ReturnType> normalExit()
+    {
+        return this.normalExit(null);
+    }
+
+    /**
+     * @param toThrow the exception to throw
+     * @return itself
+     */
+    public ExitCycle<ReturnType> uncheckedExceptionExit(final RuntimeException toThrow)
+    {
+        if(toThrow == null)
+        {
+            throw new IllegalArgumentException("The exception to throw cannot be null");
+        }
+        this.exits.add(new Exit<ReturnType>(null, toThrow));
+        return this;
+    }
+
+    /**
+     * @param handler the handler the exits are for
+     * @return the exits for the cycle, in order
+     * @throws IllegalArgumentException if the cycle doesn't have any exits
+     */
+    List<MethodExit<ReturnType>> exitsFor(final ControlledMethodHandler<ReturnType> handler)
+    {
+        if(this.exits.isEmpty())
+        {
+            throw new IllegalArgumentException("There must be at least one exit to cycle through");
+        }
+        final List<MethodExit<ReturnType>> methodExits = new ArrayList<>(this.exits.size());
+        for(final Exit<ReturnType> exit : this.exits)
+        {
+            methodExits.add(exit.toThrow != null ? new MethodExit<ReturnType>(handler, exit.toThrow, 0) : new MethodExit<>(handler, exit.returnValue, 0));
+        }
+        return methodExits;
+    }
+
+    private static final class Exit<ReturnType>
+    {
+
+        private final ReturnType returnValue;
+        private final RuntimeException toThrow; // or null to return the value
+
+        private Exit(final ReturnType returnValue, final RuntimeException toThrow)
+        {
+            this.returnValue = returnValue;
+            this.toThrow = toThrow;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits for a {@link MethodExit}'s exit delay, with nanosecond precision.
+ * <p/>
+ * Most of the delay is spent parked (so the thread isn't using a CPU), but as parking can overshoot by tens of microseconds, the last part of the delay is spent spinning on
+ * {@link System#nanoTime()}.  So a sub-millisecond delay (e.g. to simulate a cache) is about as long as was asked for.  The wait stops as soon as the thread is interrupted,
+ * leaving its interrupt flag set.
+ *
+ * @author stevo58008
+ */
+final class ExitDelay
+{
+
+    /**
+     * Any delay (or what's left of it) shorter than this is spun for, rather than parked for.
+     */
+    static final long SPIN_THRESHOLD_IN_NANOS = 50000;
+
+    private ExitDelay()
+    {
+    }
+
+    /**
+     * @param delayInNanos how long to wait for
+     * @return true if the whole delay was waited for, or false if the thread was interrupted (in which case its interrupt flag is still set).
+     */
+    static boolean waitFor(final long delayInNanos)
+    {
+        final long deadline = System.nanoTime() + delayInNanos;
+        long remaining = delayInNanos;
+        while(remaining > 0)
+        {
+            if(Thread.currentThread().isInterrupted())
+            {
+                return false;
+            }
+            if(remaining > SPIN_THRESHOLD_IN_NANOS)
+            {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_IN_NANOS);
+            }
+            remaining = deadline - System.nanoTime();
+        }
+        return true;
+    }
+}
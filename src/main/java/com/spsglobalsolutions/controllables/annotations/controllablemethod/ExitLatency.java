@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A distribution of latencies, which can be set on a controllable method (using {@link ControllableMethod#setExitLatency(ExitLatency, long)}), so that every call to it waits
+ * for a latency drawn from the distribution before exiting (on top of any delay given to the exit itself).  This allows the long tail of a real dependency's latency to be
+ * reproduced, e.g. to check timeouts and retries.
+ * <p/>
+ * The latencies are drawn from a seeded random number generator.  Each thread draws from its own stream (numbered by the thread's name), so the threads never contend, and a
+ * thread draws the same latencies in every run which uses the same seed, however its calls are interleaved with the other threads' calls (as long as the threads are given the
+ * same names in each run).  Drawing one doesn't allocate anything.
+ *
+ * @author stevo58008
+ */
+public abstract class ExitLatency
+{
+
+    private ExitLatency()
+    {
+    }
+
+    /**
+     * @param latency the latency of every call
+     * @param unit    the unit of {@code latency}
+     * @return a distribution which is always the same latency.
+     */
+    public static ExitLatency fixed(final long latency, final TimeUnit unit)
+    {
+        checkNotNegative(latency, "latency");
+        return new Fixed(unit.toNanos(latency));
+    }
+
+    /**
+     * @param minimum the shortest latency
+     * @param maximum the longest latency
+     * @param unit    the unit of {@code minimum} and {@code maximum}
+     * @return a distribution where every latency between the minimum and maximum is equally likely.
+     */
+    public static ExitLatency uniform(final long minimum, final long maximum, final TimeUnit unit)
+    {
+        checkNotNegative(minimum, "minimum");
+        if(maximum < minimum)
+        {
+            throw new IllegalArgumentException("The maximum (" + maximum + ") cannot be less than the minimum (" + minimum + ")");
+        }
+        return new Uniform(unit.toNanos(minimum), unit.toNanos(maximum));
+    }
+
+    /**
+     * @param median the median latency
+     * @param sigma  the standard deviation of the latency's logarithm (so the bigger it is, the longer the tail; e.g. 0.5 means about 1% of latencies are over 3 times the
+     *               median)
+     * @param unit   the unit of {@code median}
+     * @return a log-normal distribution, which is the usual shape of a service's latency.
+     */
+    public static ExitLatency logNormal(final long median, final double sigma, final TimeUnit unit)
+    {
+        checkNotNegative(median, "median");
+        if(!(sigma >= 0))
+        {
+            throw new IllegalArgumentException("The sigma must be zero or more, but was " + sigma);
+        }
+        return new LogNormal(unit.toNanos(median), sigma);
+    }
+
+    /**
+     * @param minimum the shortest (and most likely) latency
+     * @param shape   how quickly the tail falls away (the smaller it is, the heavier the tail; e.g. with 1.16 about 20% of the latencies make up about 80% of the total time)
+     * @param maximum the longest latency (as the tail is unbounded, there needs to be a limit)
+     * @param unit    the unit of {@code minimum} and {@code maximum}
+     * @return a Pareto distribution, for a heavy tail of rare but very slow calls.
+     */
+    public static ExitLatency pareto(final long minimum, final double shape, final long maximum, final TimeUnit unit)
+    {
+        if(minimum < 1)
+        {
+            throw new IllegalArgumentException("The minimum must be at least 1, but was " + minimum);
+        }
+        if(!(shape > 0))
+        {
+            throw new IllegalArgumentException("The shape must be more than zero, but was " + shape);
+        }
+        if(maximum < minimum)
+        {
+            throw new IllegalArgumentException("The maximum (" + maximum + ") cannot be less than the minimum (" + minimum + ")");
+        }
+        return new Pareto(unit.toNanos(minimum), shape, unit.toNanos(maximum));
+    }
+
+    /**
+     * Create a distribution from a table of measured percentiles (e.g. from a real service's monitoring), such as p50 = 2ms, p99 = 30ms, p99.9 = 120ms and p100 = 400ms.  A
+     * latency between two percentiles in the table is interpolated between them, and a latency below the lowest percentile is its latency.
+     *
+     * @param percentiles the percentiles, in increasing order, the last of which must be 100
+     * @param latencies   the latency at each of the percentiles, which must not decrease
+     * @param unit        the unit of the {@code latencies}
+     * @return a distribution which matches the table.
+     */
+    public static ExitLatency percentiles(final double[] percentiles, final long[] latencies, final TimeUnit unit)
+    {
+        if(percentiles.length == 0 || percentiles.length != latencies.length)
+        {
+            throw new IllegalArgumentException("There must be a latency for each percentile (and at least one of them)");
+        }
+        final long[] latenciesInNanos = new long[latencies.length];
+        for(int i = 0; i < percentiles.length; i++)
+        {
+            checkNotNegative(latencies[i], "latency");
+            if(!(percentiles[i] > 0 && percentiles[i] <= 100) || (i > 0 && percentiles[i] <= percentiles[i - 1]))
+            {
+                throw new IllegalArgumentException("The percentiles must be increasing, and between 0 and 100, but were " + Arrays.toString(percentiles));
+            }
+            if(i > 0 && latencies[i] < latencies[i - 1])
+            {
+                throw new IllegalArgumentException("The latencies must not decrease, but were " + Arrays.toString(latencies));
+            }
+            latenciesInNanos[i] = unit.toNanos(latencies[i]);
+        }
+        if(percentiles[percentiles.length - 1] != 100)
+        {
+            throw new IllegalArgumentException("The last percentile must be 100, but was " + percentiles[percentiles.length - 1]);
+        }
+        return new Percentiles(percentiles.clone(), latenciesInNanos);
+    }
+
+    private static void checkNotNegative(final long value, final String name)
+    {
+        if(value < 0)
+        {
+            throw new IllegalArgumentException("The " + name + " cannot be negative, but was " + value);
+        }
+    }
+
+    /**
+     * @param random where to get the randomness from
+     * @return the next latency (in nanoseconds) drawn from the distribution.
+     */
+    abstract long nextLatencyInNanos(SeededRandom random);
+
+    private static final class Fixed extends ExitLatency
+    {
+
+        private final long latencyInNanos;
+
+        private Fixed(final long latencyInNanos)
+        {
+            this.latencyInNanos = latencyInNanos;
+        }
+
+        @Override
+        long nextLatencyInNanos(final SeededRandom random)
+        {
+            return this.latencyInNanos;
+        }
+    }
+
+    private static final class Uniform extends ExitLatency
+    {
+
+        private final long minimumInNanos;
+        private final long rangeInNanos;
+
+        private Uniform(final long minimumInNanos, final long maximumInNanos)
+        {
+            this.minimumInNanos = minimumInNanos;
+            this.rangeInNanos = maximumInNanos - minimumInNanos;
+        }
+
+        @Override
+        long nextLatencyInNanos(final SeededRandom random)
+        {
+            return this.minimumInNanos + (long) (random.nextDouble() * (this.rangeInNanos + 1));
+        }
+    }
+
+    private static final class LogNormal extends ExitLatency
+    {
+
+        private final long medianInNanos;
+        private final double sigma;
+
+        private LogNormal(final long medianInNanos, final double sigma)
+        {
+            this.medianInNanos = medianInNanos;
+            this.sigma = sigma;
+        }
+
+        @Override
+        long nextLatencyInNanos(final SeededRandom random)
+        {
+            return (long) (this.medianInNanos * Math.exp(this.sigma * random.nextGaussian()));
+        }
+    }
+
+    private static final class Pareto extends ExitLatency
+    {
+
+        private final long minimumInNanos;
+        private final double inverseShape;
+        private final long maximumInNanos;
+
+        private Pareto(final long minimumInNanos, final double shape, final long maximumInNanos)
+        {
+            this.minimumInNanos = minimumInNanos;
+            this.inverseShape = 1.0 / shape;
+            this.maximumInNanos = maximumInNanos;
+        }
+
+        @Override
+        long nextLatencyInNanos(final SeededRandom random)
+        {
+            final double latency = this.minimumInNanos / Math.pow(1.0 - random.nextDouble(), this.inverseShape);
+            return latency >= this.maximumInNanos ? this.maximumInNanos : (long) latency;
+        }
+    }
+
+    private static final class Percentiles extends ExitLatency
+    {
+
+        private final double[] percentiles;
+        private final long[] latenciesInNanos;
+
+        private Percentiles(final double[] percentiles, final long[] latenciesInNanos)
+        {
+            this.percentiles = percentiles;
+            this.latenciesInNanos = latenciesInNanos;
+        }
+
+        @Override
+        long nextLatencyInNanos(final SeededRandom random)
+        {
+            final double percentile = random.nextDouble() * 100;
+            int upper = Arrays.binarySearch(this.percentiles, percentile);
+            if(upper >= 0)
+            {
+                return this.latenciesInNanos[upper];
+            }
+            upper = -upper - 1; // the first percentile above the drawn one (there always is one, as the last is 100)
+            if(upper == 0)
+            {
+                return this.latenciesInNanos[0];
+            }
+            final double fraction = (percentile - this.percentiles[upper - 1]) / (this.percentiles[upper] - this.percentiles[upper - 1]);
+            return this.latenciesInNanos[upper - 1] + (long) (fraction * (this.latenciesInNanos[upper] - this.latenciesInNanos[upper - 1]));
+        }
+    }
+}
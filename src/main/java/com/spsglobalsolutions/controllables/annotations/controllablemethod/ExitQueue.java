@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free FIFO queue of {@link MethodExit} elements, where the last element is never removed (it is "sticky", and used as the default exit until another one is added).
+ * <p/>
+ * It is a linked queue (along the lines of Michael &amp; Scott's), where {@code head} always points at the exit that will be used next, rather than at a dummy node.  Moving on
+ * to the next exit is a single CAS, and no caller ever blocks another.  Once the queue has been drained down to its sticky default exit, the default is also kept in {@code
+ * drainedDefault} (until another exit is added), so reading it (which is what every call does, in the steady state) is a single volatile load.
+ * <p/>
+ * The only time {@code head} doesn't hold an exit, is when it points at an "empty" marker node (which it does after creation or a {@link #clear()}), and these are skipped over
+ * as soon as an exit is added after them.
+ *
+ * @param <MethodReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+final class ExitQueue<MethodReturnType>
+{
+
+    @SuppressWarnings("rawtypes") // an updater can only be created for the class, not for a parameterized type
+    private static final AtomicReferenceFieldUpdater<ExitQueue, Node> HEAD =
+            AtomicReferenceFieldUpdater.newUpdater(ExitQueue.class, Node.class, "head");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ExitQueue, Node> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(ExitQueue.class, Node.class, "tail");
+
+    private volatile Node<MethodReturnType> head;
+    private volatile Node<MethodReturnType> tail;
+    // the sticky default, once it's the only exit left, or null if the queue has to be looked at (there may be exits after the head, or it may be a sequence which isn't done)
+    private volatile MethodExit<MethodReturnType> drainedDefault;
+
+    ExitQueue()
+    {
+        final Node<MethodReturnType> emptyMarker = new Node<>(null);
+        this.head = emptyMarker;
+        this.tail = emptyMarker;
+    }
+
+    /**
+     * Add the exit to the end of the queue.
+     *
+     * @param exit the exit to add
+     */
+    void add(final MethodExit<MethodReturnType> exit)
+    {
+        this.append(new Node<>(exit));
+    }
+
+    /**
+     * Remove all the exits currently in the queue.  Any exits which are added concurrently with this call, may or may not be kept (but the queue is never left in a broken
+     * state).
+     */
+    void clear()
+    {
+        // put an empty marker on the end, and then move the head up to it (unless someone has already moved past it, in which case there was something after it to use).
+        final Node<MethodReturnType> emptyMarker = new Node<>(null);
+        this.append(emptyMarker);
+        while(true)
+        {
+            final Node<MethodReturnType> currentHead = this.head;
+            if(currentHead.position >= emptyMarker.position || HEAD.compareAndSet(this, currentHead, emptyMarker))
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the exit that should be used next.  This is the one at the front of the queue, which is removed, unless it is the only one left, in which case it is left in place to
+     * be the default exit.
+     * <p/>
+     * If the front of the queue is an {@link ExitSequence}, its next exit is used instead, and it is only removed once it has run out (or, if it is the only one left, the last
+     * of its exits becomes the default).
+     *
+     * @return the next exit, or null if there are none (i.e. none have been added since creation or the last {@link #clear()}).
+     */
+    MethodExit<MethodReturnType> next()
+    {
+        final MethodExit<MethodReturnType> currentDrainedDefault = this.drainedDefault;
+        if(currentDrainedDefault != null)
+        {
+            return currentDrainedDefault;
+        }
+        while(true)
+        {
+            final Node<MethodReturnType> currentHead = this.head;
+            if(currentHead.exit instanceof ExitSequence)
+            {
+                final ExitSequence<MethodReturnType> sequence = (ExitSequence<MethodReturnType>) currentHead.exit;
+                final MethodExit<MethodReturnType> exit = sequence.take();
+                if(exit != null)
+                {
+                    return exit;
+                }
+                // it has run out, so it's just like any other exit which has been used (apart from its last exit being the one used as the default)
+                final Node<MethodReturnType> afterSequence = currentHead.next;
+                if(afterSequence == null)
+                {
+                    return this.drainedDownTo(currentHead, sequence.getLastExit());
+                }
+                HEAD.compareAndSet(this, currentHead, afterSequence);
+                continue;
+            }
+            final Node<MethodReturnType> afterHead = currentHead.next;
+            if(afterHead == null)
+            {
+                return currentHead.exit == null ? null : this.drainedDownTo(currentHead, currentHead.exit); // the sticky default (or null if it's an empty marker)
+            }
+            if(HEAD.compareAndSet(this, currentHead, afterHead) && currentHead.exit != null)
+            {
+                return currentHead.exit;
+            }
+            // either lost the race to someone else using the head, or just skipped an empty marker - so go again.
+        }
+    }
+
+    /**
+     * Keep the sticky default, so the calls after this one can read it straight away.
+     *
+     * @param lastNode    the node which was found to be the last one
+     * @param defaultExit its exit (or the last exit of its sequence), which is the sticky default
+     * @return {@code defaultExit}
+     */
+    private MethodExit<MethodReturnType> drainedDownTo(final Node<MethodReturnType> lastNode, final MethodExit<MethodReturnType> defaultExit)
+    {
+        this.drainedDefault = defaultExit;
+        // an exit may have been added since the node was found to be the last one.  If so, it was linked in before the add cleared the default; so either the add cleared it
+        // after this set it, or the node's new next link is seen here, and it's cleared again.  (A call made in between may still use the old default, just as it could have
+        // done if it had been made before the add.)
+        if(lastNode.next != null)
+        {
+            this.drainedDefault = null;
+        }
+        return defaultExit;
+    }
+
+    /**
+     * @return the exits currently in the queue, in the order they would be used (without removing them).
+     */
+    List<MethodExit<MethodReturnType>> currentExits()
+    {
+        final List<MethodExit<MethodReturnType>> exits = new ArrayList<>();
+        for(Node<MethodReturnType> node = this.head; node != null; node = node.next)
+        {
+            if(node.exit != null)
+            {
+                exits.add(node.exit);
+            }
+        }
+        return exits;
+    }
+
+    private void append(final Node<MethodReturnType> toAppend)
+    {
+        while(true)
+        {
+            final Node<MethodReturnType> currentTail = this.tail;
+            final Node<MethodReturnType> afterTail = currentTail.next;
+            if(afterTail != null)
+            {
+                TAIL.compareAndSet(this, currentTail, afterTail); // tail is lagging, so help it along before trying again
+                continue;
+            }
+            toAppend.position = currentTail.position + 1;
+            if(Node.NEXT.compareAndSet(currentTail, null, toAppend))
+            {
+                this.drainedDefault = null; // after it is linked in, see drainedDownTo
+                TAIL.compareAndSet(this, currentTail, toAppend);
+                return;
+            }
+        }
+    }
+
+    private static final class Node<MethodReturnType>
+    {
+
+        // declared here, rather than on the queue, as the updater must be created by a class which can access the (private) field
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+        private final MethodExit<MethodReturnType> exit;
+        private volatile Node<MethodReturnType> next;
+        private long position; // published by the CAS which links this node in, so doesn't need to be volatile
+
+        private Node(final MethodExit<MethodReturnType> exit)
+        {
+            this.exit = exit;
+        }
+    }
+}
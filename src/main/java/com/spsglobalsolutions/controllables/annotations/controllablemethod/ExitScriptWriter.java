@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Charsets;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes an exit script; a file of exits, which a controllable method can replay (one exit per call) without loading them onto the heap (see {@link
+ * ControllableNonVoidMethod#addScriptedExits(Path, ExitValueCodec)}).  This makes it possible to replay recorded datasets which are far too big to add as normal exits.
+ * <p/>
+ * The script is a header ({@link #MAGIC_NUMBER} and {@link #VERSION}), followed by one record per exit, each of which is:
+ * <ul>
+ * <li>a byte saying how it exits ({@link #NORMAL_EXIT} or {@link #UNCHECKED_EXCEPTION_EXIT})</li>
+ * <li>a long of the delay (in nanoseconds) before it exits</li>
+ * <li>an int of the number of bytes that follow ({@link #NULL_LENGTH} for a null return value)</li>
+ * <li>the bytes; for a normal exit, the return value (as encoded by the {@link ExitValueCodec}), or for an exception, the class name and then the message (each as an int
+ * length and UTF-8 bytes)</li>
+ * </ul>
+ * All numbers are big-endian.
+ *
+ * @param <ReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+public final class ExitScriptWriter<ReturnType> implements Closeable
+{
+
+    static final int MAGIC_NUMBER = 0x43455853; // "CEXS"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final byte NORMAL_EXIT = 0;
+    static final byte UNCHECKED_EXCEPTION_EXIT = 1;
+    static final int RECORD_HEADER_SIZE = 13;
+    static final int NULL_LENGTH = -1;
+
+    private final DataOutputStream out;
+    private final ExitValueCodec<ReturnType> codec;
+
+    /**
+     * Create (or replace) the script.
+     *
+     * @param script where to write the script
+     * @param codec  converts the return values to bytes
+     * @throws IOException if the script can't be written
+     */
+    public ExitScriptWriter(final Path script, final ExitValueCodec<ReturnType> codec) throws IOException
+    {
+        if(codec == null)
+        {
+            throw new IllegalArgumentException("The codec cannot be null");
+        }
+        this.codec = codec;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(script)));
+        this.out.writeInt(MAGIC_NUMBER);
+        this.out.writeInt(VERSION);
+    }
+
+    /**
+     * Write an exit which returns the value (which should be null for a void method).
+     *
+     * @param returnValue     the value to return
+     * @param delayBeforeExit how long to wait before exiting
+     * @param unit            the unit of the delay
+     * @return itself
+     * @throws IOException if the script can't be written
+     */
+    public ExitScriptWriter<ReturnType> writeNormalExit(final ReturnType returnValue, final long delayBeforeExit, final TimeUnit unit) throws IOException
+    {
+        this.out.writeByte(NORMAL_EXIT);
+        this.out.writeLong(unit.toNanos(delayBeforeExit));
+        if(returnValue == null)
+        {
+            this.out.writeInt(NULL_LENGTH);
+            return this;
+        }
+        final byte[] encoded = this.codec.encode(returnValue);
+        this.out.writeInt(encoded.length);
+        this.out.write(encoded);
+        return this;
+    }
+
+    /**
+     * Write an exit which returns the value straight away.
+     *
+     * @param returnValue the value to return
+     * @return itself
+     * @throws IOException if the script can't be written
+     */
+    public ExitScriptWriter<ReturnType> writeNormalExit(final ReturnType returnValue) throws IOException
+    {
+        return this.writeNormalExit(returnValue, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Write an exit which throws an exception of the same class, and with the same message, as the given one.  When replayed, the exception is recreated using its class's
+     * constructor which takes just the message, so the class must have one.
+     *
+     * @param exceptionToThrow the exception to throw
+     * @param delayBeforeExit  how long to wait before exiting
+     * @param unit             the unit of the delay
+     * @return itself
+     * @throws IOException if the script can't be written
+     */
+    public ExitScriptWriter<ReturnType> writeUncheckedExceptionExit(final RuntimeException exceptionToThrow, final long delayBeforeExit, final TimeUnit unit)
+            throws IOException
+    {
+        if(exceptionToThrow == null)
+        {
+            throw new IllegalArgumentException("The exception to throw cannot be null");
+        }
+        final byte[] className = exceptionToThrow.getClass().getName().getBytes(Charsets.UTF_8);
+        final String message = exceptionToThrow.getMessage();
+        final byte[] messageBytes = message == null ? null : message.getBytes(Charsets.UTF_8);
+        this.out.writeByte(UNCHECKED_EXCEPTION_EXIT);
+        this.out.writeLong(unit.toNanos(delayBeforeExit));
+        this.out.writeInt(4 + className.length + 4 + (messageBytes == null ? 0 : messageBytes.length));
+        this.out.writeInt(className.length);
+        this.out.write(className);
+        if(messageBytes == null)
+        {
+            this.out.writeInt(NULL_LENGTH);
+        }
+        else
+        {
+            this.out.writeInt(messageBytes.length);
+            this.out.write(messageBytes);
+        }
+        return this;
+    }
+
+    /**
+     * Write an exit which throws the exception straight away.
+     *
+     * @param exceptionToThrow the exception to throw
+     * @return itself
+     * @throws IOException if the script can't be written
+     */
+    public ExitScriptWriter<ReturnType> writeUncheckedExceptionExit(final RuntimeException exceptionToThrow) throws IOException
+    {
+        return this.writeUncheckedExceptionExit(exceptionToThrow, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.out.close();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.NoSuchElementException;
+
+/**
+ * An exit which stands for a sequence of exits, each of which is used for one call (e.g. a long feed of return values, which are only created as they are needed).
+ * <p/>
+ * In the exit queue, it stays at the front until its exits run out, at which point the queue moves on to the next exit, or if there isn't one, the last of its exits is used
+ * as the default.  Used anywhere else (e.g. as a weighted exit), each use takes the next of its exits, and once they run out, the last one is used from then on.
+ *
+ * @param <ReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+abstract class ExitSequence<ReturnType> extends MethodExit<ReturnType>
+{
+
+    private volatile MethodExit<ReturnType> lastExit;
+
+    ExitSequence(final ControlledMethodHandler<ReturnType> handler)
+    {
+        super(handler, (ReturnType) null, 0);
+    }
+
+    /**
+     * Take the next exit in the sequence.  This may be called by many threads at once, and each exit is only ever taken by one of them.
+     *
+     * @return the next exit, or null if there are no more.
+     */
+    final MethodExit<ReturnType> take()
+    {
+        final MethodExit<ReturnType> exit = this.takeNext();
+        if(exit != null)
+        {
+            this.lastExit = exit;
+        }
+        return exit;
+    }
+
+    /**
+     * @return the last exit that was taken (or one of the last, if several were taken at once), or null if none have been.
+     */
+    final MethodExit<ReturnType> getLastExit()
+    {
+        return this.lastExit;
+    }
+
+    /**
+     * @return the next exit in the sequence, or null if there are no more (in which case, it must keep returning null).
+     */
+    abstract MethodExit<ReturnType> takeNext();
+
+    @Override
+    final MethodExit<ReturnType> exitFor(final Object[] methodArgumentValues)
+    {
+        MethodExit<ReturnType> exit = this.take();
+        if(exit == null)
+        {
+            exit = this.lastExit;
+            if(exit == null)
+            {
+                throw new ControllableMethodException(new NoSuchElementException("The sequence of exits was empty, so there is no exit to use"));
+            }
+        }
+        return exit.exitFor(methodArgumentValues);
+    }
+}
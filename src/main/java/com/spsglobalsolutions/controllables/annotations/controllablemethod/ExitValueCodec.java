@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the values returned by a controlled method to and from the bytes stored in an exit script (see {@link ExitScriptWriter}).
+ * <p/>
+ * Some common codecs are provided by {@link ExitValueCodecs}.
+ *
+ * @param <ValueType> The type of the values to convert
+ * @author stevo58008
+ */
+public interface ExitValueCodec<ValueType>
+{
+
+    /**
+     * @param value the value to convert (never null; nulls are stored by the script itself)
+     * @return the bytes to store for the value.
+     */
+    byte[] encode(ValueType value);
+
+    /**
+     * @param encoded the bytes stored for the value, from its position up to its limit (this is a view onto the script, so should not be kept hold of after returning)
+     * @return the value.
+     */
+    ValueType decode(ByteBuffer encoded);
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Charsets;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides {@link ExitValueCodec}s for some common types of return value.
+ *
+ * @author stevo58008
+ */
+public final class ExitValueCodecs
+{
+
+    private static final ExitValueCodec<String> STRINGS = new ExitValueCodec<String>()
+    {
+        @Override
+        public byte[] encode(final String value)
+        {
+            return value.getBytes(Charsets.UTF_8);
+        }
+
+        @Override
+        public String decode(final ByteBuffer encoded)
+        {
+            final byte[] bytes = new byte[encoded.remaining()];
+            encoded.get(bytes);
+            return new String(bytes, Charsets.UTF_8);
+        }
+    };
+
+    private static final ExitValueCodec<Integer> INTEGERS = new ExitValueCodec<Integer>()
+    {
+        @Override
+        public byte[] encode(final Integer value)
+        {
+            return ByteBuffer.allocate(4).putInt(value).array();
+        }
+
+        @Override
+        public Integer decode(final ByteBuffer encoded)
+        {
+            return encoded.getInt();
+        }
+    };
+
+    private static final ExitValueCodec<Long> LONGS = new ExitValueCodec<Long>()
+    {
+        @Override
+        public byte[] encode(final Long value)
+        {
+            return ByteBuffer.allocate(8).putLong(value).array();
+        }
+
+        @Override
+        public Long decode(final ByteBuffer encoded)
+        {
+            return encoded.getLong();
+        }
+    };
+
+    // void methods only ever return null, which the script stores itself, so there is never anything to convert
+    private static final ExitValueCodec<Void> NOTHING = new ExitValueCodec<Void>()
+    {
+        @Override
+        public byte[] encode(final Void value)
+        {
+            throw new IllegalArgumentException("A void method cannot return a value");
+        }
+
+        @Override
+        public Void decode(final ByteBuffer encoded)
+        {
+            throw new IllegalArgumentException("A void method cannot return a value");
+        }
+    };
+
+    private ExitValueCodecs()
+    {
+    }
+
+    /**
+     * @return a codec which stores strings as UTF-8.
+     */
+    public static ExitValueCodec<String> strings()
+    {
+        return STRINGS;
+    }
+
+    /**
+     * @return a codec which stores integers as 4 (big-endian) bytes.
+     */
+    public static ExitValueCodec<Integer> integers()
+    {
+        return INTEGERS;
+    }
+
+    /**
+     * @return a codec which stores longs as 8 (big-endian) bytes.
+     */
+    public static ExitValueCodec<Long> longs()
+    {
+        return LONGS;
+    }
+
+    /**
+     * @return a codec for the exits of void methods (which only ever return null).
+     */
+    public static ExitValueCodec<Void> nothing()
+    {
+        return NOTHING;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Supplier;
+
+import java.util.Iterator;
+
+/**
+ * A sequence of normal exits, which return the values from an iterator.  The values are only pulled from the iterator as they are needed (one per call), and nothing is kept
+ * apart from the last exit, so memory use stays flat however long the sequence is (even if it never ends).
+ * <p/>
+ * Iterators aren't generally thread safe, so the pulls are done one at a time.  If the iterator throws an unchecked exception, that is how the call exits (and the iterator is
+ * asked again for the next call).
+ *
+ * @param <ReturnType> The type of the return value of the method
+ * @author stevo58008
+ */
+final class GeneratedExitSequence<ReturnType> extends ExitSequence<ReturnType>
+{
+
+    private final ControlledMethodHandler<ReturnType> handler;
+    private final Iterator<? extends ReturnType> returnValues;
+
+    GeneratedExitSequence(final ControlledMethodHandler<ReturnType> handler, final Iterator<? extends ReturnType> returnValues)
+    {
+        super(handler);
+        this.handler = handler;
+        this.returnValues = returnValues;
+    }
+
+    /**
+     * @param returnValues supplies the value to return for each call
+     * @return an iterator which never ends, and gets each value from the supplier.
+     */
+    static <ReturnType> Iterator<ReturnType> fromSupplier(final Supplier<? extends ReturnType> returnValues)
+    {
+        if(returnValues == null)
+        {
+            throw new IllegalArgumentException("The supplier of return values cannot be null");
+        }
+        return new Iterator<ReturnType>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return true;
+            }
+
+            @Override
+            public ReturnType next()
+            {
+                return returnValues.get();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    MethodExit<ReturnType> takeNext()
+    {
+        synchronized(this.returnValues)
+        {
+            try
+            {
+                if(!this.returnValues.hasNext())
+                {
+                    return null;
+                }
+                return new MethodExit<ReturnType>(this.handler, this.returnValues.next(), 0);
+            }
+            catch(final RuntimeException e)
+            {
+                return new MethodExit<ReturnType>(this.handler, e, 0);
+            }
+        }
+    }
+}
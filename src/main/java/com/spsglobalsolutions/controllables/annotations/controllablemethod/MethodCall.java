@@ -18,6 +18,10 @@ package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 
 /**
  * Contains all the details about a particular method call.
+ * <p/>
+ * As well as the (wall clock) time of the call in milliseconds, it has the {@link System#nanoTime()} of when the controlled method was entered and exited, so the time spent
+ * in it (including any exit delay) can be measured at sub-millisecond resolution.  A call is stored in the history as soon as the controlled method is entered, so the exit
+ * details aren't available until it has exited (see {@link #hasExited()}).
  *
  * @param <MethodReturnType> The type of the return value of the method (for void methods it will use Void class)
  * @author stevo58008
@@ -25,17 +29,56 @@ package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 public class MethodCall<MethodReturnType>
 {
 
+    private static final long NOT_EXITED_YET = -1;
+
     private final long callTimeInMillis;
+    private final long entryTimeInNanos;
     private final Object[] arguments;
-    private final MethodExit<MethodReturnType> exit;
+    private volatile MethodExit<MethodReturnType> exit;
+    private volatile long durationInNanos = NOT_EXITED_YET;
 
+    /**
+     * Create a call which was entered now, with the given exit.  It is never told that it has exited (only the calls a controlled method records are), so {@link
+     * #hasExited()} is always false, and it has no exit time or duration.  It is useful for comparing against the calls in a history.
+     *
+     * @param howItExited the exit the call was made with
+     * @param arguments   the arguments the call was made with
+     */
     public MethodCall(final MethodExit<MethodReturnType> howItExited, final Object... arguments)
+    {
+        this(howItExited, System.nanoTime(), arguments);
+    }
+
+    private MethodCall(final MethodExit<MethodReturnType> howItExited, final long entryTimeInNanos, final Object[] arguments)
     {
         this.callTimeInMillis = System.currentTimeMillis();
+        this.entryTimeInNanos = entryTimeInNanos;
         this.arguments = arguments;
         this.exit = howItExited;
     }
 
+    /**
+     * @param howItExited      the exit the call was made with
+     * @param entryTimeInNanos the {@link System#nanoTime()} when the controlled method was entered (before its exit was chosen, so choosing it counts towards the duration)
+     * @param arguments        the arguments the call was made with
+     * @return a call which a controlled method has entered, and which it will tell when it has exited (see {@link #exited(MethodExit)}).
+     */
+    static <MethodReturnType> MethodCall<MethodReturnType> entered(final MethodExit<MethodReturnType> howItExited, final long entryTimeInNanos, final Object[] arguments)
+    {
+        return new MethodCall<>(howItExited, entryTimeInNanos, arguments);
+    }
+
+    /**
+     * Record that the controlled method has now exited (just before it returns or throws).
+     *
+     * @param howItExited how it actually exited (which is only different to the exit it was called with, if it was interrupted while waiting for the exit delay)
+     */
+    void exited(final MethodExit<MethodReturnType> howItExited)
+    {
+        this.exit = howItExited;
+        this.durationInNanos = System.nanoTime() - this.entryTimeInNanos;
+    }
+
     /**
      * @return the time, in milliseconds, that the controlled method was called.
      */
@@ -44,6 +87,46 @@ public class MethodCall<MethodReturnType>
         return this.callTimeInMillis;
     }
 
+    /**
+     * @return the {@link System#nanoTime()} when the controlled method was entered.  It is only meaningful when compared to other nano times (e.g. to measure the time
+     * between calls).
+     */
+    public long getEntryTimeInNanos()
+    {
+        return this.entryTimeInNanos;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} when the controlled method exited.
+     * @throws IllegalStateException if the controlled method hasn't exited yet
+     */
+    public long getExitTimeInNanos()
+    {
+        return this.entryTimeInNanos + this.getDurationInNanos();
+    }
+
+    /**
+     * @return how long (in nanoseconds) was spent in the controlled method, including any exit delay.
+     * @throws IllegalStateException if the controlled method hasn't exited yet
+     */
+    public long getDurationInNanos()
+    {
+        final long duration = this.durationInNanos;
+        if(duration == NOT_EXITED_YET)
+        {
+            throw new IllegalStateException("The controlled method hasn't exited yet, so there is no exit time or duration");
+        }
+        return duration;
+    }
+
+    /**
+     * @return whether the controlled method has exited yet (i.e. whether it is still executing, e.g. waiting for its exit delay).
+     */
+    public boolean hasExited()
+    {
+        return this.durationInNanos != NOT_EXITED_YET;
+    }
+
     /**
      * @return the values of the call arguments of the controlled method.  They will be in the order that they are defined on the method signature.
      */
@@ -33,20 +33,20 @@ public class MethodExit<ReturnType>
     private final ReturnType byReturnValue;
     private final RuntimeException byUncheckedException;
     private final Exception byCheckedException;
-    private final ControlledMethodHandler historyToStoreMeIn;
+    private final ControlledMethodHandler<ReturnType> historyToStoreMeIn;
     private final Exited howItExited;
-    private final long msExitDelay;
+    private final long nsExitDelay;
 
-    private MethodExit(final ControlledMethodHandler historyToStoreThisIn, final ReturnType byReturnValue,
+    private MethodExit(final ControlledMethodHandler<ReturnType> historyToStoreThisIn, final ReturnType byReturnValue,
                        final RuntimeException byUncheckedException,
-                       final Exception byCheckedException, final long msExitDelay, final Exited howItExited)
+                       final Exception byCheckedException, final long nsExitDelay, final Exited howItExited)
     {
         this.historyToStoreMeIn = historyToStoreThisIn;
         this.byReturnValue = byReturnValue;
         this.byUncheckedException = byUncheckedException;
         this.byCheckedException = byCheckedException;
         this.howItExited = howItExited;
-        this.msExitDelay = msExitDelay;
+        this.nsExitDelay = nsExitDelay;
     }
 
     /**
@@ -54,11 +54,12 @@ public class MethodExit<ReturnType>
      *
      * @param historyToStoreThisIn the history that this should be stored in
      * @param byReturnValue        the value returned from the method.
+     * @param nsExitDelay          how long (in nanoseconds) to wait before exiting
      */
-    MethodExit(final ControlledMethodHandler historyToStoreThisIn, final ReturnType byReturnValue,
-               final long msExitDelay)
+    MethodExit(final ControlledMethodHandler<ReturnType> historyToStoreThisIn, final ReturnType byReturnValue,
+               final long nsExitDelay)
     {
-        this(historyToStoreThisIn, byReturnValue, null, null, msExitDelay, Exited.Normally);
+        this(historyToStoreThisIn, byReturnValue, null, null, nsExitDelay, Exited.Normally);
     }
 
     /**
@@ -66,11 +67,12 @@ public class MethodExit<ReturnType>
      *
      * @param historyToStoreThisIn the history that this should be stored in
      * @param byUncheckedException the exception that was thrown
+     * @param nsExitDelay          how long (in nanoseconds) to wait before exiting
      */
-    MethodExit(final ControlledMethodHandler historyToStoreThisIn, final RuntimeException byUncheckedException,
-               final long msExitDelay)
+    MethodExit(final ControlledMethodHandler<ReturnType> historyToStoreThisIn, final RuntimeException byUncheckedException,
+               final long nsExitDelay)
     {
-        this(historyToStoreThisIn, null, byUncheckedException, null, msExitDelay, Exited.ByUncheckedException);
+        this(historyToStoreThisIn, null, byUncheckedException, null, nsExitDelay, Exited.ByUncheckedException);
     }
 
     /**
@@ -78,13 +80,24 @@ public class MethodExit<ReturnType>
      *
      * @param historyToStoreThisIn the history that this should be stored in
      * @param byCheckedException   the exception that was thrown
+     * @param nsExitDelay          how long (in nanoseconds) to wait before exiting
      */
-    MethodExit(final ControlledMethodHandler historyToStoreThisIn, final Exception byCheckedException,
-               final long msExitDelay)
+    MethodExit(final ControlledMethodHandler<ReturnType> historyToStoreThisIn, final Exception byCheckedException,
+               final long nsExitDelay)
     {
-        this(historyToStoreThisIn, null, null, byCheckedException, msExitDelay, Exited.ByCheckedException);
+        this(historyToStoreThisIn, null, null, byCheckedException, nsExitDelay, Exited.ByCheckedException);
     }
 
+    /**
+     * @param methodArgumentValues the arguments the controlled method was called with
+     * @return the exit to actually use for the call, which is this one, unless the exit depends on the arguments (see {@link ComputedMethodExit}).
+     */
+    MethodExit<ReturnType> exitFor(final Object[] methodArgumentValues)
+    {
+        return this;
+    }
+
+    @SuppressWarnings("unchecked") // the cast is erased, so this relies on the caller knowing the exception is one the method declares
     static <T extends Exception> void throwIfExceptionIsOfExpectedType(Exception toThrowIfExpectedType) throws T
     {
         try
@@ -135,17 +148,17 @@ public class MethodExit<ReturnType>
      *
      * @return the value returned if this exits in a "normal" fashion.
      */
-    ReturnType exitByUncheckedExceptionOrReturningValue(Object... methodArgumentValues)
+    ReturnType exitByUncheckedExceptionOrReturningValue(final long entryTimeInNanos, Object... methodArgumentValues)
     {
-        exitByUncheckedException(methodArgumentValues);
+        exitByUncheckedException(entryTimeInNanos, methodArgumentValues);
         return this.byReturnValue;
     }
 
     <E1 extends Exception, E2 extends Exception, E3 extends Exception, E4 extends Exception, E5 extends Exception> ReturnType exitByCheckedOrUncheckedExceptionOrReturnValue(
-            Object... methodArgumentValues)
+            final long entryTimeInNanos, Object... methodArgumentValues)
             throws E1, E2, E3, E4, E5
     {
-        exitByUncheckedException(methodArgumentValues);
+        exitByUncheckedException(entryTimeInNanos, methodArgumentValues);
         if(this.byCheckedException != null)
         {
             MethodExit.<E1>throwIfExceptionIsOfExpectedType(this.byCheckedException);
@@ -157,16 +170,28 @@ public class MethodExit<ReturnType>
         return this.byReturnValue;
     }
 
-    private void exitByUncheckedException(Object... methodArgumentValues)
+    private void exitByUncheckedException(final long entryTimeInNanos, Object... methodArgumentValues)
     {
-        this.storeMe(methodArgumentValues);
-        try
+        // the entry time was taken by the controlled method before this exit was chosen (and the call is only created if everything is being recorded)
+        final MethodCall<ReturnType> call = this.historyToStoreMeIn.recordCall(this, entryTimeInNanos, methodArgumentValues);
+        // there's nothing to do for the (usual) case of no delay
+        final long nsDelay = this.nsExitDelay + this.historyToStoreMeIn.nextExitLatencyInNanos();
+        if(nsDelay > 0 && !ExitDelay.waitFor(nsDelay))
         {
-            Thread.sleep(this.msExitDelay);
+            // interrupted, so the delay is cut short (leaving the interrupt flag set), and the method exits the way it has been told to when interrupted (if it has been)
+            final MethodExit<ReturnType> interruptedExit = this.historyToStoreMeIn.getInterruptedExit();
+            if(interruptedExit != null)
+            {
+                if(call != null)
+                {
+                    call.exited(interruptedExit);
+                }
+                throw interruptedExit.byUncheckedException;
+            }
         }
-        catch(InterruptedException e)
+        if(call != null)
         {
-            // i don't care
+            call.exited(this);
         }
         if(this.byUncheckedException != null)
         {
@@ -174,19 +199,6 @@ public class MethodExit<ReturnType>
         }
     }
 
-
-    /**
-     * Store this exit in the controlled methods history.  This should be called as close to the controlled methods execution start as possible.
-     *
-     * @param methodArgumentValues the arguments that were passed to the controlled method.
-     * @return itself, so fluid calls can be made.
-     */
-    private MethodExit<ReturnType> storeMe(Object... methodArgumentValues)
-    {
-        this.historyToStoreMeIn.addCall(new MethodCall<>(this, methodArgumentValues));
-        return this;
-    }
-
     public enum Exited
     {
         Normally, ByUncheckedException, ByCheckedException
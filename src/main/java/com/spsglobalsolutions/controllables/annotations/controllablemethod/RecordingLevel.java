@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+/**
+ * How much is recorded about each call to a controlled method.  Recording everything about every call ({@link #Full}) isn't free, so if a test is measuring throughput (and
+ * only needs to know how many calls were made, or when), a lower level means the test isn't also measuring the controllable's own overhead.
+ * <p/>
+ * The level can be changed at any time (using {@link ControllableMethod#setRecordingLevel(RecordingLevel)}), and anything already recorded is kept; it just stops being added
+ * to.
+ *
+ * @author stevo58008
+ */
+public enum RecordingLevel
+{
+    /**
+     * Nothing is recorded (not even the call count).
+     */
+    Off,
+    /**
+     * Only the number of calls is recorded ({@link ControllableMethod#getCallCount()}).  Nothing is allocated per call.
+     */
+    Count,
+    /**
+     * The number of calls, and the time of each call, are recorded ({@link ControllableMethod#getCallTimesInMillis()}).  The times are kept in a primitive array, so there
+     * is no object per call.
+     */
+    Timestamps,
+    /**
+     * Everything is recorded; the number of calls, and a {@link MethodCall} (with the time, arguments and exit) for each call ({@link ControllableMethod#getHistory()}).  This
+     * is the default.
+     */
+    Full
+}
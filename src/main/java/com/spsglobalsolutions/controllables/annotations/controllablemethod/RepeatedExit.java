@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The same exit, used for a given number of calls.  However many calls it is for, it is just the one exit and a count, so programming a long run of the same exit costs the
+ * same as programming one.
+ *
+ * @param <ReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+final class RepeatedExit<ReturnType> extends ExitSequence<ReturnType>
+{
+
+    private final MethodExit<ReturnType> exit;
+    private final AtomicLong remainingUses;
+
+    /**
+     * @param handler the handler the exit is for
+     * @param exit    the exit to repeat
+     * @param times   how many calls to use it for (at least one)
+     */
+    RepeatedExit(final ControlledMethodHandler<ReturnType> handler, final MethodExit<ReturnType> exit, final long times)
+    {
+        super(handler);
+        this.exit = exit;
+        this.remainingUses = new AtomicLong(times);
+    }
+
+    @Override
+    MethodExit<ReturnType> takeNext()
+    {
+        while(true)
+        {
+            final long remaining = this.remainingUses.get();
+            if(remaining <= 0)
+            {
+                return null;
+            }
+            if(this.remainingUses.compareAndSet(remaining, remaining - 1))
+            {
+                return this.exit;
+            }
+        }
+    }
+}
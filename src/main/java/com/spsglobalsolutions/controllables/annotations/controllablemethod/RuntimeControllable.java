@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A controllable of an interface, created at runtime (using a {@link Proxy}), for when the {@code @Controllable} annotation can't be used (e.g. the interface is generated, or
+ * the code using it isn't compiled by javac).  Each of the interface's methods can be configured, and its history looked at, through the same {@link ControllableMethod} API
+ * as a generated controllable.
+ * <p/>
+ * As the methods aren't known until runtime, the accessor for each method's {@link ControllableMethod} can't be typed, so it is looked up by name (and parameter types, if it
+ * is overloaded) and then used as the {@link ControllableVoidMethod} or {@link ControllableNonVoidMethod} type (with the checked exceptions) for the method's signature:
+ * <pre>
+ *     final RuntimeControllable&lt;Repository&gt; repository = RuntimeControllable.of(Repository.class);
+ *     final ControllableNonVoidMethod.Throwing1CheckedException&lt;?, String, IOException&gt; load = repository.method("load", int.class);
+ *     load.addNormalExit("loaded");
+ *     new CodeUnderTest(repository.get()).run();
+ * </pre>
+ * Everything found out about an interface by reflection (its methods, their IDs, and the proxy class) is worked out once, and kept (for as long as the interface's class is),
+ * so creating another controllable of the same interface only creates the proxy and its {@link ControlledMethodTable}.  A call to the proxy just looks up the method's ID,
+ * and exits through the method's controlled method (there is no reflective call).
+ *
+ * @param <InterfaceType> the interface being controlled
+ * @author stevo58008
+ */
+public final class RuntimeControllable<InterfaceType>
+{
+
+    private static final ClassValue<InterfaceLayout> LAYOUTS = new ClassValue<InterfaceLayout>()
+    {
+        @Override
+        protected InterfaceLayout computeValue(final Class<?> anInterface)
+        {
+            return new InterfaceLayout(anInterface);
+        }
+    };
+
+    private final InterfaceLayout layout;
+    private final ControlledMethodTable controlledMethods;
+    private final InterfaceType instance;
+
+    private RuntimeControllable(final Class<InterfaceType> anInterface, final int historyCapacity, final RecordingLevel recordingLevel)
+    {
+        this.layout = LAYOUTS.get(anInterface);
+        this.controlledMethods = new ControlledMethodTable(this.layout.methods, historyCapacity, recordingLevel);
+        this.instance = anInterface.cast(this.layout.newProxy(new ControlledInvocationHandler(this.layout, this.controlledMethods)));
+    }
+
+    /**
+     * @param anInterface the interface to control
+     * @param <InterfaceType> the interface to control
+     * @return a new controllable of the interface, where each method keeps every call in its history, and records everything about each call.
+     * @throws IllegalArgumentException if the class isn't an interface
+     */
+    public static <InterfaceType> RuntimeControllable<InterfaceType> of(final Class<InterfaceType> anInterface)
+    {
+        return of(anInterface, ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+    }
+
+    /**
+     * @param anInterface     the interface to control
+     * @param historyCapacity the most calls each method keeps in its history, or {@link ControllableMethod#UNBOUNDED_HISTORY} to keep them all
+     * @param recordingLevel  how much each method records about each call (to start with)
+     * @param <InterfaceType> the interface to control
+     * @return a new controllable of the interface.
+     * @throws IllegalArgumentException if the class isn't an interface, or the history capacity isn't valid
+     */
+    public static <InterfaceType> RuntimeControllable<InterfaceType> of(final Class<InterfaceType> anInterface, final int historyCapacity,
+                                                                        final RecordingLevel recordingLevel)
+    {
+        if(!anInterface.isInterface())
+        {
+            throw new IllegalArgumentException("Only an interface can be controlled at runtime, not " + anInterface.getName());
+        }
+        if(historyCapacity < 1 && historyCapacity != ControllableMethod.UNBOUNDED_HISTORY)
+        {
+            throw new IllegalArgumentException("The history capacity must be at least 1 (or UNBOUNDED_HISTORY), but was " + historyCapacity);
+        }
+        return new RuntimeControllable<>(anInterface, historyCapacity, recordingLevel);
+    }
+
+    /**
+     * @return the instance of the interface, whose methods are controlled.
+     */
+    public InterfaceType get()
+    {
+        return this.instance;
+    }
+
+    /**
+     * @param name           the name of the method
+     * @param parameterTypes the parameter types of the method
+     * @param <ControllableType> the {@link ControllableVoidMethod} or {@link ControllableNonVoidMethod} type for the method's signature
+     * @return the view of the method (the same one each time it is asked for), through which it can be configured (and its history looked at).
+     * @throws IllegalArgumentException if the interface has no such method
+     */
+    @SuppressWarnings("unchecked")
+    public <ControllableType extends ControllableMethod<?, ?>> ControllableType method(final String name, final Class<?>... parameterTypes)
+    {
+        final Integer methodId = this.layout.methodIdsBySignature.get(signatureOf(name, parameterTypes));
+        if(methodId == null)
+        {
+            throw new IllegalArgumentException(
+                    "There is no method " + signatureOf(name, parameterTypes) + " on " + this.layout.anInterface.getName() + " to control");
+        }
+        return (ControllableType) this.controlledMethods.getControllable(methodId);
+    }
+
+    /**
+     * @return the controlled methods of the interface (in order of ID, which is the order of their names and then parameter types).
+     */
+    public List<ControlledMethodInfo> getMethods()
+    {
+        return this.layout.methods;
+    }
+
+    private static String signatureOf(final String name, final Class<?>... parameterTypes)
+    {
+        final StringBuilder sb = new StringBuilder(name).append('(');
+        for(int i = 0; i < parameterTypes.length; i++)
+        {
+            sb.append(i == 0 ? "" : ", ").append(typeName(parameterTypes[i]));
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String typeName(final Type type)
+    {
+        if(type instanceof Class && ((Class<?>) type).isArray())
+        {
+            return typeName(((Class<?>) type).getComponentType()) + "[]";
+        }
+        return type instanceof Class ? ((Class<?>) type).getName() : type.toString();
+    }
+
+    private static String[] typeNames(final Type[] types)
+    {
+        final String[] names = new String[types.length];
+        for(int i = 0; i < types.length; i++)
+        {
+            names[i] = typeName(types[i]);
+        }
+        return names;
+    }
+
+    /**
+     * Everything found out about an interface by reflection, which is shared by all the controllables of it.
+     */
+    private static final class InterfaceLayout
+    {
+
+        private final Class<?> anInterface;
+        private final Constructor<?> proxyConstructor;
+        private final ImmutableList<ControlledMethodInfo> methods;
+        // a method inherited from more than one interface can be given to the invocation handler as any of them, so they all have the same ID
+        private final ImmutableMap<Method, Integer> methodIds;
+        private final ImmutableMap<String, Integer> methodIdsBySignature;
+
+        private InterfaceLayout(final Class<?> anInterface)
+        {
+            this.anInterface = anInterface;
+            try
+            {
+                this.proxyConstructor = Proxy.getProxyClass(anInterface.getClassLoader(), anInterface).getConstructor(InvocationHandler.class);
+            }
+            catch(final NoSuchMethodException e)
+            {
+                throw new IllegalStateException("A proxy class always has a constructor taking an InvocationHandler", e);
+            }
+
+            // the methods are given their IDs in order of their signatures, so they are the same every time
+            final List<Method> interfaceMethods = new ArrayList<>();
+            for(final Method method : anInterface.getMethods())
+            {
+                if(!Modifier.isStatic(method.getModifiers()))
+                {
+                    interfaceMethods.add(method);
+                }
+            }
+            Collections.sort(interfaceMethods, new Comparator<Method>()
+            {
+                @Override
+                public int compare(final Method method, final Method otherMethod)
+                {
+                    return signatureOf(method.getName(), method.getParameterTypes())
+                            .compareTo(signatureOf(otherMethod.getName(), otherMethod.getParameterTypes()));
+                }
+            });
+            final List<ControlledMethodInfo> methods = new ArrayList<>();
+            final Map<String, Integer> idsBySignature = new HashMap<>();
+            final ImmutableMap.Builder<Method, Integer> ids = ImmutableMap.builder();
+            for(final Method method : interfaceMethods)
+            {
+                final String signature = signatureOf(method.getName(), method.getParameterTypes());
+                Integer id = idsBySignature.get(signature);
+                if(id == null)
+                {
+                    id = methods.size();
+                    idsBySignature.put(signature, id);
+                    methods.add(new ControlledMethodInfo(id, method.getName(), typeName(method.getGenericReturnType()), typeNames(method.getGenericParameterTypes()),
+                                                         typeNames(method.getGenericExceptionTypes())));
+                }
+                ids.put(method, id);
+            }
+            this.methods = ControlledMethodInfo.listOf(methods.toArray(new ControlledMethodInfo[methods.size()]));
+            this.methodIds = ids.build();
+            this.methodIdsBySignature = ImmutableMap.copyOf(idsBySignature);
+        }
+
+        private Object newProxy(final InvocationHandler handler)
+        {
+            try
+            {
+                return this.proxyConstructor.newInstance(handler);
+            }
+            catch(final InstantiationException | IllegalAccessException | InvocationTargetException e)
+            {
+                throw new IllegalStateException("Could not create a proxy of " + this.anInterface.getName(), e);
+            }
+        }
+    }
+
+    private static final class ControlledInvocationHandler implements InvocationHandler
+    {
+
+        private final InterfaceLayout layout;
+        private final ControlledMethodTable controlledMethods;
+
+        private ControlledInvocationHandler(final InterfaceLayout layout, final ControlledMethodTable controlledMethods)
+        {
+            this.layout = layout;
+            this.controlledMethods = controlledMethods;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+        {
+            final Integer methodId = this.layout.methodIds.get(method);
+            if(methodId == null)
+            {
+                // one of Object's methods (equals, hashCode or toString), which aren't controlled
+                return this.invokeObjectMethod(proxy, method, args);
+            }
+            return this.controlledMethods.exitFromAnyCall(methodId, args == null ? ControlledMethodHandler.NO_ARGUMENTS : args);
+        }
+
+        private Object invokeObjectMethod(final Object proxy, final Method method, final Object[] args)
+        {
+            switch(method.getName())
+            {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "RuntimeControllable of " + this.layout.anInterface.getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+        }
+    }
+}
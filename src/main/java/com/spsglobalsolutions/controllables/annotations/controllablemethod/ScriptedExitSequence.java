@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Charsets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A sequence of exits, replayed from an exit script (see {@link ExitScriptWriter} for the format).  The script is read through a memory mapped window, which is moved along it
+ * as the exits are used, so only the exit being used is ever on the heap (and the script can be far bigger than the heap, or than a single mapping can be).
+ * <p/>
+ * The records are read one at a time, so many threads can use the exits at once, and each record is only used once.
+ *
+ * @param <ReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+final class ScriptedExitSequence<ReturnType> extends ExitSequence<ReturnType>
+{
+
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final ControlledMethodHandler<ReturnType> handler;
+    private final Path script;
+    private final ExitValueCodec<ReturnType> codec;
+    private final int windowSize;
+    private final long scriptSize;
+
+    // only used while holding the lock on this
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long nextRecordPosition = ExitScriptWriter.HEADER_SIZE;
+
+    /**
+     * @param handler    the handler the exits are for
+     * @param script     the exit script to replay
+     * @param codec      converts the bytes in the script back to return values
+     * @param windowSize how much of the script to map at once (a record bigger than this is mapped on its own)
+     * @throws IOException if the script can't be read
+     */
+    ScriptedExitSequence(final ControlledMethodHandler<ReturnType> handler, final Path script, final ExitValueCodec<ReturnType> codec, final int windowSize)
+            throws IOException
+    {
+        super(handler);
+        this.handler = handler;
+        this.script = script;
+        this.codec = codec;
+        this.windowSize = windowSize;
+        this.scriptSize = Files.size(script);
+        if(this.scriptSize < ExitScriptWriter.HEADER_SIZE)
+        {
+            throw new IllegalArgumentException(script + " is not an exit script, as it is too short");
+        }
+        final ByteBuffer header = this.map(0, ExitScriptWriter.HEADER_SIZE);
+        if(header.getInt() != ExitScriptWriter.MAGIC_NUMBER)
+        {
+            throw new IllegalArgumentException(script + " is not an exit script");
+        }
+        final int version = header.getInt();
+        if(version != ExitScriptWriter.VERSION)
+        {
+            throw new IllegalArgumentException(script + " is version " + version + " of the exit script format, but only version " + ExitScriptWriter.VERSION +
+                                               " can be read");
+        }
+    }
+
+    @Override
+    synchronized MethodExit<ReturnType> takeNext()
+    {
+        if(this.nextRecordPosition >= this.scriptSize)
+        {
+            return null;
+        }
+        final long recordPosition = this.nextRecordPosition;
+        final ByteBuffer recordHeader = this.read(recordPosition, ExitScriptWriter.RECORD_HEADER_SIZE);
+        final byte howItExits = recordHeader.get();
+        final long nsExitDelay = recordHeader.getLong();
+        final int length = recordHeader.getInt();
+        final ByteBuffer contents = this.read(recordPosition + ExitScriptWriter.RECORD_HEADER_SIZE, Math.max(length, 0));
+        // moved on before decoding, so a record which can't be decoded isn't tried again for every call
+        this.nextRecordPosition = recordPosition + ExitScriptWriter.RECORD_HEADER_SIZE + Math.max(length, 0);
+        switch(howItExits)
+        {
+            case ExitScriptWriter.NORMAL_EXIT:
+                return new MethodExit<>(this.handler, length == ExitScriptWriter.NULL_LENGTH ? null : this.codec.decode(contents), nsExitDelay);
+            case ExitScriptWriter.UNCHECKED_EXCEPTION_EXIT:
+                return new MethodExit<ReturnType>(this.handler, this.recreateException(contents), nsExitDelay);
+            default:
+                throw new ControllableMethodException("The exit script " + this.script + " has an unknown type of exit (" + howItExits + ") at position " + recordPosition);
+        }
+    }
+
+    /**
+     * @return a view of the given part of the script, moving the window along first, if it isn't already in it.
+     */
+    private ByteBuffer read(final long position, final int size)
+    {
+        if(position + size > this.scriptSize)
+        {
+            throw new ControllableMethodException("The exit script " + this.script + " ends part way through the exit at position " + position);
+        }
+        if(this.window == null || position < this.windowStart || position + size > this.windowStart + this.window.capacity())
+        {
+            try
+            {
+                this.window = this.map(position, (int) Math.min(Math.max(this.windowSize, size), this.scriptSize - position));
+                this.windowStart = position;
+            }
+            catch(final IOException e)
+            {
+                throw new ControllableMethodException("Could not read the exit script " + this.script, e);
+            }
+        }
+        final ByteBuffer view = this.window.duplicate();
+        final int offset = (int) (position - this.windowStart);
+        view.position(offset);
+        view.limit(offset + size);
+        return view.slice();
+    }
+
+    private MappedByteBuffer map(final long position, final int size) throws IOException
+    {
+        // the mapping stays valid after the channel is closed, so it isn't kept open between windows
+        try(final FileChannel channel = FileChannel.open(this.script, StandardOpenOption.READ))
+        {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+    }
+
+    private RuntimeException recreateException(final ByteBuffer contents)
+    {
+        final String className = readString(contents);
+        final String message = readString(contents);
+        try
+        {
+            final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            final Class<?> exceptionClass = Class.forName(className, true,
+                                                          contextClassLoader != null ? contextClassLoader : ScriptedExitSequence.class.getClassLoader());
+            return exceptionClass.asSubclass(RuntimeException.class).getConstructor(String.class).newInstance(message);
+        }
+        catch(final ReflectiveOperationException | ClassCastException e)
+        {
+            throw new ControllableMethodException("Could not recreate the " + className + " in the exit script " + this.script, e);
+        }
+    }
+
+    private static String readString(final ByteBuffer contents)
+    {
+        final int length = contents.getInt();
+        if(length == ExitScriptWriter.NULL_LENGTH)
+        {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        contents.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+/**
+ * A seedable source of random numbers, for drawing exit latencies (see {@link ExitLatency}) and choosing between weighted exits (see {@link WeightedExits}), which doesn't
+ * allocate anything per draw.
+ * <p/>
+ * It is the SplitMix64 generator; the state just moves on by a constant each draw, and the draw is a mix of the new state.  So the sequence of numbers drawn from a given seed
+ * is always the same.  An instance is only ever used by one thread: {@link #perThread(long)} gives each thread its own, from its own stream, so the threads never share any
+ * state (there is nothing to contend on), and each thread's numbers are the same from one run to the next, however the threads are interleaved.
+ *
+ * @author stevo58008
+ */
+final class SeededRandom
+{
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    private long state;
+
+    SeededRandom(final long seed)
+    {
+        this.state = seed;
+    }
+
+    /**
+     * @param seed the seed shared by all the threads
+     * @return a generator for each thread, from the stream numbered by {@link #streamNumberFor(Thread)}.
+     */
+    static ThreadLocal<SeededRandom> perThread(final long seed)
+    {
+        return new ThreadLocal<SeededRandom>()
+        {
+            @Override
+            protected SeededRandom initialValue()
+            {
+                return forStream(seed, streamNumberFor(Thread.currentThread()));
+            }
+        };
+    }
+
+    /**
+     * The number of the stream a thread draws from, which is taken from its name, so it is the same from one run to the next (unlike its id, or the order in which the threads
+     * first draw, which both depend on what else the JVM has done).  So threads which are given the same names in each run draw the same numbers in each run; threads with the
+     * same name as each other draw the same numbers as each other.
+     *
+     * @param thread the thread drawing the numbers
+     * @return its stream number
+     */
+    static long streamNumberFor(final Thread thread)
+    {
+        return thread.getName().hashCode();
+    }
+
+    /**
+     * @param seed         the seed shared by all the threads
+     * @param streamNumber which of the streams to create (e.g. a number given to each thread)
+     * @return a generator for one of many independent streams of random numbers from the same seed (so that each thread can have its own, rather than sharing one).
+     */
+    static SeededRandom forStream(final long seed, final long streamNumber)
+    {
+        // mixing the stream number jumps to a random place in the sequence, rather than the next place along (which would give overlapping streams)
+        return new SeededRandom(seed + mix(streamNumber * GOLDEN_GAMMA + GOLDEN_GAMMA));
+    }
+
+    /**
+     * @return the next random number, between 0 (inclusive) and 1 (exclusive).
+     */
+    double nextDouble()
+    {
+        this.state += GOLDEN_GAMMA;
+        return (mix(this.state) >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * @return the next random number from the standard normal distribution (mean 0, standard deviation 1).
+     */
+    double nextGaussian()
+    {
+        // Box-Muller, just using the one value (rather than keeping the second, which would need more state)
+        final double u1 = 1.0 - this.nextDouble(); // so never 0, for the log
+        final double u2 = this.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+    }
+
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
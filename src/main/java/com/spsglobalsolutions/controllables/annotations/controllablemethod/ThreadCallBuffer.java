@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The calls made to a controlled method by one thread, each with the (global) sequence number it was given when it was made, waiting to be merged into the {@link CallHistory}.
+ * <p/>
+ * Only the owning thread ever adds to it, so adding is just a couple of array writes and an ordered write of the count (there is nothing shared with the other threads' buffers,
+ * so they never block each other).  Only the history, when merging, ever takes from it.  The calls are kept in linked segments, which are let go of once the history has
+ * merged every call in them (so a call isn't kept both here and in the history).  If the history has a capacity, the segments which only hold calls that have dropped out of
+ * it are also let go of by the writer, so memory use stays flat even if the history is never read.
+ *
+ * @param <MethodReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+final class ThreadCallBuffer<MethodReturnType>
+{
+
+    private static final int SEGMENT_SIZE = 64;
+
+    private final int historyCapacity;
+    private final WeakReference<Thread> owner;
+    // only changed by the history (while merging), when it lets go of the buffer of a thread which has gone
+    private volatile ThreadCallBuffer<MethodReturnType> olderBuffer;
+    private final AtomicLong publishedCount = new AtomicLong(); // written after the call's slot, so publishes it to the history when it's read
+
+    // only used by the writing thread
+    private Segment<MethodReturnType> newestSegment;
+    private long writeIndex;
+
+    // only ever moved forwards; by the writer when segments drop out of the capacity, and by the history once it has merged every call in a segment.  The history reads it to
+    // find where to take from (rather than holding onto a segment, and so every one after it).
+    private final AtomicReference<Segment<MethodReturnType>> oldestSegment;
+
+    // only used by the history, while merging
+    private Segment<MethodReturnType> readSegment;
+    private long readIndex;
+
+    /**
+     * @param historyCapacity the most calls the history retains, or {@link ControllableMethod#UNBOUNDED_HISTORY} if it retains them all
+     * @param olderBuffer     the buffer which was created before this one (for another thread), so the history can keep them all in a list
+     */
+    ThreadCallBuffer(final int historyCapacity, final ThreadCallBuffer<MethodReturnType> olderBuffer)
+    {
+        this.historyCapacity = historyCapacity;
+        this.owner = new WeakReference<>(Thread.currentThread());
+        this.olderBuffer = olderBuffer;
+        this.newestSegment = new Segment<>(0);
+        this.oldestSegment = new AtomicReference<>(this.newestSegment);
+        this.readSegment = this.newestSegment;
+    }
+
+    ThreadCallBuffer<MethodReturnType> getOlderBuffer()
+    {
+        return this.olderBuffer;
+    }
+
+    void setOlderBuffer(final ThreadCallBuffer<MethodReturnType> olderBuffer)
+    {
+        this.olderBuffer = olderBuffer;
+    }
+
+    /**
+     * @return whether the thread which owns this buffer has gone (so no more calls will ever be added to it).
+     */
+    boolean isOwnerGone()
+    {
+        final Thread thread = this.owner.get();
+        return thread == null || !thread.isAlive();
+    }
+
+    /**
+     * @return the number of segments still kept (for testing that they are let go of).
+     */
+    int getRetainedSegmentCount()
+    {
+        int count = 0;
+        for(Segment<MethodReturnType> segment = this.oldestSegment.get(); segment != null; segment = segment.next)
+        {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Add the call (only ever called by the thread which owns this buffer).  The sequence number is only taken once there is somewhere to put the call, so that the history
+     * never waits long for a call which has been given a sequence number, but not yet published.
+     *
+     * @param sequenceNumbers where to get the call's sequence number from
+     * @param call            the details of the method call
+     */
+    void add(final AtomicLong sequenceNumbers, final MethodCall<MethodReturnType> call)
+    {
+        final long index = this.writeIndex;
+        int slot = (int) (index - this.newestSegment.firstIndex);
+        if(slot == SEGMENT_SIZE)
+        {
+            final Segment<MethodReturnType> newSegment = new Segment<>(index);
+            this.newestSegment.next = newSegment;
+            this.newestSegment = newSegment;
+            slot = 0;
+            this.dropSegmentsOlderThanTheCapacity(index);
+        }
+        this.newestSegment.sequenceNumbers[slot] = sequenceNumbers.getAndIncrement();
+        this.newestSegment.calls[slot] = call;
+        this.writeIndex = index + 1;
+        this.publishedCount.lazySet(index + 1);
+    }
+
+    /**
+     * Get the sequence number of the next call to take, skipping any calls which are before the one the history wants next (which were dropped from its history, while they
+     * were still being published).
+     *
+     * @param wantedSequenceNumber the sequence number the history wants next
+     * @return the sequence number of the next call (which is then the one {@link #take()} will return), or -1 if there are no more calls published yet.
+     */
+    long peekSequenceNumber(final long wantedSequenceNumber)
+    {
+        while(true)
+        {
+            if(this.readIndex >= this.publishedCount.get())
+            {
+                return -1;
+            }
+            this.moveReadSegmentToReadIndex();
+            final int slot = (int) (this.readIndex - this.readSegment.firstIndex);
+            final long sequenceNumber = this.readSegment.sequenceNumbers[slot];
+            if(sequenceNumber >= wantedSequenceNumber)
+            {
+                return sequenceNumber;
+            }
+            this.readIndex++;
+        }
+    }
+
+    /**
+     * @return the call that {@link #peekSequenceNumber(long)} returned the sequence number of, which is then moved past.
+     */
+    MethodCall<MethodReturnType> take()
+    {
+        final MethodCall<MethodReturnType> call = this.readSegment.calls[(int) (this.readIndex - this.readSegment.firstIndex)];
+        this.readIndex++;
+        return call;
+    }
+
+    private void moveReadSegmentToReadIndex()
+    {
+        while(true)
+        {
+            final Segment<MethodReturnType> oldest = this.oldestSegment.get();
+            if(this.readIndex < oldest.firstIndex)
+            {
+                // the calls we were up to have been dropped, as they are older than the capacity
+                this.readIndex = oldest.firstIndex;
+                this.readSegment = oldest;
+                return;
+            }
+            if(this.readIndex < this.readSegment.firstIndex + SEGMENT_SIZE)
+            {
+                return;
+            }
+            // a dropped segment is unlinked, in which case the one we want is found from the oldest still kept
+            final Segment<MethodReturnType> next = this.readSegment.next;
+            this.readSegment = next != null ? next : oldest;
+            // every call before the segment we've moved onto has been merged (or skipped, as too old), so they don't need to be kept here any more
+            this.moveOldestSegmentForwardTo(this.readSegment);
+        }
+    }
+
+    /**
+     * @return whether the oldest segment was moved forward (it is never moved backwards, as the writer and the history can both move it).
+     */
+    private boolean moveOldestSegmentForwardTo(final Segment<MethodReturnType> segment)
+    {
+        while(true)
+        {
+            final Segment<MethodReturnType> oldest = this.oldestSegment.get();
+            if(oldest.firstIndex >= segment.firstIndex)
+            {
+                return false;
+            }
+            if(this.oldestSegment.compareAndSet(oldest, segment))
+            {
+                return true;
+            }
+        }
+    }
+
+    private void dropSegmentsOlderThanTheCapacity(final long newIndex)
+    {
+        if(this.historyCapacity == ControllableMethod.UNBOUNDED_HISTORY)
+        {
+            return;
+        }
+        // a segment can be dropped once there are at least a capacity's worth of calls (which already have sequence numbers) after its last one.  As every later call has a
+        // later sequence number, the segment's calls are then too old to ever be in the history.
+        final Segment<MethodReturnType> oldest = this.oldestSegment.get();
+        Segment<MethodReturnType> firstToKeep = oldest;
+        while((newIndex - 1) - (firstToKeep.firstIndex + SEGMENT_SIZE - 1) >= this.historyCapacity)
+        {
+            firstToKeep = firstToKeep.next;
+        }
+        // the dropped segments are only unlinked once they've been dropped (and only the writer unlinks), so the history never finds a link missing from a kept segment
+        if(this.moveOldestSegmentForwardTo(firstToKeep))
+        {
+            for(Segment<MethodReturnType> segment = oldest; segment != firstToKeep; )
+            {
+                final Segment<MethodReturnType> next = segment.next;
+                segment.next = null; // so a segment the history is still holding onto doesn't keep every later one alive
+                segment = next;
+            }
+        }
+    }
+
+    private static final class Segment<MethodReturnType>
+    {
+
+        private final long firstIndex;
+        private final long[] sequenceNumbers = new long[SEGMENT_SIZE];
+        @SuppressWarnings("unchecked")
+        private final MethodCall<MethodReturnType>[] calls = new MethodCall[SEGMENT_SIZE];
+        private volatile Segment<MethodReturnType> next;
+
+        private Segment(final long firstIndex)
+        {
+            this.firstIndex = firstIndex;
+        }
+    }
+}
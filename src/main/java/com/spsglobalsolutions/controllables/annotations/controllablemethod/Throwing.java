@@ -30,6 +30,26 @@ public interface Throwing<Itself extends ControllableMethod<Itself, ReturnType>,
      */
     Itself addUncheckedExceptionExit(RuntimeException toThrow);
 
+    /**
+     * Add a method exit, which happens by throwing the given exception, and is used for the given number of calls (e.g. to fail the next 1000 calls).  It is stored once, with
+     * a count, so it costs the same whatever the number of calls.
+     *
+     * @param toThrow the exception which will be thrown
+     * @param times   how many calls to use it for (at least one)
+     * @return itself
+     */
+    Itself addRepeatedUncheckedExceptionExit(RuntimeException toThrow, long times);
+
+    /**
+     * Add a method exit, which happens by throwing the given exception, and is only used for the given calls (see {@link CalledWith}), rather than being added to the exits
+     * used in order.
+     *
+     * @param calledWith which calls to use it for
+     * @param toThrow    the exception which will be thrown
+     * @return itself
+     */
+    Itself addUncheckedExceptionExitWhen(CalledWith calledWith, RuntimeException toThrow);
+
     interface OneCheckedException<Itself extends OneCheckedException<Itself, E1, ReturnType> & ControllableMethod<Itself, ReturnType>, E1 extends Exception, ReturnType>
             extends Throwing<Itself, ReturnType>
     {
@@ -41,6 +61,26 @@ public interface Throwing<Itself extends ControllableMethod<Itself, ReturnType>,
          * @return itself
          */
         Itself addCheckedException1Exit(E1 toThrow);
+
+        /**
+         * Add a method exit, which happens by throwing the given exception, and is only used for the given calls (see {@link CalledWith}), rather than being added to the
+         * exits used in order.
+         *
+         * @param calledWith which calls to use it for
+         * @param toThrow    the exception which will be thrown
+         * @return itself
+         */
+        Itself addCheckedException1ExitWhen(CalledWith calledWith, E1 toThrow);
+
+        /**
+         * Add an exit which is computed from the arguments of the call it is used for.  The computation can return a value, throw an unchecked exception, or throw the
+         * method's checked exception E1 (and the method then exits by throwing it).  The computation's type only lets it throw that checked exception, so just like with
+         * {@link #addCheckedException1Exit}, a checked exception the method doesn't declare can't be thrown.
+         *
+         * @param computation works out how to exit from the arguments (in the order they are defined on the method signature)
+         * @return itself
+         */
+        Itself addComputedCheckedException1Exit(ExitComputation<ReturnType, ? extends E1> computation);
     }
 
     interface TwoCheckedExceptions<Itself extends TwoCheckedExceptions<Itself, E1, E2, ReturnType> & ControllableMethod<Itself, ReturnType>, E1 extends Exception, E2 extends Exception,
@@ -55,6 +95,26 @@ public interface Throwing<Itself extends ControllableMethod<Itself, ReturnType>,
          * @return itself
          */
         Itself addCheckedException2Exit(E2 toThrow);
+
+        /**
+         * Add a method exit, which happens by throwing the given exception, and is only used for the given calls (see {@link CalledWith}), rather than being added to the
+         * exits used in order.
+         *
+         * @param calledWith which calls to use it for
+         * @param toThrow    the exception which will be thrown
+         * @return itself
+         */
+        Itself addCheckedException2ExitWhen(CalledWith calledWith, E2 toThrow);
+
+        /**
+         * Add an exit which is computed from the arguments of the call it is used for.  The computation can return a value, throw an unchecked exception, or throw the
+         * method's checked exception E2 (and the method then exits by throwing it).  The computation's type only lets it throw that checked exception, so just like with
+         * {@link #addCheckedException2Exit}, a checked exception the method doesn't declare can't be thrown.
+         *
+         * @param computation works out how to exit from the arguments (in the order they are defined on the method signature)
+         * @return itself
+         */
+        Itself addComputedCheckedException2Exit(ExitComputation<ReturnType, ? extends E2> computation);
     }
 
     interface ThreeCheckedExceptions<Itself extends ThreeCheckedExceptions<Itself, E1, E2, E3, ReturnType> & ControllableMethod<Itself, ReturnType>, E1 extends Exception, E2 extends
@@ -70,6 +130,26 @@ public interface Throwing<Itself extends ControllableMethod<Itself, ReturnType>,
          * @return itself
          */
         Itself addCheckedException3Exit(E3 toThrow);
+
+        /**
+         * Add a method exit, which happens by throwing the given exception, and is only used for the given calls (see {@link CalledWith}), rather than being added to the
+         * exits used in order.
+         *
+         * @param calledWith which calls to use it for
+         * @param toThrow    the exception which will be thrown
+         * @return itself
+         */
+        Itself addCheckedException3ExitWhen(CalledWith calledWith, E3 toThrow);
+
+        /**
+         * Add an exit which is computed from the arguments of the call it is used for.  The computation can return a value, throw an unchecked exception, or throw the
+         * method's checked exception E3 (and the method then exits by throwing it).  The computation's type only lets it throw that checked exception, so just like with
+         * {@link #addCheckedException3Exit}, a checked exception the method doesn't declare can't be thrown.
+         *
+         * @param computation works out how to exit from the arguments (in the order they are defined on the method signature)
+         * @return itself
+         */
+        Itself addComputedCheckedException3Exit(ExitComputation<ReturnType, ? extends E3> computation);
     }
 
     interface FourCheckedExceptions<Itself extends FourCheckedExceptions<Itself, E1, E2, E3, E4, ReturnType> & ControllableMethod<Itself, ReturnType>, E1 extends Exception, E2 extends
@@ -85,6 +165,26 @@ public interface Throwing<Itself extends ControllableMethod<Itself, ReturnType>,
          * @return itself
          */
         Itself addCheckedException4Exit(E4 toThrow);
+
+        /**
+         * Add a method exit, which happens by throwing the given exception, and is only used for the given calls (see {@link CalledWith}), rather than being added to the
+         * exits used in order.
+         *
+         * @param calledWith which calls to use it for
+         * @param toThrow    the exception which will be thrown
+         * @return itself
+         */
+        Itself addCheckedException4ExitWhen(CalledWith calledWith, E4 toThrow);
+
+        /**
+         * Add an exit which is computed from the arguments of the call it is used for.  The computation can return a value, throw an unchecked exception, or throw the
+         * method's checked exception E4 (and the method then exits by throwing it).  The computation's type only lets it throw that checked exception, so just like with
+         * {@link #addCheckedException4Exit}, a checked exception the method doesn't declare can't be thrown.
+         *
+         * @param computation works out how to exit from the arguments (in the order they are defined on the method signature)
+         * @return itself
+         */
+        Itself addComputedCheckedException4Exit(ExitComputation<ReturnType, ? extends E4> computation);
     }
 
     interface FiveCheckedExceptions<Itself extends FiveCheckedExceptions<Itself, E1, E2, E3, E4, E5, ReturnType> & ControllableMethod<Itself, ReturnType>, E1 extends Exception, E2
@@ -100,5 +200,25 @@ public interface Throwing<Itself extends ControllableMethod<Itself, ReturnType>,
          * @return itself
          */
         Itself addCheckedException5Exit(E5 toThrow);
+
+        /**
+         * Add a method exit, which happens by throwing the given exception, and is only used for the given calls (see {@link CalledWith}), rather than being added to the
+         * exits used in order.
+         *
+         * @param calledWith which calls to use it for
+         * @param toThrow    the exception which will be thrown
+         * @return itself
+         */
+        Itself addCheckedException5ExitWhen(CalledWith calledWith, E5 toThrow);
+
+        /**
+         * Add an exit which is computed from the arguments of the call it is used for.  The computation can return a value, throw an unchecked exception, or throw the
+         * method's checked exception E5 (and the method then exits by throwing it).  The computation's type only lets it throw that checked exception, so just like with
+         * {@link #addCheckedException5Exit}, a checked exception the method doesn't declare can't be thrown.
+         *
+         * @param computation works out how to exit from the arguments (in the order they are defined on the method signature)
+         * @return itself
+         */
+        Itself addComputedCheckedException5Exit(ExitComputation<ReturnType, ? extends E5> computation);
     }
 }
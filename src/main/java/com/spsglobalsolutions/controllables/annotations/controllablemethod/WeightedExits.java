@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A fixed set of exits, one of which is chosen at random (according to their weights) for each call.  E.g. to simulate a dependency that fails 2% of the time, without having to
+ * add thousands of exits in the right proportions.
+ * <p/>
+ * The choice is made using an alias table (Vose's method), so it takes one random number, and the same (small) amount of time, however many exits there are, and the memory
+ * used doesn't grow with the number of calls.  Each thread draws from its own random number generator (each from the same seed, but numbered by the thread's name, see
+ * {@link SeededRandom#streamNumberFor(Thread)}), so the threads never contend with each other, and each thread chooses the same exits in every run, however the threads are
+ * interleaved (as long as they are given the same names in each run).
+ *
+ * @param <MethodReturnType> The type of the return value of the method (for void methods it will use Void class)
+ * @author stevo58008
+ */
+final class WeightedExits<MethodReturnType>
+{
+
+    private final MethodExit<MethodReturnType>[] exits;
+    private final double[] probability;
+    private final int[] alias;
+    private final ThreadLocal<SeededRandom> threadRandom;
+
+    /**
+     * @param exits   the exits to choose between
+     * @param weights the weight of each exit (in the same order), so an exit with twice the weight of another is chosen twice as often
+     * @param seed    the seed for choosing the exits
+     * @throws IllegalArgumentException if there isn't a weight for each exit, a weight is negative, or the weights are all zero
+     */
+    WeightedExits(final List<MethodExit<MethodReturnType>> exits, final int[] weights, final long seed)
+    {
+        if(exits.isEmpty() || exits.size() != weights.length)
+        {
+            throw new IllegalArgumentException("There must be a weight for each of the " + exits.size() + " exits added, but there were " + weights.length + " weights");
+        }
+        long totalWeight = 0;
+        for(final int weight : weights)
+        {
+            if(weight < 0)
+            {
+                throw new IllegalArgumentException("The weights cannot be negative, but were " + Arrays.toString(weights));
+            }
+            totalWeight += weight;
+        }
+        if(totalWeight == 0)
+        {
+            throw new IllegalArgumentException("At least one of the weights must be more than zero");
+        }
+        @SuppressWarnings("unchecked")
+        final MethodExit<MethodReturnType>[] exitsToChooseFrom = exits.toArray(new MethodExit[exits.size()]);
+        this.exits = exitsToChooseFrom;
+        this.probability = new double[weights.length];
+        this.alias = new int[weights.length];
+        this.buildAliasTable(weights, totalWeight);
+        this.threadRandom = SeededRandom.perThread(seed);
+    }
+
+    /**
+     * @return the exit chosen for this call.
+     */
+    MethodExit<MethodReturnType> next()
+    {
+        final double scaled = this.threadRandom.get().nextDouble() * this.exits.length;
+        final int column = (int) scaled;
+        return scaled - column < this.probability[column] ? this.exits[column] : this.exits[this.alias[column]];
+    }
+
+    private void buildAliasTable(final int[] weights, final long totalWeight)
+    {
+        // scale the weights so the average is 1, then pair each column which is under 1 with one which is over, which tops it up to 1 (its alias)
+        final double[] scaled = new double[weights.length];
+        final Deque<Integer> small = new ArrayDeque<>();
+        final Deque<Integer> large = new ArrayDeque<>();
+        for(int i = 0; i < weights.length; i++)
+        {
+            scaled[i] = (double) weights[i] * weights.length / totalWeight;
+            (scaled[i] < 1.0 ? small : large).push(i);
+        }
+        while(!small.isEmpty() && !large.isEmpty())
+        {
+            final int under = small.pop();
+            final int over = large.pop();
+            this.probability[under] = scaled[under];
+            this.alias[under] = over;
+            scaled[over] = (scaled[over] + scaled[under]) - 1.0;
+            (scaled[over] < 1.0 ? small : large).push(over);
+        }
+        // anything left is (apart from rounding errors) exactly 1
+        while(!large.isEmpty())
+        {
+            this.probability[large.pop()] = 1.0;
+        }
+        while(!small.isEmpty())
+        {
+            this.probability[small.pop()] = 1.0;
+        }
+    }
+}
@@ -17,14 +17,16 @@
 package com.spsglobalsolutions.controllables.processors;
 
 import com.spsglobalsolutions.controllables.annotations.Controllable;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControllableMethod;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.RecordingLevel;
 import com.squareup.javapoet.*;
 
 import javax.lang.model.element.*;
-import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.MirroredTypesException;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -44,13 +46,19 @@ class ControllableBuilder
     private final boolean createSeparateControllableClasses;
     private final String packageWhereToGenerate;
     private final List<Controllable.MethodModifier> methodsToControlFilter;
-    private final TypeMirror mirrorOfBaseObject;
+    private final int historyCapacity;
+    private final RecordingLevel recordingLevel;
+    private final boolean indexedMethods;
+    private final TypeHierarchyCache hierarchyCache;
+    private final ProcessingStats.ElementStats stats;
 
-    ControllableBuilder(final ProcessorHelper helper, final Controllable annotation, final TypeElement annotated)
+    ControllableBuilder(final ProcessorHelper helper, final TypeHierarchyCache hierarchyCache,
+                        final ProcessingStats.ElementStats stats, final Controllable annotation, final TypeElement annotated)
             throws IllegalAnnotationException
     {
         this.helper = helper;
-        this.mirrorOfBaseObject = this.helper.getElementUtils().getTypeElement(Object.class.getName()).asType();
+        this.hierarchyCache = hierarchyCache;
+        this.stats = stats;
         this.classAnnotated = annotated;
         this.packageWhereToGenerate = this.classAnnotated.getEnclosingElement().toString();
         this.annotation = annotation;
@@ -82,6 +90,17 @@ class ControllableBuilder
             // how are we filtering which methods to control
             this.methodsToControlFilter = new ArrayList<>();
             Collections.addAll(this.methodsToControlFilter, annotation.includedModifierFilter());
+
+            // how many calls should the controlled methods keep in their history
+            this.historyCapacity = annotation.historyCapacity();
+            if(this.historyCapacity < 1 && this.historyCapacity != ControllableMethod.UNBOUNDED_HISTORY)
+            {
+                throw new IllegalAnnotationException(
+                        "The historyCapacity must be at least 1 (or UNBOUNDED_HISTORY), but was " + this.historyCapacity,
+                        annotation, annotated);
+            }
+            this.recordingLevel = annotation.recordingLevel();
+            this.indexedMethods = annotation.indexedMethods();
         }
         catch(final IllegalAnnotationException e)
         {
@@ -118,18 +137,20 @@ class ControllableBuilder
      *
      * @param foundMethods           all the ones we have found (keyed by ExecutableElement.toString() - which deals with dup methods)
      * @param inheritedFromThisClass the class to add and look to see if it has any inheritance
+     * @param visitedSupertypes      the names (with generic args) of the supertypes already looked at in this hierarchy
      */
     private void findAllMethodsNeededToControl(final Map<String, ExecutableElement> foundMethods,
                                                final Map<String, Map<TypeMirror, TypeMirror>> foundGenericArgsForMethods,
                                                final TypeElement inheritedFromThisClass,
-                                               final Map<TypeMirror, TypeMirror> genericTypeNamesAndValuesPossibleForInheritedClass)
+                                               final Map<TypeMirror, TypeMirror> genericTypeNamesAndValuesPossibleForInheritedClass,
+                                               final Set<String> visitedSupertypes)
     {
         this.helper.debug("Find all methods needing controlling on " + inheritedFromThisClass, inheritedFromThisClass);
         if(!inheritedFromThisClass.getModifiers().contains(Modifier.FINAL))
         {
             // all matching filter methods on this class
-            final List<ExecutableElement> methodsToInclude = this.helper
-                    .getContainedMethodsWithAnyMethodModifiers(inheritedFromThisClass, this.methodsToControlFilter);
+            final List<ExecutableElement> methodsToInclude =
+                    this.hierarchyCache.getMethods(inheritedFromThisClass, this.methodsToControlFilter);
             this.helper.debug(String.format("Methods found : %s", methodsToInclude), inheritedFromThisClass);
             for(ExecutableElement method : methodsToInclude)
             {
@@ -141,35 +162,13 @@ class ControllableBuilder
                 }
             }
 
-            // any superclass or interfaces
-            for(TypeMirror mirror : this.helper.getTypeUtils().directSupertypes(inheritedFromThisClass.asType()))
+            // any superclass or interfaces (a supertype reached by more than one path, with the same generic args, already has had its methods found)
+            for(final TypeHierarchyCache.Supertype supertype : this.hierarchyCache.getDirectSupertypes(inheritedFromThisClass))
             {
-                if(!this.helper.getTypeUtils().isSameType(this.mirrorOfBaseObject, mirror))
+                if(visitedSupertypes.add(supertype.getName()))
                 {
-                    System.out.println("Some sort of super class found : " + mirror.toString());
-
-                    TypeElement superElement = (TypeElement) this.helper.getTypeUtils().asElement(mirror);
-                    Map<TypeMirror, TypeMirror> genericArgNamesAndValuesForSuper = null;
-
-                    // check if we need to extract any generics out of the class
-                    final DeclaredType declaredType = (DeclaredType) mirror;
-                    final List<? extends TypeMirror> genericArgsValues = declaredType.getTypeArguments();
-                    if(!genericArgsValues.isEmpty())
-                    {
-                        final List<? extends TypeMirror> genericArgNames =
-                                ((DeclaredType) superElement.asType()).getTypeArguments();
-                        System.out.println(
-                                "Generic Types found : " + Arrays.toString(genericArgNames.toArray()) + " = " +
-                                Arrays.toString(genericArgsValues.toArray()));
-                        genericArgNamesAndValuesForSuper = new HashMap<>();
-                        for(int i = 0; i < genericArgNames.size(); i++)
-                        {
-                            genericArgNamesAndValuesForSuper.put(genericArgNames.get(i), genericArgsValues.get(i));
-                        }
-                    }
-
-                    this.findAllMethodsNeededToControl(foundMethods, foundGenericArgsForMethods, superElement,
-                                                       genericArgNamesAndValuesForSuper);
+                    this.findAllMethodsNeededToControl(foundMethods, foundGenericArgsForMethods, supertype.getElement(),
+                                                       supertype.getGenericArgNamesAndValues(), visitedSupertypes);
                 }
             }
         }
@@ -184,8 +183,11 @@ class ControllableBuilder
 
         final Map<String, ExecutableElement> allMethodsForThisGeneratedClass = new HashMap<>();
         final Map<String, Map<TypeMirror, TypeMirror>> allPossibleGenericArgValuesForMethods = new HashMap<>();
+        // the annotated class is the only originating element, as the generated class only depends on it (and the classes it names, or extends, which a build tool tracks
+        // as its dependencies), so the processor can be run incrementally (it is registered as "isolating" for Gradle, in META-INF/gradle/incremental.annotation.processors)
         TypeSpec.Builder classBuilder =
-                TypeSpec.classBuilder(nameOfClassToGenerate).addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+                TypeSpec.classBuilder(nameOfClassToGenerate).addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                        .addOriginatingElement(this.classAnnotated);
         // extends or implements
         if(classToControl.getKind() == ElementKind.INTERFACE)
         {
@@ -224,11 +226,12 @@ class ControllableBuilder
                 classBuilder = classBuilder.addMethod(this.copySuperConstructor(constructor, null));
             }
         }
+        final long traversalStart = System.nanoTime();
         this.findAllMethodsNeededToControl(allMethodsForThisGeneratedClass, allPossibleGenericArgValuesForMethods,
-                                           classToControl, null);
-        System.out.println(
-                String.format("Possible generic args found for methods : %s", allPossibleGenericArgValuesForMethods));
-        this.addImplementationAndCreateFile(classBuilder, allMethodsForThisGeneratedClass.values(),
+                                           classToControl, null, new HashSet<String>());
+        this.stats.addHierarchyTraversalTime(System.nanoTime() - traversalStart);
+        this.helper.debug(String.format("Possible generic args found for methods : %s", allPossibleGenericArgValuesForMethods), classToControl);
+        this.addImplementationAndCreateFile(nameOfClassToGenerate, classBuilder, allMethodsForThisGeneratedClass.values(),
                                             allPossibleGenericArgValuesForMethods);
     }
 
@@ -236,26 +239,56 @@ class ControllableBuilder
     /**
      * This could be for one class, or for multiple interfaces - which is why i pass in everything that needs to go in the class
      *
+     * @param nameOfClassToGenerate
      * @param classBuilder
      * @param containedMethods
      * @param allPossibleGenericArgValuesForMethods
      * @throws IOException
      * @throws IllegalAnnotationException
      */
-    private void addImplementationAndCreateFile(final TypeSpec.Builder classBuilder,
+    private void addImplementationAndCreateFile(final String nameOfClassToGenerate, final TypeSpec.Builder classBuilder,
                                                 final Collection<ExecutableElement> containedMethods,
                                                 final Map<String, Map<TypeMirror, TypeMirror>> allPossibleGenericArgValuesForMethods)
             throws IOException, IllegalAnnotationException
     {
-        // run over all methods first, so we can work out which ones are overloads
+        final long buildingStart = System.nanoTime();
+        int methodsGenerated = 0;
+        // run over all methods first, so we can work out which ones are overloads (and how many there are to control)
         final Map<String, Boolean> methodNamesAndIsOverloaded = new HashMap<>();
+        int methodsToGenerate = 0;
         for(final ExecutableElement method : containedMethods)
         {
             final String methodName = method.getSimpleName().toString();
             methodNamesAndIsOverloaded.put(methodName, methodNamesAndIsOverloaded.containsKey(methodName));
+            if(!method.getModifiers().contains(Modifier.FINAL))
+            {
+                methodsToGenerate++;
+            }
         }
 
-        for(final ExecutableElement method : containedMethods)
+        // a very wide type has the fields of its controlled methods split up between holder classes, so no one class gets too big.  They are put in name order, so
+        // overloads end up in the same holder.  (If the methods are indexed, then they're all in a table instead, and don't have any fields to split up; but they are still
+        // put in name order, so their IDs don't change from one build to the next, unless the methods do.)
+        final ControllableClassBuilder.ControlledMethodsTable table =
+                this.indexedMethods ? new ControllableClassBuilder.ControlledMethodsTable() : null;
+        final boolean splitIntoHolders =
+                table == null && methodsToGenerate > ControllableClassBuilder.CONTROLLED_METHODS_PER_CLASS_LIMIT;
+        final List<ExecutableElement> orderedMethods = new ArrayList<>(containedMethods);
+        if(splitIntoHolders || table != null)
+        {
+            Collections.sort(orderedMethods, new Comparator<ExecutableElement>()
+            {
+                @Override
+                public int compare(final ExecutableElement method, final ExecutableElement otherMethod)
+                {
+                    return method.toString().compareTo(otherMethod.toString());
+                }
+            });
+        }
+        final List<ControllableClassBuilder.ControlledMethodsHolder> holders = new ArrayList<>();
+        ControllableClassBuilder.ControlledMethodsHolder holder = null;
+
+        for(final ExecutableElement method : orderedMethods)
         {
             final String controlledMethodName = method.getSimpleName().toString();
             final Set<Modifier> controlledMethodModifiers = this.copyModifiersMinusAbstract(method.getModifiers());
@@ -283,27 +316,64 @@ class ControllableBuilder
                             controlledMethodReturnType, controlledMethodCheckedExceptions, controlledMethodArgs),
                            this.classAnnotated);
 
-            if(controlledMethodCheckedExceptions.size() > ControllableClassBuilder.CONTROLLABLE_CHECKED_EXCEPTION_LIMIT)
+            if(controlledMethodCheckedExceptions.size() > ControllableMethod.CHECKED_EXCEPTION_LIMIT)
             {
                 this.helper.debug(method +
                                   " has more checked exceptions than we support controllably - limiting controllable checked exceptions to first " +
-                                  ControllableClassBuilder.CONTROLLABLE_CHECKED_EXCEPTION_LIMIT, method);
+                                  ControllableMethod.CHECKED_EXCEPTION_LIMIT, method);
             }
 
+            if(splitIntoHolders && (holder == null || holder.isFull()))
+            {
+                holder = new ControllableClassBuilder.ControlledMethodsHolder(
+                        ClassName.get(this.packageWhereToGenerate, nameOfClassToGenerate), holders.size());
+                holders.add(holder);
+            }
             final ControllableClassBuilder.ControlledMethod controlledMethod =
                     new ControllableClassBuilder.ControlledMethod(controlledMethodName, controlledMethodModifiers,
                                                                   controlledMethodReturnType,
                                                                   controlledMethodCheckedExceptions,
                                                                   controlledMethodArgs,
-                                                                  methodNamesAndIsOverloaded.get(controlledMethodName));
+                                                                  methodNamesAndIsOverloaded.get(controlledMethodName),
+                                                                  this.historyCapacity, this.recordingLevel, holder, table);
 
+            if(holder != null)
+            {
+                holder.add(controlledMethod);
+            }
+            else if(table == null) // a method in a table has no fields of its own
+            {
+                classBuilder.addField(controlledMethod.getCreatedField());
+            }
             classBuilder.addMethod(controlledMethod.getCreatedControlledMethod())
-                        .addField(controlledMethod.getCreatedField())
                         .addMethod(controlledMethod.getCreatedAccessor());
+            methodsGenerated++;
+        }
+        if(table != null)
+        {
+            for(final FieldSpec tableField : table.getCreatedFields(this.historyCapacity, this.recordingLevel))
+            {
+                classBuilder.addField(tableField);
+            }
+        }
+        for(final ControllableClassBuilder.ControlledMethodsHolder filledHolder : holders)
+        {
+            classBuilder.addType(filledHolder.getCreatedType());
+            final FieldSpec holderField = filledHolder.getCreatedField();
+            if(holderField != null)
+            {
+                classBuilder.addField(holderField);
+            }
         }
         final JavaFile srcFile = JavaFile.builder(this.packageWhereToGenerate, classBuilder.build()).build();
+        this.stats.addBuildingTime(System.nanoTime() - buildingStart);
         this.helper.debug("Outputting source file of new class ", this.classAnnotated);
+        final long writingStart = System.nanoTime();
         srcFile.writeTo(this.helper.getFiler());
+        this.stats.addWritingTime(System.nanoTime() - writingStart);
+        // the size is only worked out when it is wanted, as it means generating the source again
+        this.stats.addGeneratedClass(methodsGenerated,
+                                     this.stats.isEnabled() ? srcFile.toString().getBytes(StandardCharsets.UTF_8).length : 0);
     }
 
     private TypeMirror replaceGenericTypeWithValueIfNeeded(final TypeMirror original,
@@ -311,8 +381,8 @@ class ControllableBuilder
     {
         if(possibleGenericArgReplacements != null)
         {
-            System.out.println(String.format("Possible Generic Type Replacement : %s replacements(%s)", original,
-                                             possibleGenericArgReplacements));
+            this.helper.debug(String.format("Possible Generic Type Replacement : %s replacements(%s)", original, possibleGenericArgReplacements),
+                              this.classAnnotated);
             TypeMirror replacement = possibleGenericArgReplacements.get(original);
             if(replacement != null)
             {
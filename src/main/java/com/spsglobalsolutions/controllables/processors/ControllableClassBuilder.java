@@ -17,10 +17,14 @@
 package com.spsglobalsolutions.controllables.processors;
 
 import com.google.common.collect.Lists;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControllableMethod;
 import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControllableNonVoidMethod;
 import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControllableVoidMethod;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControlledMethodInfo;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControlledMethodTable;
 import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControlledNonVoidMethod;
 import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControlledVoidMethod;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.RecordingLevel;
 import com.squareup.javapoet.*;
 
 import javax.lang.model.element.Modifier;
@@ -36,7 +40,8 @@ import java.util.Set;
 class ControllableClassBuilder
 {
 
-    static final int CONTROLLABLE_CHECKED_EXCEPTION_LIMIT = 5;
+    // the most controlled methods whose fields are kept in a single class (any more and they are split up into holder classes, see ControlledMethodsHolder)
+    static final int CONTROLLED_METHODS_PER_CLASS_LIMIT = 256;
 
     private static TypeName getWildCard()
     {
@@ -53,6 +58,13 @@ class ControllableClassBuilder
         private final TypeName controlledMethodReturnType;
         private final List<TypeName> controlledMethodCheckedExceptions;
         private final List<MethodArg> controlledMethodArgs;
+        private final int historyCapacity;
+        private final RecordingLevel recordingLevel;
+        // where the fields are kept, if not in the generated class itself (null)
+        private final ControlledMethodsHolder holder;
+        // or the table the controlled method is kept in (by ID), instead of any fields
+        private final ControlledMethodsTable table;
+        private String methodIdName;
 
         // the private field holding the MethodCallHistoryBase
         private final String fieldName;
@@ -67,7 +79,9 @@ class ControllableClassBuilder
         public ControlledMethod(final String controlledMethodName, final Set<Modifier> controlledMethodModifiers,
                                 final TypeMirror controlledMethodReturnType,
                                 final List<? extends TypeMirror> controlledMethodCheckedExceptions,
-                                final List<MethodArg> controlledMethodArgs, final boolean isOverload)
+                                final List<MethodArg> controlledMethodArgs, final boolean isOverload,
+                                final int historyCapacity, final RecordingLevel recordingLevel,
+                                final ControlledMethodsHolder holder, final ControlledMethodsTable table)
         {
             this.controlledMethodName = controlledMethodName;
             this.controlledMethodModifiers = controlledMethodModifiers;
@@ -79,6 +93,10 @@ class ControllableClassBuilder
                 this.controlledMethodCheckedExceptions.add(TypeName.get(checked));
             }
             this.controlledMethodArgs = controlledMethodArgs;
+            this.historyCapacity = historyCapacity;
+            this.recordingLevel = recordingLevel;
+            this.holder = holder;
+            this.table = table;
 
             // only tag the args on to the end if we really need to.
             String argsIdentifier = this.isOverload && !this.controlledMethodArgs.isEmpty() ?
@@ -90,6 +108,10 @@ class ControllableClassBuilder
             this.getCorrectTypes(this.controlledMethodReturnType, this.controlledMethodCheckedExceptions);
 
             this.createdField = this.createField(controlledMethodModifiers.contains(Modifier.STATIC));
+            if(this.table != null)
+            {
+                this.methodIdName = this.table.add("METHOD_ID_" + controlledMethodName + argsIdentifier, this.createInfoArgs(), this.isStatic());
+            }
             this.createdAccessor = this.createAccessor();
             this.createdControlledMethod = this.createControlledMethod();
         }
@@ -109,6 +131,51 @@ class ControllableClassBuilder
             return this.createdAccessor;
         }
 
+        public boolean isStatic()
+        {
+            return this.controlledMethodModifiers.contains(Modifier.STATIC);
+        }
+
+        private CodeBlock referTo(final FieldSpec field)
+        {
+            return this.holder == null ? CodeBlock.of("$N", field) : this.holder.referTo(field, this.isStatic());
+        }
+
+        private CodeBlock referToControlled()
+        {
+            return this.table == null ? this.referTo(this.createdField) : this.table.referTo(this.methodIdName, this.fieldType, this.isStatic());
+        }
+
+        private CodeBlock referToControllable()
+        {
+            // the controlled method keeps its own ControllableMethod, created the first time it is asked for (so there's no second field per method)
+            return CodeBlock.of("$L.getControllable()", this.referToControlled());
+        }
+
+        /**
+         * @return the args (after the ID) of the {@link ControlledMethodInfo} constructor, for the method.
+         */
+        private CodeBlock createInfoArgs()
+        {
+            final List<TypeName> parameterTypes = new ArrayList<>();
+            for(final MethodArg arg : this.controlledMethodArgs)
+            {
+                parameterTypes.add(arg.type);
+            }
+            return CodeBlock.of("$S, $S, $L, $L", this.controlledMethodName, this.controlledMethodReturnType, stringArrayOf(parameterTypes),
+                                stringArrayOf(this.controlledMethodCheckedExceptions));
+        }
+
+        private static CodeBlock stringArrayOf(final List<TypeName> types)
+        {
+            final CodeBlock.Builder elements = CodeBlock.builder();
+            for(int i = 0; i < types.size(); i++)
+            {
+                elements.add(i == 0 ? "$S" : ", $S", types.get(i));
+            }
+            return CodeBlock.of("new $T[] {$L}", String.class, elements.build());
+        }
+
         private MethodSpec createControlledMethod()
         {
             MethodSpec.Builder builder = MethodSpec.methodBuilder(this.controlledMethodName)
@@ -119,39 +186,73 @@ class ControllableClassBuilder
             {
                 builder = builder.addParameter(args.createSpec());
             }
-            final String start = this.controlledMethodReturnType.equals(TypeName.VOID) ? "" : "return ";
-            builder = builder.addStatement(start + "$N.exit($L)", this.createdField,
-                                           MethodArg.getArgNamesAsCommaSepString(this.controlledMethodArgs));
+            final boolean isVoid = this.controlledMethodReturnType.equals(TypeName.VOID);
+            final String argNames = MethodArg.getArgNamesAsCommaSepString(this.controlledMethodArgs);
+            CodeBlock field = this.referToControlled();
+            if(this.table != null && !this.controlledMethodArgs.isEmpty())
+            {
+                // only look it up in the table once
+                builder = builder.addStatement("final $T aControlled = $L", this.fieldType, field);
+                field = CodeBlock.of("aControlled");
+            }
+            // calling the varargs exit creates an array on every call (and boxes any primitive args), so only pass the args in if something is going to use them
+            if(this.controlledMethodArgs.isEmpty())
+            {
+                builder = builder.addStatement((isVoid ? "" : "return ") + "$L.exitWithoutArguments()", field);
+            }
+            else if(isVoid)
+            {
+                builder = builder.beginControlFlow("if ($L.isUsingArguments())", field)
+                                 .addStatement("$L.exit($L)", field, argNames)
+                                 .nextControlFlow("else")
+                                 .addStatement("$L.exitWithoutArguments()", field)
+                                 .endControlFlow();
+            }
+            else
+            {
+                builder = builder.addStatement("return $L.isUsingArguments() ? $L.exit($L) : $L.exitWithoutArguments()", field, field, argNames, field);
+            }
             return builder.build();
         }
 
         private FieldSpec createField(boolean isStatic)
         {
-            List<Modifier> modifiers = Lists.newArrayList(Modifier.PRIVATE, Modifier.FINAL);
+            List<Modifier> modifiers = this.createFieldModifiers();
             if(isStatic)
             {
                 modifiers.add(Modifier.STATIC);
             }
+            // only pass the history capacity and recording level in if they aren't the defaults
+            final CodeBlock initializer =
+                    this.historyCapacity == ControllableMethod.UNBOUNDED_HISTORY && this.recordingLevel == RecordingLevel.Full ?
+                    CodeBlock.of("new $T()", this.fieldType) :
+                    CodeBlock.of("new $T($L, $T.$L)", this.fieldType, this.historyCapacity, RecordingLevel.class, this.recordingLevel.name());
             return FieldSpec.builder(this.fieldType, this.fieldName, modifiers.toArray(new Modifier[]{}))
-                            .initializer("new $T()", this.fieldType)
+                            .initializer(initializer)
                             .build();
         }
 
+        private List<Modifier> createFieldModifiers()
+        {
+            // fields in a holder aren't private, as the generated class would then need a (synthetic) accessor method for each of them
+            return this.holder == null ? Lists.newArrayList(Modifier.PRIVATE, Modifier.FINAL) : Lists.newArrayList(Modifier.FINAL);
+        }
+
         private MethodSpec createAccessor()
         {
             return MethodSpec.methodBuilder(this.accessorMethodName)
                              .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
                              .returns(this.accessorType)
-                             .addStatement("return $N.createControllable()", this.createdField)
+                             .addStatement("return $L", this.referToControllable())
                              .build();
         }
 
         private void getCorrectTypes(final TypeName returnType, List<TypeName> checkedExceptions)
         {
             // we only support a certain amount of checked exceptions to be controllable - so need to limit to this number (or could throw exception - but limiting is friendlier)
-            if(checkedExceptions.size() > CONTROLLABLE_CHECKED_EXCEPTION_LIMIT)
+            if(checkedExceptions.size() > ControllableMethod.CHECKED_EXCEPTION_LIMIT)
             {
-                checkedExceptions = checkedExceptions.subList(0, CONTROLLABLE_CHECKED_EXCEPTION_LIMIT);
+                checkedExceptions = checkedExceptions.subList(0, ControllableMethod.CHECKED_EXCEPTION_LIMIT);
             }
             if(returnType.equals(TypeName.VOID))
             {
@@ -295,6 +396,147 @@ class ControllableClassBuilder
         }
     }
 
+    /**
+     * A nested class of the generated class, which holds the fields of up to {@link #CONTROLLED_METHODS_PER_CLASS_LIMIT} of its controlled methods.  When a very wide type is
+     * controlled, its controlled methods' fields are split up between these, rather than all being in the generated class (whose constructor, which creates them all, would
+     * otherwise grow towards the JVM's limit on the size of a method, and be slow to load and run).  The static ones are only created when the holder is first used.
+     */
+    static class ControlledMethodsHolder
+    {
+
+        private final ClassName className;
+        private final String fieldName;
+        private final TypeSpec.Builder typeBuilder;
+        private int numberOfControlledMethods;
+        private boolean holdsInstanceFields;
+
+        public ControlledMethodsHolder(final ClassName generatedClass, final int index)
+        {
+            this.className = generatedClass.nestedClass("ControlledMethodsHolder" + index);
+            this.fieldName = "controlledMethodsHolder" + index;
+            this.typeBuilder = TypeSpec.classBuilder(this.className.simpleName()).addModifiers(Modifier.STATIC, Modifier.FINAL);
+        }
+
+        public boolean isFull()
+        {
+            return this.numberOfControlledMethods == CONTROLLED_METHODS_PER_CLASS_LIMIT;
+        }
+
+        public void add(final ControlledMethod controlledMethod)
+        {
+            this.typeBuilder.addField(controlledMethod.getCreatedField());
+            this.numberOfControlledMethods++;
+            this.holdsInstanceFields |= !controlledMethod.isStatic();
+        }
+
+        public TypeSpec getCreatedType()
+        {
+            return this.typeBuilder.build();
+        }
+
+        /**
+         * @return the field (in the generated class) holding the instance of this holder, or null if it only holds static fields (so is never instantiated).
+         */
+        public FieldSpec getCreatedField()
+        {
+            return this.holdsInstanceFields ?
+                   FieldSpec.builder(this.className, this.fieldName, Modifier.PRIVATE, Modifier.FINAL).initializer("new $T()", this.className).build() :
+                   null;
+        }
+
+        private CodeBlock referTo(final FieldSpec field, final boolean isStatic)
+        {
+            return isStatic ? CodeBlock.of("$T.$N", this.className, field) : CodeBlock.of("$N.$N", this.fieldName, field);
+        }
+    }
+
+    /**
+     * The controlled methods of a generated class which has {@link com.spsglobalsolutions.controllables.annotations.Controllable#indexedMethods()}; each method is given an
+     * ID, and they are all kept in a {@link ControlledMethodTable} (one for the instance methods, and one for the static methods) rather than fields of their own.  The
+     * static methods are given the first IDs, so each table only has a slot for its own methods.
+     */
+    static class ControlledMethodsTable
+    {
+
+        private static final String METHODS_FIELD_NAME = "CONTROLLED_METHODS";
+        private static final String TABLE_FIELD_NAME = "controlledMethods";
+        private static final String STATIC_TABLE_FIELD_NAME = "staticControlledMethods";
+
+        private final List<String> staticMethodIdNames = new ArrayList<>();
+        private final List<CodeBlock> staticMethodInfoArgs = new ArrayList<>();
+        private final List<String> instanceMethodIdNames = new ArrayList<>();
+        private final List<CodeBlock> instanceMethodInfoArgs = new ArrayList<>();
+
+        /**
+         * @param infoArgs the args (after the ID) of the {@link ControlledMethodInfo} constructor, for the method
+         * @return the name of the constant holding the ID given to the method (which is only known once all the methods have been added).
+         */
+        public String add(final String methodIdName, final CodeBlock infoArgs, final boolean isStatic)
+        {
+            (isStatic ? this.staticMethodIdNames : this.instanceMethodIdNames).add(methodIdName);
+            (isStatic ? this.staticMethodInfoArgs : this.instanceMethodInfoArgs).add(infoArgs);
+            return methodIdName;
+        }
+
+        private CodeBlock referTo(final String methodIdName, final TypeName controlledType, final boolean isStatic)
+        {
+            return CodeBlock.of("$N.<$T>get($N)", isStatic ? STATIC_TABLE_FIELD_NAME : TABLE_FIELD_NAME, controlledType, methodIdName);
+        }
+
+        /**
+         * @return the fields to add to the generated class (in order, as the tables are created from the list of methods).
+         */
+        public List<FieldSpec> getCreatedFields(final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            final List<String> methodIdNames = new ArrayList<>(this.staticMethodIdNames);
+            methodIdNames.addAll(this.instanceMethodIdNames);
+            final List<CodeBlock> methodInfoArgs = new ArrayList<>(this.staticMethodInfoArgs);
+            methodInfoArgs.addAll(this.instanceMethodInfoArgs);
+
+            final List<FieldSpec> fields = new ArrayList<>();
+            final CodeBlock.Builder methodInfos = CodeBlock.builder();
+            for(int id = 0; id < methodIdNames.size(); id++)
+            {
+                fields.add(FieldSpec.builder(TypeName.INT, methodIdNames.get(id), Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                                    .initializer("$L", id)
+                                    .build());
+                methodInfos.add(id == 0 ? "new $T($L, $L)" : ",\nnew $T($L, $L)", ControlledMethodInfo.class, id, methodInfoArgs.get(id));
+            }
+            fields.add(FieldSpec.builder(ParameterizedTypeName.get(List.class, ControlledMethodInfo.class), METHODS_FIELD_NAME, Modifier.PUBLIC, Modifier.STATIC,
+                                         Modifier.FINAL)
+                                .initializer("$T.listOf($>$>\n$L$<$<)", ControlledMethodInfo.class, methodInfos.build())
+                                .build());
+            final int staticMethods = this.staticMethodIdNames.size();
+            if(staticMethods > 0)
+            {
+                fields.add(FieldSpec.builder(ControlledMethodTable.class, STATIC_TABLE_FIELD_NAME, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                                    .initializer(createTable(0, staticMethods, methodIdNames.size(), historyCapacity, recordingLevel))
+                                    .build());
+            }
+            if(staticMethods < methodIdNames.size())
+            {
+                fields.add(FieldSpec.builder(ControlledMethodTable.class, TABLE_FIELD_NAME, Modifier.PRIVATE, Modifier.FINAL)
+                                    .initializer(createTable(staticMethods, methodIdNames.size(), methodIdNames.size(), historyCapacity, recordingLevel))
+                                    .build());
+            }
+            return fields;
+        }
+
+        /**
+         * @return the initializer of a table of the methods with IDs from {@code fromId} (inclusive) to {@code toId} (exclusive).
+         */
+        private static CodeBlock createTable(final int fromId, final int toId, final int methodCount, final int historyCapacity, final RecordingLevel recordingLevel)
+        {
+            final CodeBlock methods = fromId == 0 && toId == methodCount ?
+                                      CodeBlock.of("$N", METHODS_FIELD_NAME) :
+                                      CodeBlock.of("$N.subList($L, $L)", METHODS_FIELD_NAME, fromId, toId);
+            // only pass the history capacity and recording level in if they aren't the defaults
+            return historyCapacity == ControllableMethod.UNBOUNDED_HISTORY && recordingLevel == RecordingLevel.Full ?
+                   CodeBlock.of("new $T($L)", ControlledMethodTable.class, methods) :
+                   CodeBlock.of("new $T($L, $L, $T.$L)", ControlledMethodTable.class, methods, historyCapacity, RecordingLevel.class, recordingLevel.name());
+        }
+    }
+
     static class MethodArg
     {
 
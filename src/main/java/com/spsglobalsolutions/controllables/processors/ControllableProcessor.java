@@ -26,12 +26,18 @@ import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * {@link AbstractProcessor} which looks for and processes any {@link Controllable} annotations.
+ * <p/>
+ * Each annotated class is processed on its own (only what is found out about the types they inherit from is shared, and only within a round), and every class generated
+ * for it has it as the originating element, so the processor is "isolating" for incremental builds (e.g. Gradle only regenerates the controllables of the classes which
+ * changed).
  *
  * @author stevo58008
  */
@@ -39,17 +45,41 @@ import java.util.Set;
 public class ControllableProcessor extends AbstractProcessor
 {
 
+    /**
+     * The processor option which, when true (e.g. <code>-Acontrollables.stats=true</code>), reports where the processing time goes, see {@link ProcessingStats}.
+     */
+    public static final String STATS_OPTION = "controllables.stats";
+
+    /**
+     * The processor option which gives a file to write the stats to as well (e.g. <code>-Acontrollables.stats.file=target/controllables-stats.txt</code>, relative to the
+     * directory the compiler is run in), as Maven doesn't show the notes they are reported as.  Giving it turns the stats on, see {@link #STATS_OPTION}.
+     */
+    public static final String STATS_FILE_OPTION = "controllables.stats.file";
+
+    /**
+     * The processor option which, when true (e.g. <code>-Acontrollables.debug=true</code>), prints what the processor is doing as it goes (which is too much for a normal
+     * build).
+     */
+    public static final String DEBUG_OPTION = "controllables.debug";
+
     private ProcessorHelper helper;
+    private ProcessingStats stats;
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
     {
+        // shared by all the annotated classes in this round, as many of them will often inherit from the same types
+        final TypeHierarchyCache hierarchyCache = new TypeHierarchyCache(helper);
+        stats.startRound();
         for(Element annotated : roundEnv.getElementsAnnotatedWith(Controllable.class))
         {
+            final ProcessingStats.ElementStats elementStats = stats.startElement();
             try
             {
-                new ControllableBuilder(helper, annotated.getAnnotation(Controllable.class), (TypeElement) annotated)
+                new ControllableBuilder(helper, hierarchyCache, elementStats, annotated.getAnnotation(Controllable.class),
+                                        (TypeElement) annotated)
                         .generateControlledClasses();
+                stats.endElement((TypeElement) annotated, elementStats);
             }
             catch(IllegalAnnotationException e)
             {
@@ -61,6 +91,7 @@ public class ControllableProcessor extends AbstractProcessor
                 helper.error("A very very unexpected exception while processing annotations", e, annotated);
             }
         }
+        stats.endRound();
         // we don't let exceptions out, as this would probably lead to the JVM crashing (at some point) with a reason that isn't very useful to the user.
         return false;// don't claim the annotation, who knows who else wants to do something with it.
     }
@@ -71,6 +102,12 @@ public class ControllableProcessor extends AbstractProcessor
         return new HashSet<String>(Arrays.asList(Controllable.class.getCanonicalName()));
     }
 
+    @Override
+    public Set<String> getSupportedOptions()
+    {
+        return new HashSet<String>(Arrays.asList(STATS_OPTION, STATS_FILE_OPTION, DEBUG_OPTION));
+    }
+
     @Override
     public SourceVersion getSupportedSourceVersion()
     {
@@ -81,8 +118,12 @@ public class ControllableProcessor extends AbstractProcessor
     public synchronized void init(ProcessingEnvironment processingEnv)
     {
         super.init(processingEnv);
+        final Map<String, String> options = processingEnv.getOptions();
         this.helper = new ProcessorHelper(processingEnv.getTypeUtils(), processingEnv.getElementUtils(),
-                                          processingEnv.getFiler(), processingEnv.getMessager());
+                                          processingEnv.getFiler(), processingEnv.getMessager(), Boolean.parseBoolean(options.get(DEBUG_OPTION)));
+        final String statsFile = options.get(STATS_FILE_OPTION);
+        this.stats = new ProcessingStats(this.helper, Boolean.parseBoolean(options.get(STATS_OPTION)),
+                                         statsFile == null || statsFile.isEmpty() ? null : Paths.get(statsFile));
     }
 
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.processors;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics about where the processor spends its time (and what it generates), so that the controllables which slow a build down can be found.  They are only gathered (and
+ * reported) when the processor is given the option <code>-Acontrollables.stats=true</code>; one line for each annotated class, and a total for each round.  They are
+ * reported as notes, and, if the processor is given <code>-Acontrollables.stats.file=...</code>, written to that file too (which is started afresh for each compilation), as
+ * Maven doesn't show the notes.
+ *
+ * @author stevo58008
+ */
+class ProcessingStats
+{
+
+    private final ProcessorHelper helper;
+    private final boolean enabled;
+    private final Path reportFile;
+    private int round;
+    private final Totals roundTotals = new Totals();
+
+    /**
+     * @param enabled    whether to gather and report the stats
+     * @param reportFile the file to write the stats to as well as reporting them as notes (which turns them on), or null to only report them as notes
+     */
+    ProcessingStats(final ProcessorHelper helper, final boolean enabled, final Path reportFile)
+    {
+        this.helper = helper;
+        this.enabled = enabled || reportFile != null;
+        this.reportFile = reportFile;
+        if(reportFile != null)
+        {
+            try
+            {
+                final Path directory = reportFile.toAbsolutePath().getParent();
+                if(directory != null)
+                {
+                    Files.createDirectories(directory);
+                }
+                Files.write(reportFile, new byte[0]);
+            }
+            catch(IOException e)
+            {
+                helper.warning("Couldn't start the controllables stats file " + reportFile + " : " + e, null);
+            }
+        }
+    }
+
+    boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    void startRound()
+    {
+        this.round++;
+        this.roundTotals.reset();
+    }
+
+    /**
+     * @return what to add the metrics for processing the next annotated class to (which are then reported by {@link #endElement(TypeElement, ElementStats)}).
+     */
+    ElementStats startElement()
+    {
+        return new ElementStats(this.enabled);
+    }
+
+    void endElement(final TypeElement annotated, final ElementStats elementStats)
+    {
+        if(this.enabled)
+        {
+            this.roundTotals.elements++;
+            this.roundTotals.add(elementStats.totals);
+            this.report("Controllables stats for " + annotated.getQualifiedName() + " : " + elementStats.totals, annotated);
+        }
+    }
+
+    void endRound()
+    {
+        if(this.enabled && this.roundTotals.elements > 0) // the later rounds (which only have the generated classes in) aren't worth reporting
+        {
+            this.report(String.format("Controllables stats for round %d : elements(%d) %s", this.round, this.roundTotals.elements, this.roundTotals), null);
+        }
+    }
+
+    private void report(final String stats, final Element element)
+    {
+        this.helper.note(stats, element);
+        if(this.reportFile != null)
+        {
+            try
+            {
+                Files.write(this.reportFile, Collections.singletonList(stats), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            catch(IOException e)
+            {
+                this.helper.warning("Couldn't write to the controllables stats file " + this.reportFile + " : " + e, element);
+            }
+        }
+    }
+
+    /**
+     * The metrics for processing a single annotated class (which can generate more than one class).  When the stats aren't enabled, nothing is added.
+     */
+    static final class ElementStats
+    {
+
+        private final boolean enabled;
+        private final Totals totals = new Totals();
+
+        private ElementStats(final boolean enabled)
+        {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return if the stats are being gathered (so anything only worked out for them, e.g. the size of the generated source, is needed).
+         */
+        boolean isEnabled()
+        {
+            return this.enabled;
+        }
+
+        void addHierarchyTraversalTime(final long nanos)
+        {
+            if(this.enabled)
+            {
+                this.totals.hierarchyTraversalNanos += nanos;
+            }
+        }
+
+        void addBuildingTime(final long nanos)
+        {
+            if(this.enabled)
+            {
+                this.totals.buildingNanos += nanos;
+            }
+        }
+
+        void addWritingTime(final long nanos)
+        {
+            if(this.enabled)
+            {
+                this.totals.writingNanos += nanos;
+            }
+        }
+
+        void addGeneratedClass(final int methodsGenerated, final long bytesGenerated)
+        {
+            if(this.enabled)
+            {
+                this.totals.classesGenerated++;
+                this.totals.methodsGenerated += methodsGenerated;
+                this.totals.bytesGenerated += bytesGenerated;
+            }
+        }
+    }
+
+    private static final class Totals
+    {
+
+        private int elements;
+        private int classesGenerated;
+        private int methodsGenerated;
+        private long bytesGenerated;
+        private long hierarchyTraversalNanos;
+        private long buildingNanos;
+        private long writingNanos;
+
+        private void add(final Totals other)
+        {
+            this.classesGenerated += other.classesGenerated;
+            this.methodsGenerated += other.methodsGenerated;
+            this.bytesGenerated += other.bytesGenerated;
+            this.hierarchyTraversalNanos += other.hierarchyTraversalNanos;
+            this.buildingNanos += other.buildingNanos;
+            this.writingNanos += other.writingNanos;
+        }
+
+        private void reset()
+        {
+            this.elements = 0;
+            this.classesGenerated = 0;
+            this.methodsGenerated = 0;
+            this.bytesGenerated = 0;
+            this.hierarchyTraversalNanos = 0;
+            this.buildingNanos = 0;
+            this.writingNanos = 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("classesGenerated(%d) methodsGenerated(%d) bytesGenerated(%d) hierarchyTraversal(%.3fms) building(%.3fms) writing(%.3fms)",
+                                 this.classesGenerated, this.methodsGenerated, this.bytesGenerated, toMillis(this.hierarchyTraversalNanos),
+                                 toMillis(this.buildingNanos), toMillis(this.writingNanos));
+        }
+
+        private static double toMillis(final long nanos)
+        {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
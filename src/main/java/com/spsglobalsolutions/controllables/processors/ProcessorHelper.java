@@ -49,14 +49,19 @@ class ProcessorHelper
     private final Elements elementUtils;
     private final Filer filer;
     private final Messager messager;
+    private final boolean debugEnabled;
 
+    /**
+     * @param debugEnabled whether to print the debug messages (see {@link ControllableProcessor#DEBUG_OPTION})
+     */
     public ProcessorHelper(final Types typeUtils, final Elements elementUtils, final Filer filer,
-                           final Messager messager)
+                           final Messager messager, final boolean debugEnabled)
     {
         this.typeUtils = typeUtils;
         this.elementUtils = elementUtils;
         this.filer = filer;
         this.messager = messager;
+        this.debugEnabled = debugEnabled;
     }
 
     /**
@@ -90,10 +95,46 @@ class ProcessorHelper
         this.messager.printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.getAnnotated());
     }
 
+    /**
+     * {@link Messager#printMessage(Diagnostic.Kind, CharSequence, Element)} as a note (element can be null, if it isn't about any one element).
+     */
+    public void note(final String message, Element element)
+    {
+        if(element == null)
+        {
+            this.messager.printMessage(Diagnostic.Kind.NOTE, message);
+        }
+        else
+        {
+            this.messager.printMessage(Diagnostic.Kind.NOTE, message, element);
+        }
+    }
+
+    /**
+     * {@link Messager#printMessage(Diagnostic.Kind, CharSequence, Element)} as a warning (element can be null, if it isn't about any one element).
+     */
+    public void warning(final String message, Element element)
+    {
+        if(element == null)
+        {
+            this.messager.printMessage(Diagnostic.Kind.WARNING, message);
+        }
+        else
+        {
+            this.messager.printMessage(Diagnostic.Kind.WARNING, message, element);
+        }
+    }
+
+    /**
+     * Only printed when the processor is given the {@link ControllableProcessor#DEBUG_OPTION}, so a normal build stays quiet.
+     */
     public void debug(final String message, Element element)
     {
-        System.out.println(message);
-        //this.messager.printMessage(Diagnostic.Kind.NOTE, message, element); -- apparently maven compiler (has a bug) swallows any non error messages.
+        if(this.debugEnabled)
+        {
+            System.out.println(message);
+            //this.messager.printMessage(Diagnostic.Kind.NOTE, message, element); -- apparently maven compiler (has a bug) swallows any non error messages.
+        }
     }
 
     public Elements getElementUtils()
@@ -164,8 +205,7 @@ class ProcessorHelper
 
     public void printElement(String prefix, ExecutableElement element)
     {
-        System.out
-                .println(prefix + String.format("%s %s %s", element.getModifiers(), element.getReturnType(), element));
+        this.debug(prefix + String.format("%s %s %s", element.getModifiers(), element.getReturnType(), element), element);
     }
 
     /**
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.processors;
+
+import com.spsglobalsolutions.controllables.annotations.Controllable;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import java.util.*;
+
+/**
+ * What has been found out about the types in the hierarchies of the controlled classes (their direct supertypes, with the generic args they are given, and their methods
+ * which match a modifier filter), so that a type which many controlled classes inherit from (e.g. a shared base interface) is only looked at once.
+ * <p/>
+ * It is only kept for a single processing round (the processor creates a new one each round), as the elements it holds are only valid for the round they came from.
+ *
+ * @author stevo58008
+ */
+class TypeHierarchyCache
+{
+
+    private final ProcessorHelper helper;
+    private final TypeMirror mirrorOfBaseObject;
+    private final Map<TypeElement, List<Supertype>> supertypesOfTypes = new HashMap<>();
+    private final Map<List<Controllable.MethodModifier>, Map<TypeElement, List<ExecutableElement>>> methodsOfTypesByFilter =
+            new HashMap<>();
+
+    TypeHierarchyCache(final ProcessorHelper helper)
+    {
+        this.helper = helper;
+        this.mirrorOfBaseObject = this.helper.getElementUtils().getTypeElement(Object.class.getName()).asType();
+    }
+
+    /**
+     * @param type                  the type to get the methods of
+     * @param withMatchingModifiers the modifiers (any of which) the methods must have
+     * @return the methods declared on the type (not inherited) which have any of the modifiers.
+     */
+    List<ExecutableElement> getMethods(final TypeElement type, final List<Controllable.MethodModifier> withMatchingModifiers)
+    {
+        Map<TypeElement, List<ExecutableElement>> methodsOfTypes = this.methodsOfTypesByFilter.get(withMatchingModifiers);
+        if(methodsOfTypes == null)
+        {
+            methodsOfTypes = new HashMap<>();
+            this.methodsOfTypesByFilter.put(new ArrayList<>(withMatchingModifiers), methodsOfTypes);
+        }
+        List<ExecutableElement> methods = methodsOfTypes.get(type);
+        if(methods == null)
+        {
+            methods = this.helper.getContainedMethodsWithAnyMethodModifiers(type, withMatchingModifiers);
+            methodsOfTypes.put(type, methods);
+        }
+        return methods;
+    }
+
+    /**
+     * @param type the type to get the supertypes of
+     * @return the direct superclass and interfaces of the type (apart from Object), with the generic args the type gives them.
+     */
+    List<Supertype> getDirectSupertypes(final TypeElement type)
+    {
+        List<Supertype> supertypes = this.supertypesOfTypes.get(type);
+        if(supertypes == null)
+        {
+            supertypes = this.findDirectSupertypes(type);
+            this.supertypesOfTypes.put(type, supertypes);
+        }
+        return supertypes;
+    }
+
+    private List<Supertype> findDirectSupertypes(final TypeElement type)
+    {
+        final List<Supertype> supertypes = new ArrayList<>();
+        for(TypeMirror mirror : this.helper.getTypeUtils().directSupertypes(type.asType()))
+        {
+            if(!this.helper.getTypeUtils().isSameType(this.mirrorOfBaseObject, mirror))
+            {
+                this.helper.debug("Some sort of super class found : " + mirror.toString(), type);
+
+                TypeElement superElement = (TypeElement) this.helper.getTypeUtils().asElement(mirror);
+                Map<TypeMirror, TypeMirror> genericArgNamesAndValuesForSuper = null;
+
+                // check if we need to extract any generics out of the class
+                final DeclaredType declaredType = (DeclaredType) mirror;
+                final List<? extends TypeMirror> genericArgsValues = declaredType.getTypeArguments();
+                if(!genericArgsValues.isEmpty())
+                {
+                    final List<? extends TypeMirror> genericArgNames =
+                            ((DeclaredType) superElement.asType()).getTypeArguments();
+                    this.helper.debug("Generic Types found : " + Arrays.toString(genericArgNames.toArray()) + " = " +
+                                      Arrays.toString(genericArgsValues.toArray()), type);
+                    genericArgNamesAndValuesForSuper = new HashMap<>();
+                    for(int i = 0; i < genericArgNames.size(); i++)
+                    {
+                        genericArgNamesAndValuesForSuper.put(genericArgNames.get(i), genericArgsValues.get(i));
+                    }
+                }
+                supertypes.add(new Supertype(mirror.toString(), superElement, genericArgNamesAndValuesForSuper));
+            }
+        }
+        return Collections.unmodifiableList(supertypes);
+    }
+
+    /**
+     * A supertype of a type, as the type declares it (i.e. with the generic args it gives it).
+     */
+    static final class Supertype
+    {
+
+        private final String name;
+        private final TypeElement element;
+        private final Map<TypeMirror, TypeMirror> genericArgNamesAndValues;
+
+        private Supertype(final String name, final TypeElement element, final Map<TypeMirror, TypeMirror> genericArgNamesAndValues)
+        {
+            this.name = name;
+            this.element = element;
+            this.genericArgNamesAndValues = genericArgNamesAndValues;
+        }
+
+        /**
+         * @return the full name of the supertype, including its generic args (e.g. "java.util.List&lt;java.lang.String&gt;"), so two with the same name are the same type.
+         */
+        String getName()
+        {
+            return this.name;
+        }
+
+        TypeElement getElement()
+        {
+            return this.element;
+        }
+
+        /**
+         * @return the generic args of the supertype, mapped to the values given them, or null if it isn't generic.
+         */
+        Map<TypeMirror, TypeMirror> getGenericArgNamesAndValues()
+        {
+            return this.genericArgNamesAndValues;
+        }
+    }
+}
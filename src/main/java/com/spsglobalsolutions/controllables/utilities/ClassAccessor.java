@@ -40,6 +40,7 @@ public final class ClassAccessor
      * @throws NoSuchFieldException
      * @throws IllegalAccessException
      */
+    @SuppressWarnings("unchecked") // the caller says what type the field is
     public static <FieldType> FieldType getValueOfField(final Class classFieldDeclaredOn, final String fieldName,
                                                         final Object toAccess)
             throws NoSuchFieldException, IllegalAccessException
@@ -129,6 +130,7 @@ public final class ClassAccessor
      * @throws InvocationTargetException
      * @throws IllegalAccessException
      */
+    @SuppressWarnings("unchecked") // the caller says what type the method returns
     public static <ReturnType> ReturnType callMethod(final Class classMethodDeclaredOn, final String methodName,
                                                      final Class[] methodParamTypes, final Object toAccess,
                                                      final Object[] methodParamValues)
@@ -145,6 +147,7 @@ public final class ClassAccessor
      * <p/>
      * This can't be used for static fields; you need to use the full version.
      */
+    @SuppressWarnings("unchecked")
     public static <ReturnType> ReturnType callMethod(final String methodName, final Class[] methodParamTypes,
                                                      final Object toAccess, final Object[] methodParamValues)
             throws NoSuchMethodException, InvocationTargetException, IllegalAccessException
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Predicate;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ArgumentKeyedExits} find the exit for exact arguments first, then by the matchers in the order they were added.
+ *
+ * @author stevo58008
+ */
+public class ArgumentKeyedExitsTest {
+
+    private final ControlledMethodHandler<String> handler = new ControlledMethodHandler<>();
+    private final ArgumentKeyedExits<String> keyedExits = new ArgumentKeyedExits<>();
+
+    @Test
+    public void testThereIsNoExitWhenNoneHaveBeenAdded() {
+        assertNull(this.keyedExits.find(new Object[]{1}));
+    }
+
+    @Test
+    public void testAnExitIsFoundForExactlyTheSameArguments() {
+        final MethodExit<String> single = this.exit("single");
+        final MethodExit<String> multiple = this.exit("multiple");
+        final MethodExit<String> array = this.exit("array");
+        final MethodExit<String> nullArgument = this.exit("null");
+        this.keyedExits.put(new Object[]{1L}, single);
+        this.keyedExits.put(new Object[]{1L, "two"}, multiple);
+        this.keyedExits.put(new Object[]{new int[]{1, 2}}, array);
+        this.keyedExits.put(new Object[]{null}, nullArgument);
+        assertSame(single, this.keyedExits.find(new Object[]{1L}));
+        assertSame(multiple, this.keyedExits.find(new Object[]{1L, "two"}));
+        assertSame("arrays should be compared by their contents", array, this.keyedExits.find(new Object[]{new int[]{1, 2}}));
+        assertSame(nullArgument, this.keyedExits.find(new Object[]{null}));
+        assertNull(this.keyedExits.find(new Object[]{1}));
+        assertNull(this.keyedExits.find(new Object[]{1L, "three"}));
+    }
+
+    @Test
+    public void testAddingAnExitForTheSameArgumentsReplacesIt() {
+        final MethodExit<String> replacement = this.exit("replacement");
+        this.keyedExits.put(new Object[]{"key"}, this.exit("original"));
+        this.keyedExits.put(new Object[]{"key"}, replacement);
+        assertSame(replacement, this.keyedExits.find(new Object[]{"key"}));
+    }
+
+    @Test
+    public void testTheExactArgumentsAreCheckedBeforeTheMatchersWhichAreCheckedInOrder() {
+        final MethodExit<String> exact = this.exit("exact");
+        final MethodExit<String> firstMatcher = this.exit("first matcher");
+        this.keyedExits.add(this.argumentGreaterThan(10), firstMatcher);
+        this.keyedExits.add(this.argumentGreaterThan(0), this.exit("second matcher"));
+        this.keyedExits.put(new Object[]{20}, exact);
+        assertSame(exact, this.keyedExits.find(new Object[]{20}));
+        assertSame(firstMatcher, this.keyedExits.find(new Object[]{11}));
+        assertEquals("second matcher", this.keyedExits.find(new Object[]{5}).getByReturnValue());
+        assertNull(this.keyedExits.find(new Object[]{-1}));
+    }
+
+    @Test
+    public void testAMillionExitsCanBeAddedAndFound() {
+        for (long id = 0; id < 1000000; id++) {
+            this.keyedExits.put(new Object[]{id}, this.exit("row " + id));
+        }
+        assertEquals("row 123456", this.keyedExits.find(new Object[]{123456L}).getByReturnValue());
+        assertEquals("row 999999", this.keyedExits.find(new Object[]{999999L}).getByReturnValue());
+    }
+
+    @Test
+    public void testClearingRemovesAllTheExits() {
+        this.keyedExits.put(new Object[]{1}, this.exit("exact"));
+        this.keyedExits.add(this.argumentGreaterThan(0), this.exit("matcher"));
+        this.keyedExits.clear();
+        assertNull(this.keyedExits.find(new Object[]{1}));
+    }
+
+    private Predicate<Object[]> argumentGreaterThan(final int value) {
+        return new Predicate<Object[]>() {
+            @Override
+            public boolean apply(final Object[] arguments) {
+                return (Integer) arguments[0] > value;
+            }
+        };
+    }
+
+    private MethodExit<String> exit(final String value) {
+        return new MethodExit<>(this.handler, value, 0);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.spsglobalsolutions.controllables.utilities.ClassAccessor;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link CallHistory} snapshots keep the calls (oldest first) as the chunks fill up and are dropped, and don't change as more calls are made, including when the
+ * calls are made from many threads at once.
+ *
+ * @author stevo58008
+ */
+public class CallHistoryTest {
+
+    private final MethodExit<Integer> exit = new MethodExit<>(new ControlledMethodHandler<Integer>(), 0, 0);
+
+    @Test
+    public void testAnUnboundedHistoryKeepsEveryCallInOrderAcrossManyChunks() {
+        final CallHistory<Integer> history = CallHistory.withCapacity(ControllableMethod.UNBOUNDED_HISTORY);
+        this.addCalls(history, 0, 10000);
+        this.assertCallsAre(history.snapshot(), 0, 10000);
+    }
+
+    @Test
+    public void testABoundedHistoryKeepsTheMostRecentCallsInOrderAcrossManyChunks() {
+        for (final int capacity : new int[]{1, 3, 255, 256, 257, 1000}) {
+            final CallHistory<Integer> history = CallHistory.withCapacity(capacity);
+            for (int calls = 0; calls < 3000; calls += 7) {
+                this.addCalls(history, calls, calls + 7);
+                final int expectedCount = Math.min(capacity, calls + 7);
+                this.assertCallsAre(history.snapshot(), calls + 7 - expectedCount, calls + 7);
+            }
+        }
+    }
+
+    @Test
+    public void testASnapshotDoesNotChangeAsMoreCallsAreMade() {
+        final CallHistory<Integer> history = CallHistory.withCapacity(100);
+        this.addCalls(history, 0, 50);
+        final List<MethodCall<Integer>> snapshot = history.snapshot();
+        this.addCalls(history, 50, 5000);
+        this.assertCallsAre(snapshot, 0, 50);
+        this.assertCallsAre(history.snapshot(), 4900, 5000);
+    }
+
+    @Test
+    public void testABoundedHistoryWhichIsOnlyReadAtTheEndKeepsTheMostRecentCalls() {
+        final CallHistory<Integer> history = CallHistory.withCapacity(100);
+        this.addCalls(history, 0, 100000);
+        this.assertCallsAre(history.snapshot(), 99900, 100000);
+    }
+
+    @Test
+    public void testCallsFromManyThreadsAreAllKeptInTheOrderEachThreadMadeThem() throws InterruptedException {
+        final CallHistory<Integer> history = CallHistory.withCapacity(ControllableMethod.UNBOUNDED_HISTORY);
+        final int threadCount = 8;
+        final int callsPerThread = 20000;
+        this.addCallsFromManyThreads(history, threadCount, callsPerThread);
+        final List<MethodCall<Integer>> calls = history.snapshot();
+        assertEquals(threadCount * callsPerThread, calls.size());
+        this.assertEachThreadsCallsAreInOrder(calls, threadCount, callsPerThread);
+    }
+
+    @Test
+    public void testABoundedHistoryBeingReadWhileManyThreadsMakeCallsKeepsTheMostRecentCallsInOrder() throws InterruptedException {
+        final int capacity = 50;
+        final CallHistory<Integer> history = CallHistory.withCapacity(capacity);
+        final int threadCount = 4;
+        final int callsPerThread = 50000;
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                while (!this.isInterrupted()) {
+                    assertTrue(history.snapshot().size() <= capacity);
+                }
+            }
+        };
+        reader.start();
+        this.addCallsFromManyThreads(history, threadCount, callsPerThread);
+        reader.interrupt();
+        reader.join();
+        final List<MethodCall<Integer>> calls = history.snapshot();
+        assertEquals(capacity, calls.size());
+        this.assertEachThreadsCallsAreInOrder(calls, threadCount, callsPerThread);
+    }
+
+    @Test
+    public void testTheThreadBuffersLetGoOfTheCallsOnceTheyHaveBeenMerged() {
+        for (final int capacity : new int[]{ControllableMethod.UNBOUNDED_HISTORY, 100000}) {
+            final CallHistory<Integer> history = CallHistory.withCapacity(capacity);
+            for (int calls = 0; calls < 20000; calls += 500) {
+                this.addCalls(history, calls, calls + 500);
+                history.snapshot();
+                assertTrue("only the segment still being added to (and maybe the one before it) should be kept, but there were " +
+                           history.getRetainedSegmentCount(), history.getRetainedSegmentCount() <= 2);
+            }
+            this.assertCallsAre(history.snapshot(), 0, 20000);
+        }
+    }
+
+    @Test
+    public void testTheBuffersOfThreadsWhichHaveGoneAreLetGoOf() throws InterruptedException {
+        final CallHistory<Integer> history = CallHistory.withCapacity(ControllableMethod.UNBOUNDED_HISTORY);
+        for (int batch = 0; batch < 10; batch++) {
+            this.addCallsFromManyThreads(history, 10, 100);
+            assertEquals(10, history.getThreadBufferCount());
+            assertEquals((batch + 1) * 1000, history.snapshot().size());
+            assertEquals("the gone threads' buffers should have been let go of, once their calls were merged", 0, history.getThreadBufferCount());
+        }
+        this.addCalls(history, 0, 10);
+        history.snapshot();
+        assertEquals("this (still running) thread's buffer should be kept", 1, history.getThreadBufferCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testASnapshotDoesNotWaitForACallWhichHasBeenGivenItsSequenceNumberButNotPublished() throws Exception {
+        final CallHistory<Integer> history = CallHistory.withCapacity(ControllableMethod.UNBOUNDED_HISTORY);
+        this.addCalls(history, 0, 5);
+        this.claimASequenceNumberWithoutPublishingItsCall(history);
+        this.addCalls(history, 5, 10);
+        this.assertCallsAre(history.snapshot(), 0, 5);
+        this.assertCallsAre(history.snapshot(), 0, 5);
+    }
+
+    @Test(timeout = 10000)
+    public void testABoundedHistorySkipsACallWhichWasNeverPublishedOnceItIsTooOldToBeKept() throws Exception {
+        final CallHistory<Integer> history = CallHistory.withCapacity(10);
+        this.addCalls(history, 0, 5);
+        this.claimASequenceNumberWithoutPublishingItsCall(history);
+        this.addCalls(history, 5, 10);
+        this.assertCallsAre(history.snapshot(), 0, 5);
+        this.addCalls(history, 10, 30);
+        this.assertCallsAre(history.snapshot(), 20, 30);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testASnapshotCannotBeModified() {
+        final CallHistory<Integer> history = CallHistory.withCapacity(ControllableMethod.UNBOUNDED_HISTORY);
+        this.addCalls(history, 0, 1);
+        history.snapshot().remove(0);
+    }
+
+    private void addCalls(final CallHistory<Integer> history, final int fromArgument, final int toArgument) {
+        for (int argument = fromArgument; argument < toArgument; argument++) {
+            history.add(new MethodCall<>(this.exit, argument));
+        }
+    }
+
+    // as a thread would if it were descheduled (or failed) after being given its sequence number, but before publishing its call
+    private void claimASequenceNumberWithoutPublishingItsCall(final CallHistory<Integer> history) throws NoSuchFieldException, IllegalAccessException {
+        final AtomicLong sequenceNumbers = ClassAccessor.getValueOfField(CallHistory.class, "sequenceNumbers", history);
+        sequenceNumbers.getAndIncrement();
+    }
+
+    private void addCallsFromManyThreads(final CallHistory<Integer> history, final int threadCount, final int callsPerThread) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int threadNumber = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    CallHistoryTest.this.addCalls(history, threadNumber * callsPerThread, (threadNumber + 1) * callsPerThread);
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void assertEachThreadsCallsAreInOrder(final List<MethodCall<Integer>> calls, final int threadCount, final int callsPerThread) {
+        final int[] lastArgumentOfEachThread = new int[threadCount];
+        for (final MethodCall<Integer> call : calls) {
+            final int argument = (Integer) call.getArguments()[0];
+            final int threadNumber = argument / callsPerThread;
+            assertTrue("each thread's calls should be in the order it made them", argument >= lastArgumentOfEachThread[threadNumber]);
+            lastArgumentOfEachThread[threadNumber] = argument + 1;
+        }
+    }
+
+    private void assertCallsAre(final List<MethodCall<Integer>> calls, final int fromArgument, final int toArgument) {
+        assertEquals(toArgument - fromArgument, calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            assertEquals(fromArgument + i, calls.get(i).getArguments()[0]);
+        }
+        assertEquals(calls.size(), calls.toArray().length);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.spsglobalsolutions.controllables.utilities.ClassAccessor;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link CallTimestamps} keep the times (oldest first) as the chunks fill up and are dropped, including when the times are added from many threads at once, and that
+ * a handler only creates them once it records at {@link RecordingLevel#Timestamps}.
+ *
+ * @author stevo58008
+ */
+public class CallTimestampsTest {
+
+    @Test
+    public void testUnboundedTimestampsKeepEveryTimeInOrderAcrossManyChunks() {
+        final CallTimestamps timestamps = new CallTimestamps(ControllableMethod.UNBOUNDED_HISTORY);
+        this.addTimes(timestamps, 0, 10000);
+        this.assertTimesAre(timestamps.snapshot(), 0, 10000);
+    }
+
+    @Test
+    public void testBoundedTimestampsKeepTheMostRecentTimesInOrderAndLetGoOfTheOlderChunks() {
+        for (final int capacity : new int[]{1, 3, 255, 256, 257, 1000}) {
+            final CallTimestamps timestamps = new CallTimestamps(capacity);
+            for (int times = 0; times < 3000; times += 7) {
+                this.addTimes(timestamps, times, times + 7);
+                final int expectedCount = Math.min(capacity, times + 7);
+                this.assertTimesAre(timestamps.snapshot(), times + 7 - expectedCount, times + 7);
+                assertTrue("too many chunks were kept: " + timestamps.getRetainedChunkCount(), timestamps.getRetainedChunkCount() <= 2 + (capacity + 255) / 256);
+            }
+        }
+    }
+
+    @Test
+    public void testTimesAddedFromManyThreadsAreAllKeptInTheOrderEachThreadAddedThem() throws InterruptedException {
+        final int threadCount = 8;
+        final int timesPerThread = 5000;
+        final CallTimestamps timestamps = new CallTimestamps(ControllableMethod.UNBOUNDED_HISTORY);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int threadNumber = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    CallTimestampsTest.this.addTimes(timestamps, threadNumber * timesPerThread, (threadNumber + 1) * timesPerThread);
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final long[] times = timestamps.snapshot();
+        assertEquals(threadCount * timesPerThread, times.length);
+        final long[] lastTimeForThread = new long[threadCount];
+        for (final long time : times) {
+            final int threadNumber = (int) (time / timesPerThread);
+            assertTrue(time >= lastTimeForThread[threadNumber]);
+            lastTimeForThread[threadNumber] = time;
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testASnapshotDoesNotWaitForATimeWhichHasClaimedItsIndexButNotBeenPublished() throws Exception {
+        final CallTimestamps timestamps = new CallTimestamps(ControllableMethod.UNBOUNDED_HISTORY);
+        this.addTimes(timestamps, 0, 5);
+        final AtomicLong claimedCount = ClassAccessor.getValueOfField(CallTimestamps.class, "claimedCount", timestamps);
+        claimedCount.getAndIncrement(); // as a call would if it were descheduled after claiming its index
+        this.addTimes(timestamps, 5, 10);
+        this.assertTimesAre(timestamps.snapshot(), 0, 5);
+    }
+
+    @Test
+    public void testAHandlerOnlyCreatesItsTimestampsOnceItRecordsThem() throws Exception {
+        final ControlledMethodHandler<Integer> handler = new ControlledMethodHandler<>(ControllableMethod.UNBOUNDED_HISTORY, RecordingLevel.Full);
+        handler.setHistoryCapacity(10);
+        assertNull(ClassAccessor.getValueOfField(ControlledMethodHandler.class, "callTimestamps", handler));
+        assertEquals(0, handler.getCallTimesInMillis().length);
+        handler.setRecordingLevel(RecordingLevel.Timestamps);
+        final CallTimestamps timestamps = ClassAccessor.getValueOfField(ControlledMethodHandler.class, "callTimestamps", handler);
+        this.addTimes(timestamps, 0, 20);
+        this.assertTimesAre(handler.getCallTimesInMillis(), 10, 20);
+    }
+
+    private void addTimes(final CallTimestamps timestamps, final long fromTime, final long toTime) {
+        for (long time = fromTime; time < toTime; time++) {
+            timestamps.add(time);
+        }
+    }
+
+    private void assertTimesAre(final long[] times, final long fromTime, final long toTime) {
+        assertEquals(toTime - fromTime, times.length);
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(fromTime + i, times[i]);
+        }
+    }
+}
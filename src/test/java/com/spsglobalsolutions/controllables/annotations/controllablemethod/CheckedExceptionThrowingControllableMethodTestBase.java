@@ -16,9 +16,10 @@
 
 package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 
-import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -51,14 +52,48 @@ public abstract class CheckedExceptionThrowingControllableMethodTestBase<MethodR
         final Object[] expectedArgs = getUniqueMethodArguments();
         // call 1
         final long expectedCallTime1 = callMethodWhichHasHistory(expectedArgs);
-        final ImmutableList<MethodCall<MethodReturnType>> historySnapshot1 = this.history.getHistory();
+        final List<MethodCall<MethodReturnType>> historySnapshot1 = this.history.getHistory();
         TestUtils.assertExpectedMethodCallWithCheckedException(historySnapshot1.get(0), expectedCallTime1, expectedChecked1, expectedArgs);
         // call 2
         final long expectedCallTime2 = callMethodWhichHasHistory(expectedArgs);
-        final ImmutableList<MethodCall<MethodReturnType>> historySnapshot2 = this.history.getHistory();
+        final List<MethodCall<MethodReturnType>> historySnapshot2 = this.history.getHistory();
         TestUtils.assertExpectedMethodCallWithCheckedException(historySnapshot2.get(1), expectedCallTime2, expectedChecked2, expectedArgs);
     }
 
+    @Test
+    public void testAComputedCheckedExitCanThrowACheckedException() throws Exception {
+        final E1 expectedChecked1 = getUniqueException1Instance();
+        final E2 expectedChecked2 = getUniqueException2Instance();
+        this.history.addComputedCheckedException1Exit(new ExitComputation<MethodReturnType, E1>() {
+            @Override
+            public MethodReturnType compute(final Object[] arguments) throws E1 {
+                throw expectedChecked1;
+            }
+        });
+        this.history.addComputedCheckedException2Exit(new ExitComputation<MethodReturnType, E2>() {
+            @Override
+            public MethodReturnType compute(final Object[] arguments) throws E2 {
+                throw expectedChecked2;
+            }
+        });
+        final Object[] expectedArgs = getUniqueMethodArguments();
+        final long expectedCallTime1 = callMethodWhichHasHistory(expectedArgs);
+        TestUtils.assertExpectedMethodCallWithCheckedException(this.history.getHistory().get(0), expectedCallTime1, expectedChecked1, expectedArgs);
+        final long expectedCallTime2 = callMethodWhichHasHistory(expectedArgs);
+        TestUtils.assertExpectedMethodCallWithCheckedException(this.history.getHistory().get(1), expectedCallTime2, expectedChecked2, expectedArgs);
+    }
+
+    @Test
+    public void testACheckedExceptionExitForTheCallsArgumentsIsUsedBeforeTheExitsInOrder() throws Exception {
+        final E1 inOrder = getUniqueException1Instance();
+        final E2 keyed = getUniqueException2Instance();
+        final Object[] keyedArgs = getUniqueMethodArguments();
+        this.history.addCheckedException1Exit(inOrder);
+        this.history.addCheckedException2ExitWhen(CalledWith.arguments(keyedArgs), keyed);
+        final long expectedCallTime = callMethodWhichHasHistory(keyedArgs);
+        TestUtils.assertExpectedMethodCallWithCheckedException(this.history.getHistory().get(0), expectedCallTime, keyed, keyedArgs);
+    }
+
     @Test
     public void testACallThatThrowsCheckedExceptionHasAnExitWithExitedValueOfByCheckedException() throws Exception {
         this.history.clearExits();
@@ -16,13 +16,18 @@
 
 package com.spsglobalsolutions.controllables.annotations.controllablemethod;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.spsglobalsolutions.controllables.annotations.controllablemethod.examples.MethodHistoryExamples;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -82,19 +87,56 @@ public abstract class ControllableMethodTestBase<MethodReturnType, Method extend
         assertEquals("history should be empty before any calls to it", 0, this.history.getHistory().size());
     }
 
+    @Test
+    public void testLookingAtTheHistoryOfAMethodWhichHasNeverBeenConfiguredDoesNotConfigureIt() throws Exception {
+        this.exampleInstanceInUse = new MethodHistoryExamples();
+        this.history = this.getHistoryInstance();
+        assertTrue(this.history.getHistory().isEmpty());
+        assertEquals(0, this.history.getCallCount());
+        assertEquals(0, this.history.getCallTimesInMillis().length);
+        assertEquals(RecordingLevel.Full, this.history.getRecordingLevel());
+        try {
+            this.executeMethodUnderTest(this.getUniqueMethodArguments());
+            fail("An exception was expected as no exits had been added");
+        } catch (final ControllableMethodException expected) {
+        }
+        assertEquals("the call should have gone to the shared unconfigured handler, so not be recorded", 0, this.history.getCallCount());
+    }
+
+    @Test
+    public void testTheSameControllableIsReturnedEachTimeItIsAskedFor() {
+        assertSame(this.history, this.getHistoryInstance());
+    }
+
     @Test(expected = ControllableMethodException.class)
     public void testCallingTheMethodWithoutAddingAnyExitsThrowsException() {
         this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
         fail("An exception was expected as no exits had been added");
     }
 
+    @Test
+    public void testCallingAMethodWhichHasNeverBeenConfiguredThrowsExceptionAndIsNotRecorded() throws Exception {
+        // a new instance, whose method hasn't been touched through its controllable yet, so is still using the shared unconfigured handler
+        this.exampleInstanceInUse = new MethodHistoryExamples();
+        try {
+            this.executeMethodUnderTest(this.getUniqueMethodArguments());
+            fail("An exception was expected as no exits had been added");
+        } catch (final ControllableMethodException expected) {
+        }
+        this.history = this.getHistoryInstance();
+        assertEquals(0, this.history.getCallCount());
+        this.addNormalExit(this.getUniqueReturnValue());
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        assertEquals("the method should use its own handler once configured", 1, this.history.getHistory().size());
+    }
+
     @Test
     public void testSingleNormalExitCallResultsInSingleHistoryIncrease() {
         final MethodReturnType expectedReturnValue = this.getUniqueReturnValue();
         this.addNormalExit(expectedReturnValue);
         final Object[] expectedArguments = this.getUniqueMethodArguments();
         final long expectedCallTime = this.callMethodWhichHasHistory(expectedArguments);
-        final ImmutableList<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
+        final List<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
         assertEquals("unexpected history size", 1, historySnapshot.size());
         TestUtils.assertExpectedMethodCallWithReturnValue(historySnapshot.get(0), expectedCallTime, expectedReturnValue, expectedArguments);
     }
@@ -105,7 +147,7 @@ public abstract class ControllableMethodTestBase<MethodReturnType, Method extend
         this.history.addUncheckedExceptionExit(expectedException);
         final Object[] expectedArguments = this.getUniqueMethodArguments();
         final long expectedCallTime = this.callMethodWhichHasHistory(expectedArguments);
-        final ImmutableList<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
+        final List<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
         assertEquals("unexpected history size", 1, historySnapshot.size());
         TestUtils.assertExpectedMethodCallWithUncheckedException(historySnapshot.get(0), expectedCallTime, expectedException, expectedArguments);
     }
@@ -118,7 +160,7 @@ public abstract class ControllableMethodTestBase<MethodReturnType, Method extend
         for (int i = 0; i < 5; i++) {
             final Object[] expectedArguments = this.getUniqueMethodArguments();
             final long expectedCallTime = this.callMethodWhichHasHistory(expectedArguments);
-            final ImmutableList<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
+            final List<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
             TestUtils.assertExpectedMethodCallWithUncheckedException(historySnapshot.get(i), expectedCallTime, expectedException, expectedArguments);
         }
     }
@@ -130,7 +172,7 @@ public abstract class ControllableMethodTestBase<MethodReturnType, Method extend
         for (int i = 0; i < 10; i++) {
             final Object[] expectedArguments = this.getUniqueMethodArguments();
             final long expectedCallTime = this.callMethodWhichHasHistory(expectedArguments);
-            final ImmutableList<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
+            final List<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
             TestUtils.assertExpectedMethodCallWithReturnValue(historySnapshot.get(i), expectedCallTime, expectedReturnValue, expectedArguments);
             // sleep a little, so can get some differentiation in expected call time
             Thread.sleep(10);
@@ -144,7 +186,7 @@ public abstract class ControllableMethodTestBase<MethodReturnType, Method extend
         for (int i = 0; i < 10; i++) {
             final Object[] expectedArguments = this.getUniqueMethodArguments();
             final long expectedCallTime = this.callMethodWhichHasHistory(expectedArguments);
-            final ImmutableList<MethodCall<MethodReturnType>> historySnapshot = this.getHistoryInstance().getHistory();
+            final List<MethodCall<MethodReturnType>> historySnapshot = this.getHistoryInstance().getHistory();
             assertEquals("The history size is not correct", (i + 1), historySnapshot.size());
             TestUtils.assertExpectedMethodCallWithReturnValue(historySnapshot.get(i), expectedCallTime, expectedReturnValue, expectedArguments);
             // sleep a little, so can get some differentiation in expected call time
@@ -169,7 +211,7 @@ public abstract class ControllableMethodTestBase<MethodReturnType, Method extend
         final long expectedTimeOfCall1 = this.callMethodWhichHasHistory(expectedArguments);
         final long expectedTimeOfCall2 = this.callMethodWhichHasHistory(expectedArguments);
         final long expectedTimeOfCall3 = this.callMethodWhichHasHistory(expectedArguments);
-        final ImmutableList<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
+        final List<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
         assertEquals("The number of entries in the call history was not right", 4, historySnapshot.size());
         TestUtils.assertExpectedMethodCallWithUncheckedException(historySnapshot.get(0), expectedTimeOfCall0, unchecked1, expectedArguments);
         TestUtils.assertExpectedMethodCallWithReturnValue(historySnapshot.get(1), expectedTimeOfCall1, expectedReturnValue, expectedArguments);
@@ -223,6 +265,434 @@ public abstract class ControllableMethodTestBase<MethodReturnType, Method extend
         assertTrue("The method call length (" + callLength + ") should have been at least as long as the delay set (" + expectedDelay + ")", callLength >= expectedDelay);
     }
 
+    @Test
+    public void testTheCallDurationIncludesTheExitDelay() {
+        final long delayInMillis = 20;
+        this.addNormalExit(this.getUniqueReturnValue(), delayInMillis);
+        final long beforeCallInNanos = System.nanoTime();
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        final long afterCallInNanos = System.nanoTime();
+        final MethodCall<MethodReturnType> call = this.history.getHistory().get(0);
+        assertTrue(call.hasExited());
+        assertTrue("the duration (" + call.getDurationInNanos() + "ns) should include the delay", call.getDurationInNanos() >= delayInMillis * 1000000);
+        assertTrue(call.getEntryTimeInNanos() >= beforeCallInNanos);
+        assertEquals(call.getEntryTimeInNanos() + call.getDurationInNanos(), call.getExitTimeInNanos());
+        assertTrue(call.getExitTimeInNanos() <= afterCallInNanos);
+    }
+
+    @Test
+    public void testTheCallDurationIncludesTheTimeTakenToChooseTheExit() {
+        final long computationInMillis = 20;
+        final MethodReturnType computedReturnValue = this.getUniqueReturnValue();
+        this.addComputedExit(new Function<Object[], MethodReturnType>() {
+            @Override
+            public MethodReturnType apply(final Object[] arguments) {
+                try {
+                    Thread.sleep(computationInMillis);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return computedReturnValue;
+            }
+        });
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        final long durationInNanos = this.history.getHistory().get(0).getDurationInNanos();
+        assertTrue("the duration (" + durationInNanos + "ns) should include computing the exit", durationInNanos >= TimeUnit.MILLISECONDS.toNanos(computationInMillis));
+    }
+
+    @Test
+    public void testASubMillisecondDelayIsWaitedFor() {
+        final long delayInMicros = 200;
+        this.addNormalExit(this.getUniqueReturnValue(), delayInMicros, TimeUnit.MICROSECONDS);
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        final long durationInNanos = this.history.getHistory().get(0).getDurationInNanos();
+        assertTrue("the duration (" + durationInNanos + "ns) should include the delay", durationInNanos >= TimeUnit.MICROSECONDS.toNanos(delayInMicros));
+    }
+
+    @Test
+    public void testTheExitLatencyIsWaitedForOnTopOfTheExitsDelay() {
+        this.history.setExitLatency(ExitLatency.fixed(100, TimeUnit.MILLISECONDS), 1);
+        this.addNormalExit(this.getUniqueReturnValue(), 1, TimeUnit.MILLISECONDS);
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        final long durationInNanos = this.history.getHistory().get(0).getDurationInNanos();
+        assertTrue("the duration (" + durationInNanos + "ns) should include the latency and the delay", durationInNanos >= TimeUnit.MILLISECONDS.toNanos(101));
+        this.history.setExitLatency(null, 0);
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        assertTrue(this.history.getHistory().get(1).getDurationInNanos() < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testBeingInterruptedCutsTheDelayShortAndLeavesTheInterruptFlagSet() {
+        this.addNormalExit(this.getUniqueReturnValue(), 1, TimeUnit.MINUTES);
+        Thread.currentThread().interrupt();
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        assertTrue("the interrupt flag should still be set", Thread.interrupted());
+        final MethodCall<MethodReturnType> call = this.history.getHistory().get(0);
+        assertTrue("the delay should have been cut short", call.getDurationInNanos() < TimeUnit.SECONDS.toNanos(10));
+        assertEquals(MethodExit.Exited.Normally, call.getExit().getHowItExited());
+    }
+
+    @Test
+    public void testBeingInterruptedUsesTheInterruptedExitIfThereIsOne() {
+        final RuntimeException interruptedException = new IllegalStateException("interrupted");
+        this.history.setUncheckedExceptionExitWhenInterrupted(interruptedException);
+        this.addNormalExit(this.getUniqueReturnValue(), 1, TimeUnit.MINUTES);
+        Thread.currentThread().interrupt();
+        try {
+            this.executeMethodUnderTest(this.getUniqueMethodArguments());
+            fail("the interrupted exit should have been used");
+        } catch (final Exception e) {
+            assertSame(interruptedException, e);
+        }
+        assertTrue("the interrupt flag should still be set", Thread.interrupted());
+        assertSame(interruptedException, this.history.getHistory().get(0).getExit().getByUncheckedException());
+    }
+
+    @Test
+    public void testEachCallIsEnteredAfterThePreviousCallExited() {
+        this.addNormalExit(this.getUniqueReturnValue());
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        final List<MethodCall<MethodReturnType>> calls = this.history.getHistory();
+        assertTrue(calls.get(1).getEntryTimeInNanos() >= calls.get(0).getExitTimeInNanos());
+    }
+
+    @Test
+    public void testHistoryWithACapacityOnlyKeepsTheMostRecentCallsInOrder() {
+        final int capacity = 3;
+        this.history.setHistoryCapacity(capacity);
+        this.addNormalExit(this.getUniqueReturnValue());
+        final Object[][] argumentsOfEachCall = new Object[10][];
+        for (int i = 0; i < argumentsOfEachCall.length; i++) {
+            argumentsOfEachCall[i] = this.getUniqueMethodArguments();
+            this.callMethodWhichHasHistory(argumentsOfEachCall[i]);
+        }
+        final List<MethodCall<MethodReturnType>> historySnapshot = this.history.getHistory();
+        assertEquals("only the capacity's worth of calls should be kept", capacity, historySnapshot.size());
+        for (int i = 0; i < capacity; i++) {
+            assertArrayEquals("the kept calls should be the most recent ones, oldest first",
+                              argumentsOfEachCall[argumentsOfEachCall.length - capacity + i], historySnapshot.get(i).getArguments());
+        }
+    }
+
+    @Test
+    public void testCallCountIsExactEvenWhenTheHistoryHasACapacity() {
+        this.history.setHistoryCapacity(2);
+        this.addNormalExit(this.getUniqueReturnValue());
+        for (int i = 0; i < 7; i++) {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        }
+        assertEquals("the call count should include the calls no longer in the history", 7, this.history.getCallCount());
+        assertEquals(2, this.history.getHistory().size());
+    }
+
+    @Test
+    public void testChangingTheHistoryCapacityKeepsTheMostRecentCallsAndTheCallCount() {
+        this.addNormalExit(this.getUniqueReturnValue());
+        Object[] lastArguments = null;
+        for (int i = 0; i < 5; i++) {
+            lastArguments = this.getUniqueMethodArguments();
+            this.callMethodWhichHasHistory(lastArguments);
+        }
+        this.history.setHistoryCapacity(1);
+        assertEquals(1, this.history.getHistory().size());
+        assertArrayEquals(lastArguments, this.history.getHistory().get(0).getArguments());
+        this.history.setHistoryCapacity(ControllableMethod.UNBOUNDED_HISTORY);
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        assertEquals(2, this.history.getHistory().size());
+        assertEquals(6, this.history.getCallCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAHistoryCapacityOfLessThanOneIsRejected() {
+        this.history.setHistoryCapacity(0);
+    }
+
+    @Test
+    public void testTheHistoryHasTheCallsMadeSoFarAndDoesNotChangeAfterwards() {
+        this.addNormalExit(this.getUniqueReturnValue());
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        final List<MethodCall<MethodReturnType>> history = this.history.getHistory();
+        assertEquals(2, history.size());
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        assertEquals("the history shouldn't include calls made after it was taken", 2, history.size());
+        assertEquals(history, this.history.getHistory().subList(0, 2));
+    }
+
+    @Test
+    public void testWeightedExitsAreChosenInProportionToTheirWeights() {
+        this.addNormalExit(this.getUniqueReturnValue());
+        this.history.addUncheckedExceptionExit(new RuntimeException("one in four"));
+        this.history.useWeightedExits(1234, 3, 1);
+        this.history.setRecordingLevel(RecordingLevel.Full);
+        final int calls = 4000;
+        for (int i = 0; i < calls; i++) {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        }
+        int uncheckedExceptionExits = 0;
+        for (final MethodCall<MethodReturnType> call : this.history.getHistory()) {
+            if (call.getExit().getHowItExited() == MethodExit.Exited.ByUncheckedException) {
+                uncheckedExceptionExits++;
+            }
+        }
+        assertEquals(calls / 4, uncheckedExceptionExits, calls / 20);
+    }
+
+    @Test
+    public void testClearingTheExitsStopsTheWeightedExitsBeingUsed() {
+        this.addNormalExit(this.getUniqueReturnValue());
+        this.history.useWeightedExits(1, 1);
+        this.history.clearExits();
+        try {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+            fail("there should be no exits");
+        } catch (final ControllableMethodException e) {
+            assertTrue(e.getCause() instanceof NoSuchElementException);
+        }
+    }
+
+    @Test
+    public void testAnExitForTheCallsArgumentsIsUsedBeforeTheExitsInOrder() {
+        final Object[] keyedArguments = this.getUniqueMethodArguments();
+        final RuntimeException keyedException = new RuntimeException("keyed");
+        this.addNormalExit(this.getUniqueReturnValue());
+        this.history.addUncheckedExceptionExitWhen(CalledWith.arguments(keyedArguments), keyedException);
+        this.callMethodWhichHasHistory(keyedArguments);
+        assertSame(keyedException, this.history.getHistory().get(0).getExit().getByUncheckedException());
+        if (keyedArguments.length > 0) {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+            assertEquals("other arguments should use the exits in order", MethodExit.Exited.Normally, this.history.getHistory().get(1).getExit().getHowItExited());
+        }
+    }
+
+    @Test
+    public void testAnExitForArgumentsAMatcherMatchesIsUsedBeforeTheExitsInOrder() {
+        final Object[] matchedArguments = this.getUniqueMethodArguments();
+        final RuntimeException matchedException = new RuntimeException("matched");
+        this.addNormalExit(this.getUniqueReturnValue());
+        this.history.addUncheckedExceptionExitWhen(CalledWith.argumentsMatching(new Predicate<Object[]>() {
+            @Override
+            public boolean apply(final Object[] arguments) {
+                return Arrays.equals(matchedArguments, arguments);
+            }
+        }), matchedException);
+        this.callMethodWhichHasHistory(matchedArguments);
+        assertSame(matchedException, this.history.getHistory().get(0).getExit().getByUncheckedException());
+    }
+
+    @Test
+    public void testTheExitAddedAfterAnExitForArgumentsIsAddedToTheExitsInOrder() {
+        final RuntimeException inOrder = new RuntimeException("in order");
+        this.history.addUncheckedExceptionExitWhen(CalledWith.argumentsMatching(Predicates.<Object[]>alwaysFalse()), new RuntimeException("never used"));
+        this.history.addUncheckedExceptionExit(inOrder);
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        assertSame(inOrder, this.history.getHistory().get(0).getExit().getByUncheckedException());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullArgumentsForAnExitAreRejected() {
+        CalledWith.arguments((Object[]) null);
+    }
+
+    @Test
+    public void testAComputedExitIsComputedFromTheArgumentsOfEachCall() {
+        final Object[] firstArguments = this.getUniqueMethodArguments();
+        final Object[] secondArguments = this.getUniqueMethodArguments();
+        final MethodReturnType computedReturnValue = this.getUniqueReturnValue();
+        final Object[][] computedFor = new Object[2][];
+        this.addComputedExit(new Function<Object[], MethodReturnType>() {
+            private int calls;
+
+            @Override
+            public MethodReturnType apply(final Object[] arguments) {
+                computedFor[this.calls++] = arguments;
+                return computedReturnValue;
+            }
+        });
+        this.callMethodWhichHasHistory(firstArguments);
+        this.callMethodWhichHasHistory(secondArguments);
+        assertArrayEquals(firstArguments, computedFor[0]);
+        assertArrayEquals(secondArguments, computedFor[1]);
+        assertEquals(MethodExit.Exited.Normally, this.history.getHistory().get(1).getExit().getHowItExited());
+        assertEquals(computedReturnValue, this.history.getHistory().get(1).getExit().getByReturnValue());
+    }
+
+    @Test
+    public void testAComputedExitCanThrowAnUncheckedException() {
+        final RuntimeException computedException = new IllegalStateException("computed");
+        this.addComputedExit(new Function<Object[], MethodReturnType>() {
+            @Override
+            public MethodReturnType apply(final Object[] arguments) {
+                throw computedException;
+            }
+        });
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        assertSame(computedException, this.history.getHistory().get(0).getExit().getByUncheckedException());
+    }
+
+    @Test
+    public void testARepeatedExitIsUsedForExactlyThatManyCalls() {
+        final RuntimeException afterTheRepeats = new IllegalStateException("after the repeats");
+        this.addRepeatedNormalExit(this.getUniqueReturnValue(), 3);
+        this.history.addUncheckedExceptionExit(afterTheRepeats);
+        for (int i = 0; i < 5; i++) {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        }
+        final List<MethodCall<MethodReturnType>> calls = this.history.getHistory();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("call " + i, MethodExit.Exited.Normally, calls.get(i).getExit().getHowItExited());
+        }
+        assertSame(afterTheRepeats, calls.get(3).getExit().getByUncheckedException());
+        assertSame(afterTheRepeats, calls.get(4).getExit().getByUncheckedException());
+    }
+
+    @Test
+    public void testTheLastRepeatedExitIsTheDefault() {
+        final RuntimeException repeated = new IllegalStateException("repeated");
+        this.history.addRepeatedUncheckedExceptionExit(repeated, 2);
+        for (int i = 0; i < 4; i++) {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+            assertSame(repeated, this.history.getHistory().get(i).getExit().getByUncheckedException());
+        }
+    }
+
+    @Test
+    public void testCyclicExitsAreUsedInTurnForeverAfterTheExitsBeforeThem() {
+        final RuntimeException beforeTheCycle = new IllegalStateException("before the cycle");
+        final RuntimeException everyThirdCall = new IllegalStateException("every third call");
+        this.history.addUncheckedExceptionExit(beforeTheCycle);
+        this.history.addCyclicExits(new ExitCycle<MethodReturnType>().normalExit(this.getUniqueReturnValue())
+                                                                     .normalExit(this.getUniqueReturnValue())
+                                                                     .uncheckedExceptionExit(everyThirdCall));
+        for (int i = 0; i < 10; i++) {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        }
+        final List<MethodCall<MethodReturnType>> calls = this.history.getHistory();
+        assertSame(beforeTheCycle, calls.get(0).getExit().getByUncheckedException());
+        for (int i = 1; i < 10; i++) {
+            if (i % 3 == 0) {
+                assertSame("call " + i, everyThirdCall, calls.get(i).getExit().getByUncheckedException());
+            } else {
+                assertEquals("call " + i, MethodExit.Exited.Normally, calls.get(i).getExit().getHowItExited());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testACycleWithoutAnyExitsIsRejected() {
+        this.history.addCyclicExits(new ExitCycle<MethodReturnType>());
+    }
+
+    @Test
+    public void testChangingACycleAfterItHasBeenAddedDoesNotChangeTheExitsUsed() {
+        final RuntimeException cycled = new IllegalStateException("cycled");
+        final ExitCycle<MethodReturnType> cycle = new ExitCycle<MethodReturnType>().uncheckedExceptionExit(cycled);
+        this.history.addCyclicExits(cycle);
+        cycle.normalExit(this.getUniqueReturnValue());
+        for (int i = 0; i < 3; i++) {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+            assertSame("call " + i, cycled, this.history.getHistory().get(i).getExit().getByUncheckedException());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testARepeatCountOfLessThanOneIsRejected() {
+        this.history.addRepeatedUncheckedExceptionExit(new IllegalStateException(), 0);
+    }
+
+    @Test
+    public void testRecordingEverythingIsTheDefault() {
+        assertEquals(RecordingLevel.Full, this.history.getRecordingLevel());
+    }
+
+    @Test
+    public void testRecordingOnlyTheCountKeepsNoHistory() {
+        this.history.setRecordingLevel(RecordingLevel.Count);
+        this.addNormalExit(this.getUniqueReturnValue());
+        for (int i = 0; i < 4; i++) {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        }
+        assertEquals(4, this.history.getCallCount());
+        assertTrue("no calls should be in the history", this.history.getHistory().isEmpty());
+        assertEquals("no call times should be recorded", 0, this.history.getCallTimesInMillis().length);
+    }
+
+    @Test
+    public void testExitsWhichDependOnTheArgumentsGetThemEvenWhenTheyAreNotRecorded() {
+        final Object[] arguments = this.getUniqueMethodArguments();
+        final Object[][] computedFor = new Object[1][];
+        this.history.setRecordingLevel(RecordingLevel.Count);
+        this.addComputedExit(new Function<Object[], MethodReturnType>() {
+            @Override
+            public MethodReturnType apply(final Object[] computedArguments) {
+                computedFor[0] = computedArguments;
+                return null;
+            }
+        });
+        this.callMethodWhichHasHistory(arguments);
+        assertArrayEquals(arguments, computedFor[0]);
+    }
+
+    @Test
+    public void testAnExitForTheCallsArgumentsIsUsedEvenWhenTheyAreNotRecorded() {
+        final Object[] keyedArguments = this.getUniqueMethodArguments();
+        final RuntimeException keyedException = new RuntimeException("keyed");
+        this.history.setRecordingLevel(RecordingLevel.Count);
+        this.addNormalExit(this.getUniqueReturnValue());
+        this.history.addUncheckedExceptionExitWhen(CalledWith.arguments(keyedArguments), keyedException);
+        try {
+            this.executeMethodUnderTest(keyedArguments);
+            fail("the exit for the arguments should have been used");
+        } catch (final Exception e) {
+            assertSame(keyedException, e);
+        }
+    }
+
+    @Test
+    public void testRecordingTimestampsKeepsTheCallTimesButNoHistory() {
+        this.history.setRecordingLevel(RecordingLevel.Timestamps);
+        this.addNormalExit(this.getUniqueReturnValue());
+        final long firstCallTime = this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        final long[] callTimes = this.history.getCallTimesInMillis();
+        assertEquals(2, callTimes.length);
+        assertTrue("the call times should be in order", callTimes[0] <= callTimes[1]);
+        assertTrue("the call time should be no earlier than when the call was made", callTimes[0] >= firstCallTime);
+        assertEquals(2, this.history.getCallCount());
+        assertTrue("no calls should be in the history", this.history.getHistory().isEmpty());
+    }
+
+    @Test
+    public void testABoundedHistoryKeepsOnlyTheMostRecentCallTimesOnceItHasGrownToItsCapacity() {
+        this.history.setHistoryCapacity(100).setRecordingLevel(RecordingLevel.Timestamps);
+        this.addNormalExit(this.getUniqueReturnValue());
+        for (int i = 0; i < 150; i++) {
+            this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        }
+        final long[] callTimes = this.history.getCallTimesInMillis();
+        assertEquals(100, callTimes.length);
+        for (int i = 1; i < callTimes.length; i++) {
+            assertTrue("the call times should be in order", callTimes[i - 1] <= callTimes[i]);
+        }
+        assertEquals(150, this.history.getCallCount());
+    }
+
+    @Test
+    public void testRecordingOffRecordsNothingButKeepsWhatWasAlreadyRecorded() {
+        this.addNormalExit(this.getUniqueReturnValue());
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        this.history.setRecordingLevel(RecordingLevel.Off);
+        this.callMethodWhichHasHistory(this.getUniqueMethodArguments());
+        assertEquals(1, this.history.getCallCount());
+        assertEquals(1, this.history.getHistory().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testANullRecordingLevelIsRejected() {
+        this.history.setRecordingLevel(null);
+    }
+
     protected long callMethodWhichHasHistory(final Object[] withArgs) {
         final long callTime = System.currentTimeMillis();
         try {
@@ -244,16 +714,42 @@ public abstract class ControllableMethodTestBase<MethodReturnType, Method extend
      * @param withReturnValue the return value to use (this is ignored for Void methods).
      */
     private void addNormalExit(final MethodReturnType withReturnValue, final long exitDelay) {
+        this.addNormalExit(withReturnValue, exitDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private void addNormalExit(final MethodReturnType withReturnValue, final long exitDelay, final TimeUnit unit) {
         // check if a void or return method and cast and call appropriate method.
         if (this.history instanceof ControllableVoidMethod) {
-            ((ControllableVoidMethod) this.history).addNormalExit(exitDelay);
+            ((ControllableVoidMethod) this.history).addNormalExit(exitDelay, unit);
         } else if (this.history instanceof ControllableNonVoidMethod) {
-            ((ControllableNonVoidMethod<?, MethodReturnType>) this.history).addNormalExit(withReturnValue, exitDelay);
+            ((ControllableNonVoidMethod<?, MethodReturnType>) this.history).addNormalExit(withReturnValue, exitDelay, unit);
         } else {
             throw new IllegalStateException("God knows whats happened here! The history under test doesn't appear to be a ControllableVoidMethod or ReturnMethodHistory type");
         }
     }
 
+    private void addRepeatedNormalExit(final MethodReturnType withReturnValue, final long times) {
+        if (this.history instanceof ControllableVoidMethod) {
+            ((ControllableVoidMethod) this.history).addRepeatedNormalExit(times);
+        } else {
+            ((ControllableNonVoidMethod<?, MethodReturnType>) this.history).addRepeatedNormalExit(withReturnValue, times);
+        }
+    }
+
+    private void addComputedExit(final Function<Object[], MethodReturnType> computeReturnValue) {
+        if (this.history instanceof ControllableVoidMethod) {
+            ((ControllableVoidMethod<?>) this.history).addComputedExit(new Function<Object[], Void>() {
+                @Override
+                public Void apply(final Object[] arguments) {
+                    computeReturnValue.apply(arguments);
+                    return null;
+                }
+            });
+        } else {
+            ((ControllableNonVoidMethod<?, MethodReturnType>) this.history).addComputedExit(computeReturnValue);
+        }
+    }
+
     private void addNormalExit(final MethodReturnType withReturnValue) {
         this.addNormalExit(withReturnValue, 0);
     }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ControlledMethodTable} creates the right controlled method for each ID (only once), and the {@link ControlledMethodInfo} it is created from.
+ *
+ * @author stevo58008
+ */
+public class ControlledMethodTableTest {
+
+    private final List<ControlledMethodInfo> methods = ControlledMethodInfo.listOf(
+            new ControlledMethodInfo(0, "aVoidMethod", "void", new String[] {}, new String[] {}),
+            new ControlledMethodInfo(1, "aMethod", "java.util.Map<java.lang.String, java.util.List<java.lang.Integer>>",
+                                     new String[] {"java.util.Map<java.lang.String, java.lang.Integer>", "int[]"}, new String[] {"java.io.IOException"}),
+            new ControlledMethodInfo(2, "aThrowingMethod", "void", new String[] {"java.lang.String"},
+                                     new String[] {"java.io.IOException", "java.util.concurrent.TimeoutException"}));
+    private final ControlledMethodTable table = new ControlledMethodTable(this.methods, 5, RecordingLevel.Count);
+
+    @Test
+    public void testEachMethodIsGivenItsIndexAsItsId() {
+        for (int i = 0; i < this.methods.size(); i++) {
+            assertEquals(i, this.methods.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testTheInfoKeepsEachTypeOfTheMethod() {
+        final ControlledMethodInfo method = this.methods.get(1);
+        assertEquals("aMethod", method.getName());
+        assertEquals("java.util.Map<java.lang.String, java.util.List<java.lang.Integer>>", method.getReturnType());
+        assertFalse(method.isVoid());
+        assertEquals(Arrays.asList("java.util.Map<java.lang.String, java.lang.Integer>", "int[]"), method.getParameterTypes());
+        assertEquals(Arrays.asList("java.io.IOException"), method.getCheckedExceptions());
+        assertEquals("java.util.Map<java.lang.String, java.util.List<java.lang.Integer>> aMethod(java.util.Map<java.lang.String, java.lang.Integer>, int[]) " +
+                     "throws java.io.IOException", method.toString());
+    }
+
+    @Test
+    public void testAMethodWithNoParametersOrCheckedExceptions() {
+        final ControlledMethodInfo method = this.methods.get(0);
+        assertTrue(method.isVoid());
+        assertTrue(method.getParameterTypes().isEmpty());
+        assertTrue(method.getCheckedExceptions().isEmpty());
+        assertEquals("void aVoidMethod()", method.toString());
+    }
+
+    @Test
+    public void testTheInfoIsNotChangedByChangingTheArraysItWasCreatedFrom() {
+        final String[] parameterTypes = {"int"};
+        final ControlledMethodInfo method = new ControlledMethodInfo(0, "aMethod", "void", parameterTypes, new String[] {});
+        parameterTypes[0] = "long";
+        assertEquals(Arrays.asList("int"), method.getParameterTypes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEachMethodsIdMustBeItsIndex() {
+        ControlledMethodInfo.listOf(new ControlledMethodInfo(1, "aMethod", "void", new String[] {}, new String[] {}));
+    }
+
+    @Test
+    public void testATableOfSomeOfTheMethodsOnlyHasTheirIds() {
+        final ControlledMethodTable tableOfTheLastMethods = new ControlledMethodTable(this.methods.subList(1, 3));
+        assertEquals(this.methods.subList(1, 3), tableOfTheLastMethods.getMethods());
+        final ControlledNonVoidMethod.Throwing1CheckedException<String, IOException> nonVoid = tableOfTheLastMethods.get(1);
+        assertSame(nonVoid.getControllable(), tableOfTheLastMethods.getControllable(1));
+        assertTrue(tableOfTheLastMethods.get(2) instanceof ControlledVoidMethod.Throwing2CheckedExceptions);
+        try {
+            tableOfTheLastMethods.get(0);
+            fail("the table has no slot for a method it wasn't given");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTheSameControlledMethodIsReturnedForAnIdEachTime() {
+        final ControlledVoidMethod.Throwing0CheckedExceptions controlled = this.table.get(0);
+        assertSame(controlled, this.table.<ControlledVoidMethod.Throwing0CheckedExceptions>get(0));
+    }
+
+    @Test
+    public void testTheSameControllableIsReturnedForAnIdEachTime() {
+        final ControllableMethod<?, ?> controllable = this.table.getControllable(1);
+        assertSame(controllable, this.table.getControllable(1));
+        assertSame(controllable, this.table.<ControlledNonVoidMethod<String>>get(1).getControllable());
+    }
+
+    @Test
+    public void testTheControlledMethodMatchesTheSignature() throws Exception {
+        final ControlledNonVoidMethod.Throwing1CheckedException<String, IOException> nonVoid = this.table.get(1);
+        nonVoid.getControllable().addNormalExit("value");
+        assertEquals("value", nonVoid.exitWithoutArguments());
+
+        final ControlledVoidMethod.Throwing2CheckedExceptions<IOException, TimeoutException> throwing = this.table.get(2);
+        final TimeoutException timeout = new TimeoutException();
+        throwing.getControllable().addCheckedException2Exit(timeout);
+        try {
+            throwing.exit("arg");
+            fail("should have thrown the checked exception");
+        } catch (TimeoutException e) {
+            assertSame(timeout, e);
+        }
+    }
+
+    @Test
+    public void testTheControlledMethodsUseTheTablesHistoryCapacityAndRecordingLevel() {
+        final ControlledVoidMethod.Throwing0CheckedExceptions controlled = this.table.get(0);
+        final ControllableVoidMethod<?> controllable = controlled.getControllable();
+        controllable.addNormalExit();
+        controlled.exitWithoutArguments();
+        assertEquals(1, controllable.getCallCount());
+        assertTrue("only the count is recorded", controllable.getHistory().isEmpty());
+    }
+}
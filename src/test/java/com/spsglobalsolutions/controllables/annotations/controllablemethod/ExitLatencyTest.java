@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ExitLatency} distributions draw latencies of the right shape, and that the same seed always gives the same latencies.
+ *
+ * @author stevo58008
+ */
+public class ExitLatencyTest {
+
+    private static final int DRAWS = 100000;
+
+    @Test
+    public void testTheSameSeedGivesTheSameLatencies() {
+        final ExitLatency latency = ExitLatency.logNormal(1, 0.5, TimeUnit.MILLISECONDS);
+        assertArrayEquals(this.draw(latency, 42), this.draw(latency, 42));
+        assertFalse(Arrays.equals(this.draw(latency, 42), this.draw(latency, 43)));
+    }
+
+    @Test
+    public void testEachThreadDrawsTheSameLatenciesInEveryRunHoweverTheThreadsAreInterleaved() throws InterruptedException {
+        final long[][] firstRun = this.drawFromNamedThreads(ExitLatency.uniform(0, 1000000, TimeUnit.NANOSECONDS), 42);
+        final long[][] secondRun = this.drawFromNamedThreads(ExitLatency.uniform(0, 1000000, TimeUnit.NANOSECONDS), 42);
+        for (int t = 0; t < firstRun.length; t++) {
+            assertArrayEquals("thread " + t, firstRun[t], secondRun[t]);
+        }
+        assertFalse("the threads should draw from different streams", Arrays.equals(firstRun[0], firstRun[1]));
+    }
+
+    @Test
+    public void testAFixedLatencyIsAlwaysTheSame() {
+        for (final long drawn : this.draw(ExitLatency.fixed(250, TimeUnit.MICROSECONDS), 1)) {
+            assertEquals(250000, drawn);
+        }
+    }
+
+    @Test
+    public void testAUniformLatencyCoversTheRange() {
+        final long[] drawn = this.sorted(ExitLatency.uniform(10, 20, TimeUnit.NANOSECONDS));
+        assertEquals(10, drawn[0]);
+        assertEquals(20, drawn[drawn.length - 1]);
+        assertEquals(15, this.percentile(drawn, 50), 1);
+    }
+
+    @Test
+    public void testALogNormalLatencyHasTheMedianAndATail() {
+        final long[] drawn = this.sorted(ExitLatency.logNormal(1000, 0.5, TimeUnit.NANOSECONDS));
+        assertEquals(1000, this.percentile(drawn, 50), 20);
+        // the 99th percentile of a log-normal is the median * e^(2.326 * sigma)
+        assertEquals(1000 * Math.exp(2.326 * 0.5), this.percentile(drawn, 99), 100);
+    }
+
+    @Test
+    public void testAParetoLatencyIsBetweenTheMinimumAndMaximumWithAHeavyTail() {
+        final long[] drawn = this.sorted(ExitLatency.pareto(1000, 1.5, 50000, TimeUnit.NANOSECONDS));
+        assertTrue(drawn[0] >= 1000);
+        assertEquals(50000, drawn[drawn.length - 1]);
+        // the median of a Pareto distribution is the minimum * 2^(1 / shape)
+        assertEquals(1000 * Math.pow(2, 1 / 1.5), this.percentile(drawn, 50), 30);
+    }
+
+    @Test
+    public void testAPercentilesLatencyMatchesTheTable() {
+        final long[] drawn = this.sorted(ExitLatency.percentiles(new double[]{50, 99, 100}, new long[]{2000, 30000, 100000}, TimeUnit.NANOSECONDS));
+        assertEquals(2000, drawn[0]);
+        assertEquals(2000, this.percentile(drawn, 50), 0);
+        assertEquals(16000, this.percentile(drawn, 75), 1000);
+        assertEquals(30000, this.percentile(drawn, 99), 1000);
+        assertTrue(drawn[drawn.length - 1] <= 100000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAPercentilesTableMustEndAt100() {
+        ExitLatency.percentiles(new double[]{50, 99}, new long[]{1, 2}, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAUniformMaximumCannotBeLessThanTheMinimum() {
+        ExitLatency.uniform(2, 1, TimeUnit.MILLISECONDS);
+    }
+
+    private long[] draw(final ExitLatency latency, final long seed) {
+        final SeededRandom random = new SeededRandom(seed);
+        final long[] drawn = new long[DRAWS];
+        for (int i = 0; i < drawn.length; i++) {
+            drawn[i] = latency.nextLatencyInNanos(random);
+        }
+        return drawn;
+    }
+
+    private long[][] drawFromNamedThreads(final ExitLatency latency, final long seed) throws InterruptedException {
+        final ControlledMethodHandler<Integer> handler = new ControlledMethodHandler<>();
+        handler.setExitLatency(latency, seed);
+        final long[][] drawn = new long[4][10000];
+        final Thread[] threads = new Thread[drawn.length];
+        for (int t = 0; t < threads.length; t++) {
+            final long[] drawnByThread = drawn[t];
+            threads[t] = new Thread("latency-drawer-" + t) {
+                @Override
+                public void run() {
+                    for (int i = 0; i < drawnByThread.length; i++) {
+                        drawnByThread[i] = handler.nextExitLatencyInNanos();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        return drawn;
+    }
+
+    private long[] sorted(final ExitLatency latency) {
+        final long[] drawn = this.draw(latency, 12345);
+        Arrays.sort(drawn);
+        return drawn;
+    }
+
+    private double percentile(final long[] sorted, final double percentile) {
+        return sorted[(int) (sorted.length * percentile / 100)];
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.Range;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ExitQueue} keeps the FIFO, "last one is sticky" behaviour, including when used from many threads at once.
+ *
+ * @author stevo58008
+ */
+public class ExitQueueTest {
+
+    private ControlledMethodHandler<Integer> handler;
+    private ExitQueue<Integer> queue;
+
+    @Before
+    public void createEmptyQueue() {
+        this.handler = new ControlledMethodHandler<>();
+        this.queue = new ExitQueue<>();
+        assertNull("a new queue should have no exits", this.queue.next());
+    }
+
+    @Test
+    public void testExitsAreUsedInOrderAndTheLastOneIsNeverRemoved() {
+        final MethodExit<Integer> first = this.exit(1);
+        final MethodExit<Integer> second = this.exit(2);
+        final MethodExit<Integer> third = this.exit(3);
+        this.queue.add(first);
+        this.queue.add(second);
+        this.queue.add(third);
+        assertSame(first, this.queue.next());
+        assertSame(second, this.queue.next());
+        for (int i = 0; i < 5; i++) {
+            assertSame("the last exit should be used as the default", third, this.queue.next());
+        }
+        // adding another moves the default on
+        final MethodExit<Integer> fourth = this.exit(4);
+        this.queue.add(fourth);
+        assertSame(third, this.queue.next());
+        assertSame(fourth, this.queue.next());
+        assertSame(fourth, this.queue.next());
+    }
+
+    @Test
+    public void testClearRemovesAllExitsIncludingTheDefault() {
+        this.queue.add(this.exit(1));
+        this.queue.add(this.exit(2));
+        this.queue.clear();
+        assertNull("there should be no exits left after a clear", this.queue.next());
+        final MethodExit<Integer> afterClear = this.exit(3);
+        this.queue.add(afterClear);
+        assertSame(afterClear, this.queue.next());
+        assertSame(afterClear, this.queue.next());
+    }
+
+    @Test
+    public void testClearingAnEmptyQueueMoreThanOnceLeavesItEmpty() {
+        this.queue.clear();
+        this.queue.clear();
+        assertNull(this.queue.next());
+    }
+
+    @Test
+    public void testConcurrentCallersUseEachNonDefaultExitExactlyOnce() throws Exception {
+        final int numberOfExits = 100000;
+        final int numberOfThreads = 8;
+        for (int i = 0; i < numberOfExits; i++) {
+            this.queue.add(this.exit(i));
+        }
+        final MethodExit<Integer> lastExit = this.exit(-1);
+        this.queue.add(lastExit);
+
+        final Set<MethodExit<Integer>> used = Collections.newSetFromMap(new IdentityHashMap<MethodExit<Integer>, Boolean>());
+        final AtomicInteger duplicates = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[numberOfThreads];
+        for (int t = 0; t < numberOfThreads; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    MethodExit<Integer> exit;
+                    while ((exit = queue.next()) != lastExit) {
+                        synchronized (used) {
+                            if (!used.add(exit)) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("no exit should have been used more than once", 0, duplicates.get());
+        assertEquals("every exit before the default should have been used", numberOfExits, used.size());
+        assertSame(lastExit, this.queue.next());
+    }
+
+    @Test(timeout = 30000)
+    public void testAnExitAddedWhileCallersAreUsingTheDrainedDefaultIsAlwaysPickedUp() throws Exception {
+        final int numberOfThreads = 4;
+        final AtomicReferenceArray<MethodExit<Integer>> lastSeen = new AtomicReferenceArray<>(numberOfThreads);
+        final AtomicBoolean stop = new AtomicBoolean();
+        this.queue.add(this.exit(0));
+        final Thread[] threads = new Thread[numberOfThreads];
+        for (int t = 0; t < numberOfThreads; t++) {
+            final int threadNumber = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    while (!stop.get()) {
+                        lastSeen.set(threadNumber, queue.next());
+                        Thread.yield(); // so the adding thread isn't starved, if there are few cores
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int i = 1; i <= 500; i++) {
+            final MethodExit<Integer> added = this.exit(i);
+            this.queue.add(added);
+            // every caller must move on to it (it becomes the new default), rather than staying on a stale drained default
+            for (int t = 0; t < numberOfThreads; t++) {
+                while (lastSeen.get(t) != added) {
+                    Thread.yield();
+                }
+            }
+        }
+        stop.set(true);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void testASequenceIsUsedUntilItRunsOutAndThenTheNextExitIsUsed() {
+        final MethodExit<Integer> after = this.exit(99);
+        this.queue.add(this.sequence(1, 2, 3));
+        this.queue.add(after);
+        assertEquals(Integer.valueOf(1), this.queue.next().getByReturnValue());
+        assertEquals(Integer.valueOf(2), this.queue.next().getByReturnValue());
+        assertEquals(Integer.valueOf(3), this.queue.next().getByReturnValue());
+        assertSame(after, this.queue.next());
+        assertSame(after, this.queue.next());
+    }
+
+    @Test
+    public void testTheLastExitOfASequenceIsTheDefaultIfNothingFollowsIt() {
+        this.queue.add(this.sequence(1, 2));
+        assertEquals(Integer.valueOf(1), this.queue.next().getByReturnValue());
+        final MethodExit<Integer> last = this.queue.next();
+        assertEquals(Integer.valueOf(2), last.getByReturnValue());
+        assertSame(last, this.queue.next());
+        assertSame(last, this.queue.next());
+    }
+
+    @Test
+    public void testAnEmptySequenceIsSkipped() {
+        final MethodExit<Integer> after = this.exit(99);
+        this.queue.add(this.sequence());
+        assertNull("an empty sequence on its own has no exits", this.queue.next());
+        this.queue.add(after);
+        assertSame(after, this.queue.next());
+    }
+
+    @Test
+    public void testASequenceFromASupplierNeverRunsOut() {
+        final AtomicInteger counter = new AtomicInteger();
+        this.queue.add(new GeneratedExitSequence<>(this.handler, GeneratedExitSequence.fromSupplier(new Supplier<Integer>() {
+            @Override
+            public Integer get() {
+                return counter.incrementAndGet();
+            }
+        })));
+        this.queue.add(this.exit(99));
+        for (int i = 1; i <= 1000; i++) {
+            assertEquals(Integer.valueOf(i), this.queue.next().getByReturnValue());
+        }
+    }
+
+    @Test
+    public void testConcurrentCallersEachTakeADifferentValueFromASequence() throws Exception {
+        final int numberOfValues = 100000;
+        final int numberOfThreads = 8;
+        final MethodExit<Integer> lastExit = this.exit(-1);
+        this.queue.add(new GeneratedExitSequence<>(this.handler, ContiguousSet.create(Range.closedOpen(0, numberOfValues), DiscreteDomain.integers()).iterator()));
+        this.queue.add(lastExit);
+
+        final AtomicIntegerArray timesUsed = new AtomicIntegerArray(numberOfValues);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[numberOfThreads];
+        for (int t = 0; t < numberOfThreads; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    MethodExit<Integer> exit;
+                    while ((exit = queue.next()) != lastExit) {
+                        timesUsed.incrementAndGet(exit.getByReturnValue());
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < numberOfValues; i++) {
+            assertEquals("value " + i + " should have been used exactly once", 1, timesUsed.get(i));
+        }
+    }
+
+    @Test
+    public void testARepeatedExitCostsTheSameHoweverManyCallsItIsFor() {
+        final MethodExit<Integer> exit = this.exit(1);
+        this.queue.add(new RepeatedExit<>(this.handler, exit, Long.MAX_VALUE));
+        this.queue.add(this.exit(2));
+        for (int i = 0; i < 1000; i++) {
+            assertSame("each use should be the same exit", exit, this.queue.next());
+        }
+    }
+
+    @Test
+    public void testAListOfValuesIsStoredAsRunsOfEqualValues() {
+        this.handler.addNormalExits(Arrays.asList(1, 1, 1, 2, 3, 3));
+        final MethodExit<Integer> firstRun = this.handler.getNextExit(new Object[0]);
+        assertSame(firstRun, this.handler.getNextExit(new Object[0]));
+        assertSame(firstRun, this.handler.getNextExit(new Object[0]));
+        assertEquals(Integer.valueOf(1), firstRun.getByReturnValue());
+        assertEquals(Integer.valueOf(2), this.handler.getNextExit(new Object[0]).getByReturnValue());
+        final MethodExit<Integer> lastRun = this.handler.getNextExit(new Object[0]);
+        assertEquals(Integer.valueOf(3), lastRun.getByReturnValue());
+        for (int i = 0; i < 3; i++) {
+            assertSame("the last run should be the default", lastRun, this.handler.getNextExit(new Object[0]));
+        }
+    }
+
+    @Test
+    public void testConcurrentCallersUseEachExitOfACycleEqually() throws Exception {
+        final int callsPerThread = 30000;
+        final int numberOfThreads = 8;
+        final List<MethodExit<Integer>> cycle = Arrays.asList(this.exit(0), this.exit(1), this.exit(2));
+        this.queue.add(new CyclicExits<>(this.handler, cycle));
+
+        final AtomicIntegerArray timesUsed = new AtomicIntegerArray(cycle.size());
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[numberOfThreads];
+        for (int t = 0; t < numberOfThreads; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < callsPerThread; i++) {
+                        timesUsed.incrementAndGet(queue.next().getByReturnValue());
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < cycle.size(); i++) {
+            assertEquals("exit " + i, callsPerThread * numberOfThreads / cycle.size(), timesUsed.get(i));
+        }
+    }
+
+    private MethodExit<Integer> exit(final int value) {
+        return new MethodExit<>(this.handler, value, 0);
+    }
+
+    private ExitSequence<Integer> sequence(final Integer... values) {
+        return new GeneratedExitSequence<>(this.handler, Arrays.asList(values).iterator());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests a {@link RuntimeControllable} can be configured, and records its calls, in the same way as a generated controllable.
+ *
+ * @author stevo58008
+ */
+public class RuntimeControllableTest {
+
+    public interface Repository {
+
+        String load(int id) throws IOException;
+
+        String load(String name);
+
+        void save(String value);
+
+        int count();
+    }
+
+    public interface AuditedRepository extends Repository, Comparable<String> {
+
+        List<String> history(List<Integer> ids);
+    }
+
+    private final RuntimeControllable<Repository> repository = RuntimeControllable.of(Repository.class);
+
+    @Test
+    public void testANonVoidMethodReturnsItsExitsAndRecordsItsCalls() throws Exception {
+        final ControllableNonVoidMethod<?, String> loadByName = this.repository.method("load", String.class);
+        loadByName.addNormalExit("first").addNormalExit("second");
+        assertEquals("first", this.repository.get().load("a"));
+        assertEquals("second", this.repository.get().load("b"));
+        assertEquals(2, loadByName.getCallCount());
+        assertArrayEquals(new Object[]{"b"}, loadByName.getHistory().get(1).getArguments());
+    }
+
+    @Test
+    public void testTheSameViewOfAMethodIsReturnedEachTime() {
+        final ControllableVoidMethod<?> save = this.repository.method("save", String.class);
+        assertSame(save, this.repository.method("save", String.class));
+    }
+
+    @Test
+    public void testAPrimitiveReturnIsUnboxed() {
+        this.repository.<ControllableNonVoidMethod<?, Integer>>method("count").addNormalExit(3);
+        assertEquals(3, this.repository.get().count());
+    }
+
+    @Test
+    public void testAVoidMethodCanThrowAnUncheckedException() {
+        final IllegalStateException exception = new IllegalStateException();
+        this.repository.<ControllableVoidMethod<?>>method("save", String.class).addUncheckedExceptionExit(exception);
+        try {
+            this.repository.get().save("value");
+            fail("should have thrown the unchecked exception");
+        } catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+    }
+
+    @Test
+    public void testAMethodCanThrowItsCheckedException() {
+        final IOException exception = new IOException();
+        this.repository.<ControllableNonVoidMethod.Throwing1CheckedException<?, String, IOException>>method("load", int.class)
+                       .addCheckedException1Exit(exception);
+        try {
+            this.repository.get().load(1);
+            fail("should have thrown the checked exception");
+        } catch (IOException e) {
+            assertSame(exception, e);
+        }
+    }
+
+    @Test(expected = ControllableMethodException.class)
+    public void testCallingAMethodWithNoExitsFails() throws Exception {
+        this.repository.get().load(1);
+    }
+
+    @Test
+    public void testEachControllableHasItsOwnMethods() {
+        final RuntimeControllable<Repository> another = RuntimeControllable.of(Repository.class);
+        this.repository.<ControllableNonVoidMethod<?, Integer>>method("count").addNormalExit(1);
+        another.<ControllableNonVoidMethod<?, Integer>>method("count").addNormalExit(2);
+        assertEquals(1, this.repository.get().count());
+        assertEquals(2, another.get().count());
+        assertEquals(1, this.repository.method("count").getCallCount());
+    }
+
+    @Test
+    public void testTheMethodsAreGivenIdsInOrderOfTheirSignatures() {
+        final List<ControlledMethodInfo> methods = RuntimeControllable.of(AuditedRepository.class).getMethods();
+        assertEquals(6, methods.size());
+        assertEquals("int compareTo(T)", methods.get(0).toString());
+        assertEquals("java.util.List<java.lang.String> history(java.util.List<java.lang.Integer>)", methods.get(2).toString());
+        assertEquals("java.lang.String load(int) throws java.io.IOException", methods.get(3).toString());
+        for (int i = 0; i < methods.size(); i++) {
+            assertEquals(i, methods.get(i).getId());
+        }
+    }
+
+    @Test
+    public void testObjectMethodsAreNotControlled() {
+        final Repository instance = this.repository.get();
+        assertEquals(instance, instance);
+        assertFalse(instance.equals(RuntimeControllable.of(Repository.class).get()));
+        assertEquals(System.identityHashCode(instance), instance.hashCode());
+        assertTrue(instance.toString().startsWith("RuntimeControllable of " + Repository.class.getName()));
+    }
+
+    @Test
+    public void testTheHistoryCapacityAndRecordingLevelAreUsed() {
+        final RuntimeControllable<Repository> counting = RuntimeControllable.of(Repository.class, 1, RecordingLevel.Count);
+        final ControllableVoidMethod<?> save = counting.method("save", String.class);
+        save.addNormalExit().addNormalExit();
+        counting.get().save("a");
+        counting.get().save("b");
+        assertEquals(2, save.getCallCount());
+        assertTrue(save.getHistory().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOnlyAnInterfaceCanBeControlled() {
+        RuntimeControllable.of(Object.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAMethodWhichIsNotOnTheInterfaceCannotBeConfigured() {
+        this.repository.method("load", long.class);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import com.google.common.base.Strings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests exit scripts written by the {@link ExitScriptWriter} are replayed by the {@link ScriptedExitSequence}, including when they are much bigger than the mapped window.
+ *
+ * @author stevo58008
+ */
+public class ScriptedExitSequenceTest {
+
+    private static final int SMALL_WINDOW = 64;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ControlledMethodHandler<String> handler = new ControlledMethodHandler<>();
+
+    @Test
+    public void testEachKindOfExitIsReplayedInOrder() throws Exception {
+        final Path script = this.newScript();
+        try (ExitScriptWriter<String> writer = new ExitScriptWriter<>(script, ExitValueCodecs.strings())) {
+            writer.writeNormalExit("first")
+                    .writeNormalExit(null, 5, TimeUnit.MILLISECONDS)
+                    .writeUncheckedExceptionExit(new IllegalStateException("broken"), 7, TimeUnit.MICROSECONDS)
+                    .writeUncheckedExceptionExit(new UnsupportedOperationException());
+        }
+        final ExitSequence<String> sequence = new ScriptedExitSequence<>(this.handler, script, ExitValueCodecs.strings(), SMALL_WINDOW);
+
+        assertEquals("first", sequence.take().getByReturnValue());
+        final MethodExit<String> nullExit = sequence.take();
+        assertEquals(MethodExit.Exited.Normally, nullExit.getHowItExited());
+        assertNull(nullExit.getByReturnValue());
+        final MethodExit<String> exceptionExit = sequence.take();
+        assertEquals(IllegalStateException.class, exceptionExit.getByUncheckedException().getClass());
+        assertEquals("broken", exceptionExit.getByUncheckedException().getMessage());
+        final MethodExit<String> noMessageExit = sequence.take();
+        assertEquals(UnsupportedOperationException.class, noMessageExit.getByUncheckedException().getClass());
+        assertNull(noMessageExit.getByUncheckedException().getMessage());
+        assertNull("the script should have run out", sequence.take());
+        assertNull(sequence.take());
+        assertSame(noMessageExit, sequence.getLastExit());
+    }
+
+    @Test
+    public void testAScriptMuchBiggerThanTheWindowIsReplayedInFull() throws Exception {
+        final Path script = this.newScript();
+        final int numberOfExits = 10000;
+        final String bigValue = Strings.repeat("x", SMALL_WINDOW * 3); // can't fit in the window at all
+        try (ExitScriptWriter<String> writer = new ExitScriptWriter<>(script, ExitValueCodecs.strings())) {
+            for (int i = 0; i < numberOfExits; i++) {
+                writer.writeNormalExit(i % 100 == 0 ? bigValue : Integer.toString(i));
+            }
+        }
+        final ExitSequence<String> sequence = new ScriptedExitSequence<>(this.handler, script, ExitValueCodecs.strings(), SMALL_WINDOW);
+        for (int i = 0; i < numberOfExits; i++) {
+            assertEquals(i % 100 == 0 ? bigValue : Integer.toString(i), sequence.take().getByReturnValue());
+        }
+        assertNull(sequence.take());
+    }
+
+    @Test
+    public void testConcurrentCallersEachReplayADifferentExit() throws Exception {
+        final Path script = this.newScript();
+        final int numberOfExits = 50000;
+        final int numberOfThreads = 8;
+        try (ExitScriptWriter<Integer> writer = new ExitScriptWriter<>(script, ExitValueCodecs.integers())) {
+            for (int i = 0; i < numberOfExits; i++) {
+                writer.writeNormalExit(i);
+            }
+        }
+        final ExitSequence<Integer> sequence =
+                new ScriptedExitSequence<>(new ControlledMethodHandler<Integer>(), script, ExitValueCodecs.integers(), SMALL_WINDOW);
+
+        final AtomicIntegerArray timesUsed = new AtomicIntegerArray(numberOfExits);
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[numberOfThreads];
+        for (int t = 0; t < numberOfThreads; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    MethodExit<Integer> exit;
+                    while ((exit = sequence.take()) != null) {
+                        timesUsed.incrementAndGet(exit.getByReturnValue());
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < numberOfExits; i++) {
+            assertEquals("exit " + i + " should have been used exactly once", 1, timesUsed.get(i));
+        }
+    }
+
+    @Test
+    public void testTheHandlerReplaysTheScriptAndKeepsTheLastExitAsTheDefault() throws Exception {
+        final Path script = this.newScript();
+        try (ExitScriptWriter<String> writer = new ExitScriptWriter<>(script, ExitValueCodecs.strings())) {
+            writer.writeNormalExit("a").writeNormalExit("b");
+        }
+        this.handler.addScriptedExits(script, ExitValueCodecs.strings());
+        assertEquals("a", this.handler.getNextExit(new Object[0]).getByReturnValue());
+        assertEquals("b", this.handler.getNextExit(new Object[0]).getByReturnValue());
+        assertEquals("b", this.handler.getNextExit(new Object[0]).getByReturnValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAFileWhichIsNotAnExitScriptIsRejected() throws Exception {
+        final Path notAScript = this.newScript();
+        Files.write(notAScript, "this is not an exit script".getBytes("UTF-8"));
+        new ScriptedExitSequence<>(this.handler, notAScript, ExitValueCodecs.strings(), SMALL_WINDOW);
+    }
+
+    @Test(expected = ControllableMethodException.class)
+    public void testAnExceptionWhichCannotBeRecreatedFailsTheCall() throws Exception {
+        final Path script = this.newScript();
+        try (ExitScriptWriter<String> writer = new ExitScriptWriter<>(script, ExitValueCodecs.strings())) {
+            writer.writeUncheckedExceptionExit(new NoMessageConstructorException());
+        }
+        new ScriptedExitSequence<>(this.handler, script, ExitValueCodecs.strings(), SMALL_WINDOW).take();
+    }
+
+    private Path newScript() throws IOException {
+        return this.folder.newFile().toPath();
+    }
+
+    public static class NoMessageConstructorException extends RuntimeException {
+    }
+}
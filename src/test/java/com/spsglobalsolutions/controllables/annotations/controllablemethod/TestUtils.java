@@ -28,6 +28,7 @@ public class TestUtils {
 
     public static long EXPECTED_MS_CALL_TIME_TOLLERENCE = 10; // its hard to guess this, so better to use higher value.
 
+    @SuppressWarnings("unchecked") // the cast is erased, so a wrong type only fails where the value is used
     public static <T> T castTo(Object toCast) {
         try {
             return (T) toCast;
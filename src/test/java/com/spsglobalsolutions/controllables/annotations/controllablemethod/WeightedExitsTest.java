@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.annotations.controllablemethod;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link WeightedExits} choose each exit in proportion to its weight, and that the same seed always chooses the same exits.
+ *
+ * @author stevo58008
+ */
+public class WeightedExitsTest {
+
+    private static final int CHOICES = 200000;
+
+    private final ControlledMethodHandler<Integer> handler = new ControlledMethodHandler<>();
+    private final List<MethodExit<Integer>> exits = Arrays.asList(this.exit(0), this.exit(1), this.exit(2), this.exit(3));
+
+    @Test
+    public void testEachExitIsChosenInProportionToItsWeight() {
+        final int[] weights = {970, 20, 10, 0};
+        final int[] timesChosen = this.choose(new WeightedExits<>(this.exits, weights, 7));
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals("exit " + i, weights[i] / 1000.0, timesChosen[i] / (double) CHOICES, 0.002);
+        }
+        assertEquals("an exit with no weight should never be chosen", 0, timesChosen[3]);
+    }
+
+    @Test
+    public void testTheSameSeedChoosesTheSameExits() {
+        final int[] weights = {1, 2, 3, 4};
+        final WeightedExits<Integer> first = new WeightedExits<>(this.exits, weights, 99);
+        final WeightedExits<Integer> second = new WeightedExits<>(this.exits, weights, 99);
+        for (int i = 0; i < 1000; i++) {
+            assertSame(first.next(), second.next());
+        }
+    }
+
+    @Test
+    public void testEachThreadChoosesTheSameExitsWhateverOrderTheThreadsArriveIn() throws InterruptedException {
+        final int[] weights = {1, 2, 3, 4};
+        final int[][] firstRun = this.chooseFromNamedThreads(new WeightedExits<>(this.exits, weights, 99), false);
+        final int[][] secondRun = this.chooseFromNamedThreads(new WeightedExits<>(this.exits, weights, 99), true);
+        for (int t = 0; t < firstRun.length; t++) {
+            assertArrayEquals("thread " + t, firstRun[t], secondRun[t]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThereMustBeAWeightForEachExit() {
+        new WeightedExits<>(this.exits, new int[]{1, 2, 3}, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTheWeightsCannotAllBeZero() {
+        new WeightedExits<>(this.exits, new int[]{0, 0, 0, 0}, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAWeightCannotBeNegative() {
+        new WeightedExits<>(this.exits, new int[]{1, -1, 1, 1}, 0);
+    }
+
+    private int[][] chooseFromNamedThreads(final WeightedExits<Integer> weightedExits, final boolean startInReverse) throws InterruptedException {
+        final int[][] chosen = new int[4][1000];
+        for (int n = 0; n < chosen.length; n++) {
+            final int t = startInReverse ? chosen.length - 1 - n : n;
+            final int[] chosenByThread = chosen[t];
+            final Thread thread = new Thread("exit-chooser-" + t) {
+                @Override
+                public void run() {
+                    for (int i = 0; i < chosenByThread.length; i++) {
+                        chosenByThread[i] = weightedExits.next().getByReturnValue();
+                    }
+                }
+            };
+            thread.start();
+            thread.join(); // one at a time, so the order they first choose in is the order they are started in
+        }
+        return chosen;
+    }
+
+    private int[] choose(final WeightedExits<Integer> weightedExits) {
+        final int[] timesChosen = new int[this.exits.size()];
+        for (int i = 0; i < CHOICES; i++) {
+            timesChosen[weightedExits.next().getByReturnValue()]++;
+        }
+        return timesChosen;
+    }
+
+    private MethodExit<Integer> exit(final int value) {
+        return new MethodExit<>(this.handler, value, 0);
+    }
+}
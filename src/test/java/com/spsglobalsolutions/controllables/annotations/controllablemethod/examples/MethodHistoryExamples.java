@@ -43,53 +43,63 @@ public class MethodHistoryExamples {
 
     // ACCESSORS ****************************************************
     public ControllableVoidMethod<?> getVoidMethodNoArgs_history() {
-        return this.voidMethodNoArgs_history.createControllable();
+        return this.voidMethodNoArgs_history.getControllable();
     }
 
     public ControllableVoidMethod<?> getVoidMethod_history() {
-        return this.voidMethod_history.createControllable();
+        return this.voidMethod_history.getControllable();
     }
 
     public ControllableVoidMethod.Throwing2CheckedExceptions<?, IOException, JAXBException> getVoidMethodWithCheckedException_history() {
-        return this.voidMethodWithCheckedException_history.createControllable();
+        return this.voidMethodWithCheckedException_history.getControllable();
     }
 
     public ControllableNonVoidMethod<?, String> getStringReturnMethodNoArgs_history() {
-        return this.stringReturnMethodNoArgs_history.createControllable();
+        return this.stringReturnMethodNoArgs_history.getControllable();
     }
 
     public ControllableNonVoidMethod<?, String> getStringReturnMethod_history() {
-        return this.stringReturnMethod_history.createControllable();
+        return this.stringReturnMethod_history.getControllable();
     }
 
     public ControllableNonVoidMethod.Throwing2CheckedExceptions<?, String, IOException, JAXBException> getStringReturnMethodWithCheckedException_history() {
-        return this.stringReturnMethodWithCheckedException_history.createControllable();
+        return this.stringReturnMethodWithCheckedException_history.getControllable();
     }
 
 
     // CONTROLLED METHODS ****************************************************
 
     public void voidMethodNoArgs() {
-        this.voidMethodNoArgs_history.exit();
+        this.voidMethodNoArgs_history.exitWithoutArguments();
     }
 
     public void voidMethod(final String arg1) {
-        this.voidMethod_history.exit(arg1);
+        if (this.voidMethod_history.isUsingArguments()) {
+            this.voidMethod_history.exit(arg1);
+        } else {
+            this.voidMethod_history.exitWithoutArguments();
+        }
     }
 
     public void voidMethodWithCheckedException(final String arg1) throws IOException, JAXBException {
-        this.voidMethodWithCheckedException_history.exit(arg1);
+        if (this.voidMethodWithCheckedException_history.isUsingArguments()) {
+            this.voidMethodWithCheckedException_history.exit(arg1);
+        } else {
+            this.voidMethodWithCheckedException_history.exitWithoutArguments();
+        }
     }
 
     public String stringReturnMethodNoArgs() {
-        return this.stringReturnMethodNoArgs_history.exit();
+        return this.stringReturnMethodNoArgs_history.exitWithoutArguments();
     }
 
     public String stringReturnMethod(final String arg1) {
-        return this.stringReturnMethod_history.exit(arg1);
+        return this.stringReturnMethod_history.isUsingArguments() ? this.stringReturnMethod_history.exit(arg1) : this.stringReturnMethod_history.exitWithoutArguments();
     }
 
     public String stringReturnMethodWithCheckedException(final String arg1) throws IOException, JAXBException {
-        return this.stringReturnMethodWithCheckedException_history.exit(arg1);
+        return this.stringReturnMethodWithCheckedException_history.isUsingArguments() ?
+               this.stringReturnMethodWithCheckedException_history.exit(arg1) :
+               this.stringReturnMethodWithCheckedException_history.exitWithoutArguments();
     }
 }
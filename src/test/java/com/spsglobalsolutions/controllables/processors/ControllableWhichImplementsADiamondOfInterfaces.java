@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.processors;
+
+import com.spsglobalsolutions.controllables.annotations.Controllable;
+
+/**
+ * Implements {@link SomeInterfaceA} by two paths (through both C and D), so it must only be controlled once.
+ *
+ * @author stevo58008
+ */
+@Controllable
+public abstract class ControllableWhichImplementsADiamondOfInterfaces
+        implements SomeInterfaceCWhichExtendsAnotherInterface, SomeInterfaceDWhichAlsoExtendsInterfaceA {
+
+    public final static ControllableWhichImplementsADiamondOfInterfaces instance() {
+        return new Controllable_ControllableWhichImplementsADiamondOfInterfaces();
+    }
+}
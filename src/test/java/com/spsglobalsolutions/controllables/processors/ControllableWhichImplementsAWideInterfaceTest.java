@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.processors;
+
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.MethodExit;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the controllable generated for {@link ControllableWhichImplementsAWideInterface} (which has more than the 256 controlled methods kept in each holder class) spreads
+ * its controlled methods over holder classes, and that the methods kept in a later holder work through the controllable just like the others.
+ *
+ * @author stevo58008
+ */
+public class ControllableWhichImplementsAWideInterfaceTest {
+
+    private static final String GENERATED = "com.spsglobalsolutions.controllables.processors.Controllable_ControllableWhichImplementsAWideInterface";
+
+    private final Controllable_ControllableWhichImplementsAWideInterface controllable =
+            (Controllable_ControllableWhichImplementsAWideInterface) ControllableWhichImplementsAWideInterface.instance();
+
+    @Test
+    public void testTheControlledMethodsAreSpreadOverTwoHolders() throws Exception {
+        assertEquals(256, Class.forName(GENERATED + "$ControlledMethodsHolder0").getDeclaredFields().length);
+        final Class<?> secondHolder = Class.forName(GENERATED + "$ControlledMethodsHolder1");
+        assertNotNull("a method past the first 256 should be in the second holder", secondHolder.getDeclaredField("aControlled_method299"));
+        try {
+            Class.forName(GENERATED + "$ControlledMethodsHolder2");
+            fail("the methods should fit in two holders");
+        } catch (final ClassNotFoundException expected) {
+            // as expected
+        }
+    }
+
+    @Test
+    public void testAMethodInTheSecondHolderWorksThroughTheControllable() throws Exception {
+        final IOException toThrow = new IOException("method299");
+        this.controllable.aControlled_method299().addNormalExit(42L).addCheckedException1Exit(toThrow);
+        assertEquals(42L, this.controllable.method299(7L));
+        assertEquals(1, this.controllable.aControlled_method299().getCallCount());
+        assertArrayEquals(new Object[]{7L}, this.controllable.aControlled_method299().getHistory().get(0).getArguments());
+        try {
+            this.controllable.method299(8L);
+            fail("the checked exception exit should have been used");
+        } catch (final IOException e) {
+            assertSame(toThrow, e);
+        }
+        assertEquals(MethodExit.Exited.ByCheckedException, this.controllable.aControlled_method299().getHistory().get(1).getExit().getHowItExited());
+    }
+
+    @Test
+    public void testTheMethodsInEachHolderAreControlledSeparately() {
+        this.controllable.aControlled_method000_int().addNormalExit("first holder");
+        this.controllable.aControlled_method299().addNormalExit(299L);
+        assertEquals("first holder", this.controllable.method000(0));
+        assertEquals(0, this.controllable.aControlled_method299().getCallCount());
+        assertEquals(1, this.controllable.aControlled_method000_int().getCallCount());
+    }
+}
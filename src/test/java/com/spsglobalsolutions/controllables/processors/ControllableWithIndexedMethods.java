@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.processors;
+
+import com.spsglobalsolutions.controllables.annotations.Controllable;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * @author stevo58008
+ */
+@Controllable(indexedMethods = true, historyCapacity = 10)
+public abstract class ControllableWithIndexedMethods
+        implements InterfaceWithOverLoadedMethods, InterfaceWithGenerics<String, Map<String, Integer>> {
+
+    public static void aStaticVoidMethod() {}
+
+    public abstract long aMethodThrowingCheckedExceptions(int arg) throws IOException, InterruptedException;
+
+    public final static ControllableWithIndexedMethods instance() {
+        return new Controllable_ControllableWithIndexedMethods();
+    }
+}
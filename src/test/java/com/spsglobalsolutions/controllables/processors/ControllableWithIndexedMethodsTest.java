@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.processors;
+
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.ControlledMethodInfo;
+import com.spsglobalsolutions.controllables.annotations.controllablemethod.MethodExit;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the controllable generated for {@link ControllableWithIndexedMethods} (which keeps its controlled methods in tables, by ID) is controlled through its accessors
+ * just like one with a field per method, and that its {@code METHOD_ID_...} constants find each method's info.
+ *
+ * @author stevo58008
+ */
+public class ControllableWithIndexedMethodsTest {
+
+    private final Controllable_ControllableWithIndexedMethods controllable =
+            (Controllable_ControllableWithIndexedMethods) ControllableWithIndexedMethods.instance();
+
+    @Test
+    public void testEachMethodIdFindsTheInfoOfItsMethod() {
+        assertEquals(11, Controllable_ControllableWithIndexedMethods.CONTROLLED_METHODS.size());
+        final ControlledMethodInfo overload =
+                Controllable_ControllableWithIndexedMethods.CONTROLLED_METHODS.get(Controllable_ControllableWithIndexedMethods.METHOD_ID_booleanMethod_Stringint);
+        assertEquals(Controllable_ControllableWithIndexedMethods.METHOD_ID_booleanMethod_Stringint, overload.getId());
+        assertEquals("boolean booleanMethod(java.lang.String, int)", overload.toString());
+        final ControlledMethodInfo throwing =
+                Controllable_ControllableWithIndexedMethods.CONTROLLED_METHODS.get(Controllable_ControllableWithIndexedMethods.METHOD_ID_aMethodThrowingCheckedExceptions);
+        assertEquals("aMethodThrowingCheckedExceptions", throwing.getName());
+        assertEquals(Arrays.asList("java.io.IOException", "java.lang.InterruptedException"), throwing.getCheckedExceptions());
+    }
+
+    @Test
+    public void testTheStaticMethodIsGivenTheFirstId() {
+        assertEquals(0, Controllable_ControllableWithIndexedMethods.METHOD_ID_aStaticVoidMethod);
+        assertTrue(Controllable_ControllableWithIndexedMethods.CONTROLLED_METHODS.get(0).isVoid());
+    }
+
+    @Test
+    public void testEachOverloadIsControlledSeparatelyThroughItsAccessor() {
+        this.controllable.aControlled_booleanMethod_String().addNormalExit(true);
+        this.controllable.aControlled_booleanMethod_Stringint().addNormalExit(false);
+        assertTrue(this.controllable.booleanMethod("one"));
+        assertFalse(this.controllable.booleanMethod("two", 2));
+        assertFalse(this.controllable.booleanMethod("three", 3));
+        assertEquals(1, this.controllable.aControlled_booleanMethod_String().getCallCount());
+        assertEquals(2, this.controllable.aControlled_booleanMethod_Stringint().getCallCount());
+        assertEquals(0, this.controllable.aControlled_booleanMethod().getCallCount());
+        assertArrayEquals(new Object[]{"three", 3}, this.controllable.aControlled_booleanMethod_Stringint().getHistory().get(1).getArguments());
+    }
+
+    @Test
+    public void testACheckedExceptionExitOfAnIndexedMethod() throws Exception {
+        final InterruptedException toThrow = new InterruptedException();
+        this.controllable.aControlled_aMethodThrowingCheckedExceptions().addNormalExit(5L).addCheckedException2Exit(toThrow);
+        assertEquals(5L, this.controllable.aMethodThrowingCheckedExceptions(1));
+        try {
+            this.controllable.aMethodThrowingCheckedExceptions(2);
+            fail("the checked exception exit should have been used");
+        } catch (final InterruptedException e) {
+            assertSame(toThrow, e);
+        }
+        assertEquals(MethodExit.Exited.ByCheckedException,
+                     this.controllable.aControlled_aMethodThrowingCheckedExceptions().getHistory().get(1).getExit().getHowItExited());
+    }
+
+    @Test
+    public void testTheHistoryCapacityIsUsedByTheIndexedMethods() {
+        this.controllable.aControlled_voidMethod_String().addNormalExit();
+        for (int i = 0; i < 12; i++) {
+            this.controllable.voidMethod("call " + i);
+        }
+        assertEquals(12, this.controllable.aControlled_voidMethod_String().getCallCount());
+        assertEquals(10, this.controllable.aControlled_voidMethod_String().getHistory().size());
+    }
+
+    @Test
+    public void testEachInstanceHasItsOwnInstanceMethodsButSharesTheStaticMethods() {
+        final Controllable_ControllableWithIndexedMethods another =
+                (Controllable_ControllableWithIndexedMethods) ControllableWithIndexedMethods.instance();
+        assertNotSame(this.controllable.aControlled_voidMethod(), another.aControlled_voidMethod());
+        assertSame(this.controllable.aControlled_aStaticVoidMethod(), another.aControlled_aStaticVoidMethod());
+
+        this.controllable.aControlled_aStaticVoidMethod().addNormalExit();
+        final long callsBefore = another.aControlled_aStaticVoidMethod().getCallCount();
+        ControllableWithIndexedMethods.aStaticVoidMethod();
+        assertEquals("the call goes to the generated class's static method, through its own table", callsBefore, another.aControlled_aStaticVoidMethod().getCallCount());
+        Controllable_ControllableWithIndexedMethods.aStaticVoidMethod();
+        assertEquals(callsBefore + 1, another.aControlled_aStaticVoidMethod().getCallCount());
+    }
+}
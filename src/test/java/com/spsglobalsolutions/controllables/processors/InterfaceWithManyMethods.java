@@ -0,0 +1,629 @@
+/*
+ * Copyright (c) 2016 SPS Global Solutions Ltd
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.spsglobalsolutions.controllables.processors;
+
+import java.io.IOException;
+
+/**
+ * An interface with more methods than the controllable can keep the fields for in one class, so they are split up between holder classes.
+ *
+ * @author stevo58008
+ */
+public interface InterfaceWithManyMethods {
+
+    String method000(String arg);
+
+    String method000(int arg);
+
+    void method001();
+
+    long method002(long arg) throws IOException;
+
+    String method003(int arg);
+
+    void method004();
+
+    long method005(long arg) throws IOException;
+
+    String method006(int arg);
+
+    void method007();
+
+    long method008(long arg) throws IOException;
+
+    String method009(int arg);
+
+    void method010();
+
+    long method011(long arg) throws IOException;
+
+    String method012(int arg);
+
+    void method013();
+
+    long method014(long arg) throws IOException;
+
+    String method015(int arg);
+
+    void method016();
+
+    long method017(long arg) throws IOException;
+
+    String method018(int arg);
+
+    void method019();
+
+    long method020(long arg) throws IOException;
+
+    String method021(int arg);
+
+    void method022();
+
+    long method023(long arg) throws IOException;
+
+    String method024(int arg);
+
+    void method025();
+
+    long method026(long arg) throws IOException;
+
+    String method027(int arg);
+
+    void method028();
+
+    long method029(long arg) throws IOException;
+
+    String method030(int arg);
+
+    void method031();
+
+    long method032(long arg) throws IOException;
+
+    String method033(int arg);
+
+    void method034();
+
+    long method035(long arg) throws IOException;
+
+    String method036(int arg);
+
+    void method037();
+
+    long method038(long arg) throws IOException;
+
+    String method039(int arg);
+
+    void method040();
+
+    long method041(long arg) throws IOException;
+
+    String method042(int arg);
+
+    void method043();
+
+    long method044(long arg) throws IOException;
+
+    String method045(int arg);
+
+    void method046();
+
+    long method047(long arg) throws IOException;
+
+    String method048(int arg);
+
+    void method049();
+
+    long method050(long arg) throws IOException;
+
+    String method051(int arg);
+
+    void method052();
+
+    long method053(long arg) throws IOException;
+
+    String method054(int arg);
+
+    void method055();
+
+    long method056(long arg) throws IOException;
+
+    String method057(int arg);
+
+    void method058();
+
+    long method059(long arg) throws IOException;
+
+    String method060(int arg);
+
+    void method061();
+
+    long method062(long arg) throws IOException;
+
+    String method063(int arg);
+
+    void method064();
+
+    long method065(long arg) throws IOException;
+
+    String method066(int arg);
+
+    void method067();
+
+    long method068(long arg) throws IOException;
+
+    String method069(int arg);
+
+    void method070();
+
+    long method071(long arg) throws IOException;
+
+    String method072(int arg);
+
+    void method073();
+
+    long method074(long arg) throws IOException;
+
+    String method075(int arg);
+
+    void method076();
+
+    long method077(long arg) throws IOException;
+
+    String method078(int arg);
+
+    void method079();
+
+    long method080(long arg) throws IOException;
+
+    String method081(int arg);
+
+    void method082();
+
+    long method083(long arg) throws IOException;
+
+    String method084(int arg);
+
+    void method085();
+
+    long method086(long arg) throws IOException;
+
+    String method087(int arg);
+
+    void method088();
+
+    long method089(long arg) throws IOException;
+
+    String method090(int arg);
+
+    void method091();
+
+    long method092(long arg) throws IOException;
+
+    String method093(int arg);
+
+    void method094();
+
+    long method095(long arg) throws IOException;
+
+    String method096(int arg);
+
+    void method097();
+
+    long method098(long arg) throws IOException;
+
+    String method099(int arg);
+
+    void method100();
+
+    long method101(long arg) throws IOException;
+
+    String method102(int arg);
+
+    void method103();
+
+    long method104(long arg) throws IOException;
+
+    String method105(int arg);
+
+    void method106();
+
+    long method107(long arg) throws IOException;
+
+    String method108(int arg);
+
+    void method109();
+
+    long method110(long arg) throws IOException;
+
+    String method111(int arg);
+
+    void method112();
+
+    long method113(long arg) throws IOException;
+
+    String method114(int arg);
+
+    void method115();
+
+    long method116(long arg) throws IOException;
+
+    String method117(int arg);
+
+    void method118();
+
+    long method119(long arg) throws IOException;
+
+    String method120(int arg);
+
+    void method121();
+
+    long method122(long arg) throws IOException;
+
+    String method123(int arg);
+
+    void method124();
+
+    long method125(long arg) throws IOException;
+
+    String method126(int arg);
+
+    void method127();
+
+    long method128(long arg) throws IOException;
+
+    String method129(int arg);
+
+    void method130();
+
+    long method131(long arg) throws IOException;
+
+    String method132(int arg);
+
+    void method133();
+
+    long method134(long arg) throws IOException;
+
+    String method135(int arg);
+
+    void method136();
+
+    long method137(long arg) throws IOException;
+
+    String method138(int arg);
+
+    void method139();
+
+    long method140(long arg) throws IOException;
+
+    String method141(int arg);
+
+    void method142();
+
+    long method143(long arg) throws IOException;
+
+    String method144(int arg);
+
+    void method145();
+
+    long method146(long arg) throws IOException;
+
+    String method147(int arg);
+
+    void method148();
+
+    long method149(long arg) throws IOException;
+
+    String method150(int arg);
+
+    void method151();
+
+    long method152(long arg) throws IOException;
+
+    String method153(int arg);
+
+    void method154();
+
+    long method155(long arg) throws IOException;
+
+    String method156(int arg);
+
+    void method157();
+
+    long method158(long arg) throws IOException;
+
+    String method159(int arg);
+
+    void method160();
+
+    long method161(long arg) throws IOException;
+
+    String method162(int arg);
+
+    void method163();
+
+    long method164(long arg) throws IOException;
+
+    String method165(int arg);
+
+    void method166();
+
+    long method167(long arg) throws IOException;
+
+    String method168(int arg);
+
+    void method169();
+
+    long method170(long arg) throws IOException;
+
+    String method171(int arg);
+
+    void method172();
+
+    long method173(long arg) throws IOException;
+
+    String method174(int arg);
+
+    void method175();
+
+    long method176(long arg) throws IOException;
+
+    String method177(int arg);
+
+    void method178();
+
+    long method179(long arg) throws IOException;
+
+    String method180(int arg);
+
+    void method181();
+
+    long method182(long arg) throws IOException;
+
+    String method183(int arg);
+
+    void method184();
+
+    long method185(long arg) throws IOException;
+
+    String method186(int arg);
+
+    void method187();
+
+    long method188(long arg) throws IOException;
+
+    String method189(int arg);
+
+    void method190();
+
+    long method191(long arg) throws IOException;
+
+    String method192(int arg);
+
+    void method193();
+
+    long method194(long arg) throws IOException;
+
+    String method195(int arg);
+
+    void method196();
+
+    long method197(long arg) throws IOException;
+
+    String method198(int arg);
+
+    void method199();
+
+    long method200(long arg) throws IOException;
+
+    String method201(int arg);
+
+    void method202();
+
+    long method203(long arg) throws IOException;
+
+    String method204(int arg);
+
+    void method205();
+
+    long method206(long arg) throws IOException;
+
+    String method207(int arg);
+
+    void method208();
+
+    long method209(long arg) throws IOException;
+
+    String method210(int arg);
+
+    void method211();
+
+    long method212(long arg) throws IOException;
+
+    String method213(int arg);
+
+    void method214();
+
+    long method215(long arg) throws IOException;
+
+    String method216(int arg);
+
+    void method217();
+
+    long method218(long arg) throws IOException;
+
+    String method219(int arg);
+
+    void method220();
+
+    long method221(long arg) throws IOException;
+
+    String method222(int arg);
+
+    void method223();
+
+    long method224(long arg) throws IOException;
+
+    String method225(int arg);
+
+    void method226();
+
+    long method227(long arg) throws IOException;
+
+    String method228(int arg);
+
+    void method229();
+
+    long method230(long arg) throws IOException;
+
+    String method231(int arg);
+
+    void method232();
+
+    long method233(long arg) throws IOException;
+
+    String method234(int arg);
+
+    void method235();
+
+    long method236(long arg) throws IOException;
+
+    String method237(int arg);
+
+    void method238();
+
+    long method239(long arg) throws IOException;
+
+    String method240(int arg);
+
+    void method241();
+
+    long method242(long arg) throws IOException;
+
+    String method243(int arg);
+
+    void method244();
+
+    long method245(long arg) throws IOException;
+
+    String method246(int arg);
+
+    void method247();
+
+    long method248(long arg) throws IOException;
+
+    String method249(int arg);
+
+    void method250();
+
+    long method251(long arg) throws IOException;
+
+    String method252(int arg);
+
+    void method253();
+
+    long method254(long arg) throws IOException;
+
+    String method255(int arg);
+
+    void method256();
+
+    long method257(long arg) throws IOException;
+
+    String method258(int arg);
+
+    void method259();
+
+    long method260(long arg) throws IOException;
+
+    String method261(int arg);
+
+    void method262();
+
+    long method263(long arg) throws IOException;
+
+    String method264(int arg);
+
+    void method265();
+
+    long method266(long arg) throws IOException;
+
+    String method267(int arg);
+
+    void method268();
+
+    long method269(long arg) throws IOException;
+
+    String method270(int arg);
+
+    void method271();
+
+    long method272(long arg) throws IOException;
+
+    String method273(int arg);
+
+    void method274();
+
+    long method275(long arg) throws IOException;
+
+    String method276(int arg);
+
+    void method277();
+
+    long method278(long arg) throws IOException;
+
+    String method279(int arg);
+
+    void method280();
+
+    long method281(long arg) throws IOException;
+
+    String method282(int arg);
+
+    void method283();
+
+    long method284(long arg) throws IOException;
+
+    String method285(int arg);
+
+    void method286();
+
+    long method287(long arg) throws IOException;
+
+    String method288(int arg);
+
+    void method289();
+
+    long method290(long arg) throws IOException;
+
+    String method291(int arg);
+
+    void method292();
+
+    long method293(long arg) throws IOException;
+
+    String method294(int arg);
+
+    void method295();
+
+    long method296(long arg) throws IOException;
+
+    String method297(int arg);
+
+    void method298();
+
+    long method299(long arg) throws IOException;
+}